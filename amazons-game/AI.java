@@ -1,10 +1,20 @@
 package amazons;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.Math.*;
 
 import static amazons.Piece.*;
+import static amazons.TranspositionTable.*;
+import static amazons.Utils.error;
 import static amazons.Utils.iterable;
 
 /** A Player that automatically generates moves.
@@ -30,6 +40,15 @@ class AI extends Player {
         this(null, null);
     }
 
+    /**
+     * A new AI with no piece or controller that ponders iff PONDER
+     * (intended to produce a template).
+     */
+    AI(boolean ponder) {
+        this(null, null);
+        _ponder = ponder;
+    }
+
     /**
      * A new AI playing PIECE under control of CONTROLLER.
      */
@@ -39,30 +58,728 @@ class AI extends Player {
 
     @Override
     Player create(Piece piece, Controller controller) {
-        return new AI(piece, controller);
+        AI result = new AI(piece, controller);
+        result._ponder = _ponder;
+        result._book = _book;
+        result._splitPlies = _splitPlies;
+        result._principalVariation = _principalVariation;
+        result._aspiration = _aspiration;
+        result._lateMoveReductions = _lateMoveReductions;
+        result._selectivity = _selectivity;
+        result._evaluator = _evaluator;
+        result._evaluatorId = _evaluatorId;
+        result._threads = _threads;
+        result._regions = _regions;
+        result._memory = _memory;
+        return result;
+    }
+
+    /** Search with queen moves and spear throws as separate plies iff
+     *  SPLIT.  Affects AIs subsequently created from me. */
+    void setSplitPlies(boolean split) {
+        _splitPlies = split;
+    }
+
+    /** Use principal variation search (searching all but the first
+     *  queen move at each node with a null window, to show cheaply that
+     *  it is no better) iff ON.  Spear throws are not ordered, so they
+     *  are always searched with the full window.  Affects AIs
+     *  subsequently created from me. */
+    void setPrincipalVariation(boolean on) {
+        _principalVariation = on;
+    }
+
+    /** Deepen iteratively, searching each depth within a window around
+     *  the value found at the previous depth, iff ON.  Off by default,
+     *  since on SearchBenchmark's suite it took longer than plain
+     *  alpha-beta.  Affects AIs subsequently created from me. */
+    void setAspiration(boolean on) {
+        _aspiration = on;
+    }
+
+    /** Search queen moves ranked low by move ordering one move less
+     *  deep, unless they then turn out to be good, iff ON.  Off by
+     *  default, since it may change the move chosen.  Affects AIs
+     *  subsequently created from me. */
+    void setLateMoveReductions(boolean on) {
+        _lateMoveReductions = on;
+    }
+
+    /** At nodes just above the horizon, search only the K best queen
+     *  moves, and for each, the K best spear throws, according to a
+     *  cheap incremental mobility evaluator (see mobilityChange and
+     *  spearChange).  Nodes D half-plies from the horizon search K *
+     *  ceil(D / 2) of each, so that the search is widest near the root.
+     *  K = 0 searches all moves.  Affects AIs subsequently created from
+     *  me. */
+    void setSelectivity(int k) {
+        if (k < 0) {
+            throw error("selectivity must be non-negative");
+        }
+        _selectivity = k;
+    }
+
+    /** With split plies, once spears have divided the board into
+     *  regions (see Board.region), search iff ON only the moves that can
+     *  change the outcome: the queen moves in regions holding queens of
+     *  both sides.  A side with none makes a single filler move in one
+     *  of its own regions, moving the queen and throwing the spear best
+     *  ranked by move ordering, since which filler it makes matters
+     *  little, only that it has one.  When no region holds both sides'
+     *  queens, the search stops, and the side to move wins iff it can
+     *  make more filler moves (see Board.fillers) than its opponent.
+     *  Affects AIs subsequently created from me. */
+    void setRegions(boolean on) {
+        _regions = on;
+    }
+
+    /** With split plies, divide the queen moves at the root of each
+     *  search among THREADS threads (see splitRoot), so that the move
+     *  chosen, its value, its principal variation, and the number of
+     *  positions visited are the same, bit for bit, whatever THREADS is
+     *  and however the threads are scheduled.  THREADS = 0 searches on
+     *  one thread in the ordinary way.  Searches stopped by a clock or
+     *  by moveNow are, of course, not repeatable.  Affects AIs
+     *  subsequently created from me. */
+    void setThreads(int threads) {
+        if (threads < 0) {
+            throw error("number of threads must be non-negative");
+        }
+        _threads = threads;
+    }
+
+    /** Keep no more than about BYTES bytes between searches: a
+     *  transposition table (see TranspositionTable) as large as fits,
+     *  allocated in full at my next search, or none if BYTES is too
+     *  small for an entry.  The table is used only by searches with split
+     *  plies on one thread, and not while a shared table exists (see
+     *  setSharedTable).  Affects me and AIs subsequently created from
+     *  me. */
+    @Override
+    void setMemory(long bytes) {
+        if (bytes < 0) {
+            throw error("memory must be non-negative");
+        }
+        _memory = bytes;
+        _ownTable = null;
+    }
+
+    @Override
+    String memoryUsage() {
+        TranspositionTable shared = _sharedTable;
+        return String.format("budget %d bytes, %s", _memory,
+                             shared != null ? "shared table of " + shared
+                             : _ownTable == null ? "no table"
+                             : "table of " + _ownTable);
+    }
+
+    /** Have all AIs in the program share one transposition table of
+     *  about BYTES bytes, outside the heap, in place of their own (see
+     *  setMemory), or stop sharing if BYTES is 0.  Several games in one
+     *  program, such as those of a GameServer, then profit from each
+     *  other's searches, and take the memory for a table only once.
+     *  AIs whose settings would value a position differently (see
+     *  configKey) keep apart within the table, and do not take each
+     *  other's entries.  Takes effect at each AI's next search. */
+    static void setSharedTable(long bytes) {
+        if (bytes < 0) {
+            throw error("memory must be non-negative");
+        }
+        _sharedTable =
+            bytes == 0 ? null : TranspositionTable.offHeap(bytes);
+    }
+
+    /** Return the transposition table shared by all AIs, or null. */
+    static TranspositionTable sharedTable() {
+        return _sharedTable;
+    }
+
+    /** Return the table my next search should use: the shared table if
+     *  there is one, and otherwise my own, allocated if need be, or
+     *  null.  Searches divided among threads (see setThreads) use none,
+     *  so as to be repeatable. */
+    private TranspositionTable table() {
+        TranspositionTable shared = _sharedTable;
+        if (_threads > 0 || _parent != null) {
+            return null;
+        } else if (shared != null) {
+            _ownTable = null;
+            return shared;
+        } else if (_ownTable == null && _memory >= ENTRY_BYTES) {
+            _ownTable = new TranspositionTable(_memory);
+        }
+        return _ownTable;
+    }
+
+    /** Return a key for the settings that change the values my
+     *  searches store in a transposition table: my evaluator (by
+     *  _evaluatorId, since evaluators may have weights), selectivity,
+     *  regions, and late-move reductions.  Each setting has its own
+     *  bits, so that different settings have different keys.  It is
+     *  mixed into the table keys, so that differently configured AIs
+     *  sharing a table (see setSharedTable), or my own table after my
+     *  settings change, never supply values computed one way to a search
+     *  done another. */
+    private long configKey() {
+        long key = (long) _evaluatorId << 33 | (long) _selectivity << 2
+            | (_regions ? 2 : 0) | (_lateMoveReductions ? 1 : 0);
+        return key * CONFIG_KEY;
+    }
+
+    /** Value the positions at the leaves of my searches with EVALUATOR.
+     *  Affects AIs subsequently created from me. */
+    void setEvaluator(Evaluator evaluator) {
+        _evaluator = evaluator;
+        _evaluatorId = EVALUATOR_IDS.incrementAndGet();
+    }
+
+    /** Return the number of times a search with an aspiration window
+     *  had to be repeated with a full window. */
+    int aspirationFailures() {
+        return _aspirationFailures;
+    }
+
+    /** Return the value found by my last completed search (positive
+     *  favoring White). */
+    int lastScore() {
+        return _lastScore;
+    }
+
+    /** Return the number of positions visited by my searches so far. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Use the statistics of the games in BOOK (if non-null) to choose
+     *  moves in positions that occur in enough of them. Affects AIs
+     *  subsequently created from me. */
+    void setBook(GameStore book) {
+        _book = book;
     }
 
     @Override
     String myMove() {
+        long start = System.currentTimeMillis();
         Move move = findMove();
+        Metrics.SEARCH_LATENCY.record(System.currentTimeMillis() - start);
         _controller.reportMove(move);
+        if (_ponder) {
+            startPondering(move);
+        }
         return move.toString();
     }
 
+    @Override
+    CompletableFuture<String> myMoveAsync() {
+        return CompletableFuture.supplyAsync(this::myMove, SEARCHERS);
+    }
+
     /**
      * Return a move for me from the current position, assuming there
      * is a move.
      */
     private Move findMove() {
+        _moveNow = false;
         Board b = new Board(board());
-        if (_myPiece == WHITE) {
-            findMove(b, maxDepth(b), true, 1, -INFTY, INFTY);
-        } else {
-            findMove(b, maxDepth(b), true, -1, -INFTY, INFTY);
+        long start = System.currentTimeMillis();
+        GameClock clock = _controller.clock();
+        TimeManager timeManager = null;
+        if (clock.enabled() && _splitPlies) {
+            Piece side = b.turn();
+            timeManager = new TimeManager(b, side, clock.remaining(side),
+                                          clock.increment(side), start);
+        }
+        Move pondered = takePonderResult(b, timeManager);
+        if (pondered != null) {
+            return pondered;
         }
+        if (_book != null) {
+            Move booked = _book.bestMove(b, MIN_BOOK_GAMES);
+            if (booked != null && b.isLegal(booked)) {
+                return booked;
+            }
+        }
+        _aborted = false;
+        _progressStart = start;
+        _progressNodes = _nodes;
+        _reporting = true;
+        try {
+            if (timeManager == null) {
+                search(b, maxDepth(b), sense());
+                return _lastFoundMove;
+            }
+            Iterator<Move> moves = b.legalMoves();
+            Move only = moves.next();
+            if (!moves.hasNext()) {
+                return only;
+            }
+            _timeManager = timeManager;
+            _deadline = _timeManager.deadline();
+            search(b, MAX_TIMED_DEPTH, sense());
+            return _lastFoundMove;
+        } finally {
+            _deadline = 0;
+            _timeManager = null;
+            _aborted = false;
+            _reporting = false;
+            _moveNow = false;
+        }
+    }
+
+    /** Stop the search for my current move, if any, as soon as it has
+     *  finished a search of depth 1, and play the best move found by
+     *  the deepest search finished.  Has no effect on searches with
+     *  whole plies, nor on the next search if none is in progress.  May
+     *  be called from any thread. */
+    @Override
+    void moveNow() {
+        _moveNow = true;
+    }
+
+    /** Return the best move for the side to move on BOARD found by a
+     *  search of depth DEPTH, or null if there is no move.  Does not
+     *  modify BOARD or use the book, and may be used on boards of any
+     *  size and independently of any game. */
+    Move bestMove(Board board, int depth) {
+        Board b = new Board(board);
+        _aborted = false;
+        _lastFoundMove = null;
+        search(b, depth, b.turn() == WHITE ? 1 : -1);
         return _lastFoundMove;
     }
 
+    /** Return the value of BOARD (positive favoring White) found by a
+     *  search of depth DEPTH, or its static value if DEPTH is 0 or the
+     *  game on BOARD is over.  Does not modify BOARD or use the book. */
+    int value(Board board, int depth) {
+        if (depth == 0 || board.winner() != EMPTY) {
+            _nodes += 1;
+            Metrics.NODES_SEARCHED.increment();
+            return staticScore(board);
+        }
+        Board b = new Board(board);
+        _aborted = false;
+        return search(b, depth, b.turn() == WHITE ? 1 : -1);
+    }
+
+    /** Search BOARD to DEPTH moves for SENSE (as for findMove), using
+     *  whole or split plies as configured, and set _lastFoundMove,
+     *  _lastScore, and the principal variation.  If the search is
+     *  stopped by a deadline, these describe the deepest search that
+     *  finished. */
+    private int search(Board board, int depth, int sense) {
+        long nodes = _nodes, generated = _generated;
+        startPv(board, depth);
+        _table = table();
+        _configKey = configKey();
+        try {
+            if (_splitPlies) {
+                return deepen(board, depth, sense);
+            }
+            _searchDone = false;
+            int score = findMove(board, depth, true, sense, -INFTY, INFTY);
+            if (!_aborted) {
+                _lastScore = score;
+                _depthReached = depth;
+                _pv[0][0] = _lastFoundMove;
+                _pvLength[0] = 1;
+                _bestPv = Arrays.copyOf(_pv[0], 1);
+            }
+            return score;
+        } finally {
+            Metrics.NODES_SEARCHED.add(_nodes - nodes);
+            Metrics.MOVES_GENERATED.add(_generated - generated);
+        }
+    }
+
+    /** Search BOARD for SENSE with split plies to DEPTH.  When using
+     *  aspiration windows or a deadline, deepen iteratively, searching
+     *  depths 1 through DEPTH, each with the previous depth's best move
+     *  first.  With aspiration windows, search each depth first within
+     *  ASPIRATION_WINDOW of the previous depth's value, widening the
+     *  window only if the value falls outside it.  With a time manager,
+     *  go deeper only while it advises to.  Return the value of the
+     *  deepest search finished. */
+    private int deepen(Board board, int depth, int sense) {
+        int first = _aspiration || _deadline != 0 || _reporting ? 1 : depth;
+        int score = 0;
+        Move best = null;
+        _searchDone = false;
+        _pvMove = null;
+        for (int d = first; d <= depth; d += 1) {
+            long nodes = _nodes;
+            int alpha = -INFTY, beta = INFTY;
+            if (_aspiration && d > first
+                && abs(score) < WINNING_VALUE - ASPIRATION_WINDOW) {
+                alpha = score - ASPIRATION_WINDOW;
+                beta = score + ASPIRATION_WINDOW;
+            }
+            int value =
+                findSplitMove(board, 2 * d, true, sense, alpha, beta);
+            if (!_aborted && (value <= alpha || value >= beta)) {
+                _aspirationFailures += 1;
+                value = findSplitMove(board, 2 * d, true, sense,
+                                      -INFTY, INFTY);
+            }
+            if (_aborted) {
+                break;
+            }
+            score = value;
+            best = _lastFoundMove;
+            _pvMove = best;
+            _lastScore = score;
+            _depthReached = d;
+            _bestPv = Arrays.copyOf(_pv[0], _pvLength[0]);
+            _searchDone = true;
+            if (_reporting) {
+                _controller.reportProgress(
+                    new Analysis(best, score, d, _nodes - _progressNodes,
+                                 System.currentTimeMillis() - _progressStart,
+                                 _bestPv));
+            }
+            if (_timeManager != null
+                && !_timeManager.deeper(d, _nodes - nodes, sense * score,
+                                        best, System.currentTimeMillis())) {
+                break;
+            }
+        }
+        _lastFoundMove = best;
+        _pvMove = null;
+        return score;
+    }
+
+    /** Return the principal variation found by my last search: its
+     *  best move followed by the best replies found for each side. */
+    Move[] principalVariation() {
+        return _bestPv.clone();
+    }
+
+    /** Return the depth of my last search that finished. */
+    int depthReached() {
+        return _depthReached;
+    }
+
+    /** Return an analysis of BOARD by a search of at most DEPTH moves,
+     *  stopping after about MILLIS milliseconds if MILLIS > 0, but only
+     *  once a search of depth 1 has finished.  Does not modify BOARD or
+     *  use the book.  Returns null if the game on BOARD is over. */
+    Analysis analyze(Board board, int depth, long millis) {
+        if (board.winner() != EMPTY) {
+            return null;
+        }
+        Board b = new Board(board);
+        long nodes = _nodes;
+        long start = System.currentTimeMillis();
+        _aborted = false;
+        _deadline = millis > 0 ? start + millis : 0;
+        try {
+            search(b, depth, b.turn() == WHITE ? 1 : -1);
+        } finally {
+            _deadline = 0;
+            _aborted = false;
+        }
+        return new Analysis(_lastFoundMove, _lastScore, _depthReached,
+                            _nodes - nodes,
+                            System.currentTimeMillis() - start,
+                            principalVariation());
+    }
+
+    /** Return analyses of the N best moves on BOARD (or of all moves, if
+     *  there are fewer), best first, each with its exact value and its
+     *  own principal variation, found by a search of at most DEPTH
+     *  moves, stopping after about MILLIS milliseconds if MILLIS > 0,
+     *  once a search of depth 1 has finished.  The nodes and time of
+     *  each analysis are those of the whole search.  Returns an empty
+     *  list if the game on BOARD is over.  Always searches with split
+     *  plies.
+     *
+     *  Rather than N searches, each excluding the moves found by the
+     *  previous ones, this makes one pass over the moves at the root at
+     *  each depth, searching each with a window bounded by the value of
+     *  the Nth best move so far, so that moves that cannot be among the
+     *  N best are dismissed as cheaply as in an ordinary search.  A
+     *  queen move is first searched with all its spear throws together,
+     *  and dismissed at once if the best of them cannot be among the N
+     *  best.  Each depth tries the best moves of the previous depth
+     *  first. */
+    List<Analysis> analyzeLines(Board board, int depth, int n,
+                                long millis) {
+        List<Analysis> result = new ArrayList<>();
+        if (board.winner() != EMPTY) {
+            return result;
+        }
+        Board b = new Board(board);
+        int sense = b.turn() == WHITE ? 1 : -1;
+        long nodes = _nodes, generated = _generated;
+        long start = System.currentTimeMillis();
+        Move[] moves = new Move[n], bestMoves = new Move[0];
+        int[] scores = new int[n], bestScores = new int[0];
+        Move[][] pvs = new Move[n][], bestPvs = new Move[0][];
+        int reached = 0;
+        _aborted = false;
+        _searchDone = false;
+        _deadline = millis > 0 ? start + millis : 0;
+        try {
+            startPv(b, depth);
+            _table = table();
+            _configKey = configKey();
+            for (int d = 1; d <= depth; d += 1) {
+                int count = rootLines(b, d, sense, bestMoves, moves,
+                                      scores, pvs);
+                if (_aborted) {
+                    break;
+                }
+                bestMoves = Arrays.copyOf(moves, count);
+                bestScores = Arrays.copyOf(scores, count);
+                bestPvs = Arrays.copyOf(pvs, count);
+                reached = d;
+                _searchDone = true;
+            }
+        } finally {
+            _deadline = 0;
+            _aborted = false;
+            Metrics.NODES_SEARCHED.add(_nodes - nodes);
+            Metrics.MOVES_GENERATED.add(_generated - generated);
+        }
+        long millisUsed = System.currentTimeMillis() - start;
+        for (int k = 0; k < bestMoves.length; k += 1) {
+            result.add(new Analysis(bestMoves[k], bestScores[k], reached,
+                                    _nodes - nodes, millisUsed,
+                                    bestPvs[k]));
+        }
+        return result;
+    }
+
+    /** Search the moves at the root of BOARD, whose side to move has
+     *  sense SENSE, to DEPTH moves, trying the moves in PREVIOUS first,
+     *  and place the best moves found, best first, in MOVES, with their
+     *  values in SCORES and their principal variations in PVS, finding
+     *  as many as these arrays hold.  Return the number found. */
+    private int rootLines(Board board, int depth, int sense,
+                          Move[] previous, Move[] moves, int[] scores,
+                          Move[][] pvs) {
+        int n = moves.length, count = 0;
+        int[] queenMoves = queenMoves(board, sense);
+        _generated += queenMoves.length;
+        for (int k = previous.length - 1; k >= 0; k -= 1) {
+            promote(queenMoves, previous[k]);
+        }
+        for (int code : queenMoves) {
+            Square from = board.sq(code & QUEEN_MOVE_MASK),
+                to = board.sq((code >> QUEEN_MOVE_BITS) & QUEEN_MOVE_MASK);
+            board.moveQueen(from, to);
+            boolean candidate = true;
+            if (count == n) {
+                int bound = scores[n - 1];
+                int best = throwSpear(board, 2 * depth - 1, false, sense,
+                                      sense == 1 ? bound : -INFTY,
+                                      sense == 1 ? INFTY : bound);
+                candidate = sense == 1 ? best > bound : best < bound;
+            }
+            for (Iterator<Square> spears = board.reachableFrom(to, null);
+                 candidate && !_aborted && spears.hasNext(); ) {
+                Square spear = spears.next();
+                int bound = count < n ? -sense * INFTY : scores[n - 1];
+                board.throwSpear(spear);
+                int score =
+                    findSplitMove(board, 2 * depth - 2, false, -sense,
+                                  sense == 1 ? bound : -INFTY,
+                                  sense == 1 ? INFTY : bound);
+                board.unthrowSpear();
+                if (!_aborted && (sense == 1 ? score > bound
+                                  : score < bound)) {
+                    Move[] pv = new Move[1 + _pvLength[1]];
+                    pv[0] = Move.mv(from, to, spear);
+                    System.arraycopy(_pv[1], 0, pv, 1, _pvLength[1]);
+                    count = insertLine(pv, score, sense, moves, scores, pvs,
+                                       count);
+                }
+            }
+            board.unmoveQueen();
+            if (_aborted) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /** Insert the line whose principal variation is PV and whose value
+     *  is SCORE for SENSE into the COUNT lines of MOVES, SCORES, and
+     *  PVS (as for rootLines), dropping the worst if they are full, and
+     *  return the new number of lines. */
+    private static int insertLine(Move[] pv, int score, int sense,
+                                  Move[] moves, int[] scores, Move[][] pvs,
+                                  int count) {
+        int k = min(count, moves.length - 1);
+        while (k > 0 && (sense == 1 ? score > scores[k - 1]
+                         : score < scores[k - 1])) {
+            moves[k] = moves[k - 1];
+            scores[k] = scores[k - 1];
+            pvs[k] = pvs[k - 1];
+            k -= 1;
+        }
+        moves[k] = pv[0];
+        scores[k] = score;
+        pvs[k] = pv;
+        return min(count + 1, moves.length);
+    }
+
+    /** Prepare the principal variation table for a search of DEPTH moves
+     *  from BOARD. */
+    private void startPv(Board board, int depth) {
+        _rootPly = board.numMoves();
+        _pv = new Move[depth + 2][depth + 1];
+        _pvLength = new int[depth + 2];
+        _spearPv = new Move[depth + 2][depth + 1];
+        _spearPvLength = new int[depth + 2];
+    }
+
+    /** Return my sense (1 for White, -1 for Black). */
+    private int sense() {
+        return _myPiece == WHITE ? 1 : -1;
+    }
+
+    /** Stop any search on my opponent's time. */
+    void stopPondering() {
+        Ponder ponder = _pondering;
+        _pondering = null;
+        if (ponder != null) {
+            ponder.stop();
+        }
+    }
+
+    /** Return the number of times a pondered position was actually
+     *  reached. */
+    int ponderHits() {
+        return _ponderHits;
+    }
+
+    /** Return the number of times a pondered position was not reached,
+     *  or was reached before the pondered search could be used. */
+    int ponderMisses() {
+        return _ponderMisses;
+    }
+
+    /** Return the reply I currently expect from my opponent, or null if
+     *  I am not pondering or have not yet predicted it. */
+    Move predictedReply() {
+        Ponder ponder = _pondering;
+        return ponder == null ? null : ponder._reply;
+    }
+
+    /** Begin searching, on another thread, my reply to the move my
+     *  opponent is most likely to make after my move MOVE. */
+    private void startPondering(Move move) {
+        Board b = new Board(board());
+        b.makeMove(move);
+        if (b.winner() != EMPTY) {
+            return;
+        }
+        Ponder ponder = new Ponder(b);
+        _pondering = ponder;
+        _aborted = false;
+        ponder._task = CompletableFuture.runAsync(ponder::run, SEARCHERS);
+    }
+
+    /** If I have been pondering, stop, and return my pondered reply if
+     *  CURRENT is the position I pondered, and otherwise null.  Under
+     *  the clock, TIMEMANAGER is the time manager for my move, and I
+     *  wait for the pondered search of normal depth, which has no
+     *  deadline, only until its target time, returning null if it has
+     *  not finished by then, so that my move can still be found in
+     *  time.  TIMEMANAGER is null if the game is untimed. */
+    private Move takePonderResult(Board current, TimeManager timeManager) {
+        Ponder ponder = _pondering;
+        _pondering = null;
+        if (ponder == null) {
+            return null;
+        }
+        if (ponder._expected == null || !ponder._expected.equals(current)) {
+            ponder.stop();
+            _ponderMisses += 1;
+            return null;
+        }
+        Move nominal;
+        if (timeManager == null) {
+            nominal = ponder._nominal.join();
+        } else {
+            long wait = timeManager.start() + timeManager.target()
+                - System.currentTimeMillis();
+            nominal = ponder._nominal
+                .completeOnTimeout(null, max(0, wait), TimeUnit.MILLISECONDS)
+                .join();
+        }
+        ponder.stop();
+        if (nominal == null) {
+            _ponderMisses += 1;
+            return null;
+        }
+        _ponderHits += 1;
+        return ponder._best;
+    }
+
+    /** A search on my opponent's time.  It predicts my opponent's reply
+     *  with a shallow search, then searches my answer to that reply,
+     *  first to the depth I would normally use, and then deeper, until
+     *  stopped. */
+    private class Ponder {
+
+        /** A search in which my opponent is to move on BOARD. */
+        Ponder(Board board) {
+            _board = board;
+        }
+
+        /** Predict the reply and search the resulting position. */
+        void run() {
+            search(_board, 1, -sense());
+            Move reply = _lastFoundMove;
+            if (_aborted || reply == null) {
+                _nominal.complete(null);
+                return;
+            }
+            _board.makeMove(reply);
+            _reply = reply;
+            _expected = new Board(_board);
+            if (_board.winner() != EMPTY) {
+                _nominal.complete(null);
+                return;
+            }
+            int depth = maxDepth(_board);
+            for (int d = depth; d <= depth + PONDER_EXTRA_DEPTH; d += 1) {
+                search(_board, d, sense());
+                if (_aborted) {
+                    break;
+                }
+                _best = _lastFoundMove;
+                if (d == depth) {
+                    _nominal.complete(_best);
+                }
+            }
+            _nominal.complete(null);
+        }
+
+        /** Abort this search and wait for it to finish. */
+        void stop() {
+            _aborted = true;
+            _task.join();
+        }
+
+        /** Position being searched. */
+        private final Board _board;
+        /** Predicted reply of my opponent. */
+        private volatile Move _reply;
+        /** Position expected after _reply. */
+        private volatile Board _expected;
+        /** Best move found by the deepest completed search. */
+        private volatile Move _best;
+        /** Completes with the result of the search to normal depth, or
+         *  null if that search did not finish. */
+        private final CompletableFuture<Move> _nominal =
+            new CompletableFuture<>();
+        /** The thread running this search. */
+        private CompletableFuture<Void> _task;
+    }
+
     /**
      * The move found by the last call to one of the ...FindMove methods
      * below.
@@ -81,16 +798,23 @@ class AI extends Player {
                          int alpha, int beta) {
         int bestScore;
         Move bestMove = null;
-        if (depth == 0 || board.winner() != EMPTY) {
+        _nodes += 1;
+        if (_aborted) {
+            return 0;
+        } else if (depth == 0 || board.winner() != EMPTY) {
             return staticScore(board);
         } else {
             if (sense == 1) {
                 bestScore = -INFTY;
                 for (Move trial : iterable(board.legalMoves())) {
+                    _generated += 1;
                     board.makeMove(trial);
                     int scoreBoard = findMove(board,
                             depth - 1, false, -sense, alpha, beta);
                     board.undo();
+                    if (_aborted) {
+                        return 0;
+                    }
                     if (scoreBoard >= bestScore) {
                         bestScore = scoreBoard;
                         bestMove = trial;
@@ -103,10 +827,14 @@ class AI extends Player {
             } else {
                 bestScore = INFTY;
                 for (Move trial : iterable(board.legalMoves())) {
+                    _generated += 1;
                     board.makeMove(trial);
                     int scoreBoard = findMove(board,
                             depth - 1, false, -sense, alpha, beta);
                     board.undo();
+                    if (_aborted) {
+                        return 0;
+                    }
                     if (scoreBoard <= bestScore) {
                         bestScore = scoreBoard;
                         bestMove = trial;
@@ -124,6 +852,804 @@ class AI extends Player {
         return bestScore;
     }
 
+    /** Like findMove, but searching DEPTH half-plies, where moving a
+     *  queen and throwing its spear are separate plies (see
+     *  Board.moveQueen).  Since the value of a queen move is the best of
+     *  its spear throws, a refutation found among the throws of one
+     *  queen move prunes the rest of them, and queen moves are tried in
+     *  order of the mobility they leave, so that good ones come first. */
+    private int findSplitMove(Board board, int depth, boolean saveMove,
+                              int sense, int alpha, int beta) {
+        _nodes += 1;
+        if ((_nodes & DEADLINE_CHECK_MASK) == 0 && stopRequested()) {
+            _aborted = true;
+        }
+        int ply = board.numMoves() - _rootPly;
+        if (_aborted) {
+            return 0;
+        } else if (board.spearPending()) {
+            return throwSpear(board, depth, saveMove, sense, alpha, beta);
+        } else if (depth == 0 || board.winner() != EMPTY) {
+            _pvLength[ply] = 0;
+            return staticScore(board);
+        } else if (_regions && !saveMove && board.separated()) {
+            _pvLength[ply] = 0;
+            return separatedScore(board);
+        }
+        long key = 0, entry = NONE;
+        if (_table != null) {
+            key = board.hash() ^ board.size() * SIZE_KEY ^ _configKey;
+            entry = _table.probe(key);
+            if (entry != NONE && !saveMove && depth(entry) >= depth) {
+                int value = score(entry);
+                if (bound(entry) == EXACT
+                    || bound(entry) == LOWER && value >= beta
+                    || bound(entry) == UPPER && value <= alpha) {
+                    _pvLength[ply] = 0;
+                    return value;
+                }
+            }
+        }
+        int[] queenMoves = queenMoves(board, sense, _regions);
+        _generated += queenMoves.length;
+        if (entry != NONE) {
+            promote(queenMoves, move(entry));
+        }
+        if (saveMove && _pvMove != null) {
+            promote(queenMoves, _pvMove);
+        }
+        int alpha0 = alpha, beta0 = beta;
+        int bestScore = -sense * INFTY, bestCode = 0;
+        Move bestMove = null;
+        int count = queenMoves.length;
+        if (_selectivity > 0) {
+            count = min(count, width(_selectivity, depth));
+        }
+        if (saveMove && _threads > 0) {
+            return splitRoot(board, queenMoves, count, depth, sense,
+                             alpha, beta);
+        }
+        for (int i = 0; i < count; i += 1) {
+            Square from = board.sq(queenMoves[i] & QUEEN_MOVE_MASK),
+                to = board.sq((queenMoves[i] >> QUEEN_MOVE_BITS)
+                              & QUEEN_MOVE_MASK);
+            int reduction = reduction(i, depth);
+            board.moveQueen(from, to);
+            int score;
+            if (i == 0 || !_principalVariation && reduction == 0) {
+                score = throwSpear(board, depth - 1, saveMove, sense,
+                                   alpha, beta);
+            } else {
+                score = throwSpear(board, depth - 1 - reduction, saveMove,
+                                   sense, nullAlpha(sense, alpha, beta),
+                                   nullBeta(sense, alpha, beta));
+                if (researchNeeded(score, sense, alpha, beta, reduction)) {
+                    score = throwSpear(board, depth - 1, saveMove, sense,
+                                       alpha, beta);
+                }
+            }
+            board.unmoveQueen();
+            if (_aborted) {
+                return 0;
+            }
+            if (sense == 1 ? score > bestScore : score < bestScore) {
+                bestScore = score;
+                bestCode = queenMoves[i];
+                if (saveMove) {
+                    bestMove = Move.mv(from, to, _lastFoundSpear);
+                }
+                _pvLength[ply] = _spearPvLength[ply];
+                System.arraycopy(_spearPv[ply], 0, _pv[ply], 0,
+                                 _pvLength[ply]);
+                if (sense == 1) {
+                    alpha = max(alpha, score);
+                } else {
+                    beta = min(beta, score);
+                }
+                if (beta <= alpha) {
+                    break;
+                }
+            }
+        }
+        if (saveMove) {
+            _lastFoundMove = bestMove;
+        }
+        if (_table != null) {
+            int kind = bestScore <= alpha0 ? UPPER
+                : bestScore >= beta0 ? LOWER : EXACT;
+            _table.store(key, encode(bestScore, depth, kind, bestCode));
+        }
+        return bestScore;
+    }
+
+    /** Return true iff my current search should stop: it has finished
+     *  at some depth and I have been asked to move now or have passed my
+     *  deadline, or it is part of a search by my parent that should
+     *  stop. */
+    private boolean stopRequested() {
+        if (_parent != null) {
+            return _parent._aborted || _parent.stopRequested();
+        }
+        return _searchDone
+            && (_moveNow || _deadline != 0
+                && System.currentTimeMillis() >= _deadline);
+    }
+
+    /** Search the root of BOARD as findSplitMove does (with DEPTH,
+     *  SENSE, ALPHA, and BETA as for it), considering the first COUNT of
+     *  QUEENMOVES, but spreading the work over _threads threads.  The
+     *  first queen move is searched alone with the full window.  Then
+     *  the others are all searched, on any free thread, as findSplitMove
+     *  would first search them (with a null window if using principal
+     *  variation search, and reduced if late), all with the window left
+     *  by the first.  Finally, this thread takes the results in order,
+     *  searching again in full, with the window as it then stands, any
+     *  that might be better than the best so far.  Each search starts
+     *  afresh on a worker AI and shares nothing with the others, so its
+     *  result depends only on its position and window, never on which
+     *  thread ran it or when; and the merge, in which a tie goes to the
+     *  earlier move, is sequential.  Sets _lastFoundMove and the
+     *  principal variation. */
+    private int splitRoot(Board board, int[] queenMoves, int count,
+                          int depth, int sense, int alpha, int beta) {
+        AI[] workers = workers();
+        RootSplit split = new RootSplit(board, queenMoves, depth, sense);
+        long[] nodes = new long[workers.length],
+            generated = new long[workers.length];
+        for (int w = 0; w < workers.length; w += 1) {
+            nodes[w] = workers[w]._nodes;
+            generated[w] = workers[w]._generated;
+        }
+        split.search(workers[0], 0, alpha, beta, 0, false);
+        int best = 0, bestScore = split._scores[0];
+        if (sense == 1) {
+            alpha = max(alpha, bestScore);
+        } else {
+            beta = min(beta, bestScore);
+        }
+        int probeAlpha = alpha, probeBeta = beta;
+        if (beta > alpha && !split._aborted) {
+            AtomicInteger next = new AtomicInteger(1);
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            for (int w = 1; w < workers.length; w += 1) {
+                AI worker = workers[w];
+                tasks.add(CompletableFuture.runAsync(
+                    () -> split.probe(worker, next, count, probeAlpha,
+                                      probeBeta), SEARCHERS));
+            }
+            split.probe(workers[0], next, count, probeAlpha, probeBeta);
+            CompletableFuture.allOf(
+                tasks.toArray(new CompletableFuture<?>[0])).join();
+            for (int i = 1; i < count && beta > alpha && !split._aborted;
+                 i += 1) {
+                int score = split._scores[i];
+                if (split._probed[i]
+                    && researchNeeded(score, sense, probeAlpha, probeBeta,
+                                      reduction(i, depth))) {
+                    split.search(workers[0], i, alpha, beta, 0, false);
+                    score = split._scores[i];
+                }
+                if (sense == 1 ? score > bestScore : score < bestScore) {
+                    best = i;
+                    bestScore = score;
+                    if (sense == 1) {
+                        alpha = max(alpha, score);
+                    } else {
+                        beta = min(beta, score);
+                    }
+                }
+            }
+        }
+        for (int w = 0; w < workers.length; w += 1) {
+            _nodes += workers[w]._nodes - nodes[w];
+            _generated += workers[w]._generated - generated[w];
+        }
+        if (split._aborted) {
+            _aborted = true;
+            return 0;
+        }
+        int ply = board.numMoves() - _rootPly;
+        Move[] pv = split._pvs[best];
+        System.arraycopy(pv, 0, _pv[ply], 0, pv.length);
+        _pvLength[ply] = pv.length;
+        _lastFoundMove = pv[0];
+        return bestScore;
+    }
+
+    /** Return the number of half-plies by which late-move reductions
+     *  shorten the search of the Ith queen move at a node DEPTH
+     *  half-plies from the horizon. */
+    private int reduction(int i, int depth) {
+        return _lateMoveReductions && i >= LMR_MOVES && depth > LMR_DEPTH
+            ? 2 : 0;
+    }
+
+    /** Return the AIs that search for me in splitRoot, creating them if
+     *  necessary. */
+    private AI[] workers() {
+        if (_workers == null || _workers.length != _threads) {
+            _workers = new AI[_threads];
+            for (int w = 0; w < _threads; w += 1) {
+                AI worker = (AI) create(null, null);
+                worker._threads = 0;
+                worker._parent = this;
+                _workers[w] = worker;
+            }
+        }
+        return _workers;
+    }
+
+    /** The queen moves at the root of one search by splitRoot and the
+     *  results of searching them. */
+    private static class RootSplit {
+
+        /** Queen moves QUEENMOVES (encoded as by queenMoves) from BOARD,
+         *  to be searched to DEPTH half-plies for SENSE. */
+        RootSplit(Board board, int[] queenMoves, int depth, int sense) {
+            _board = board;
+            _queenMoves = queenMoves;
+            _depth = depth;
+            _sense = sense;
+            _scores = new int[queenMoves.length];
+            _pvs = new Move[queenMoves.length][];
+            _probed = new boolean[queenMoves.length];
+        }
+
+        /** Using WORKER, search the queen moves whose indices NEXT hands
+         *  out, up to COUNT, as findSplitMove first searches those after
+         *  the first within ALPHA and BETA.  May run on any thread. */
+        void probe(AI worker, AtomicInteger next, int count, int alpha,
+                   int beta) {
+            for (int i = next.getAndIncrement(); i < count && !_aborted;
+                 i = next.getAndIncrement()) {
+                int reduction = worker.reduction(i, _depth);
+                if (worker._principalVariation || reduction > 0) {
+                    search(worker, i, nullAlpha(_sense, alpha, beta),
+                           nullBeta(_sense, alpha, beta), reduction, true);
+                } else {
+                    search(worker, i, alpha, beta, 0, false);
+                }
+            }
+        }
+
+        /** Search the Ith queen move, followed by its best spear throw,
+         *  with WORKER, on a copy of the root board, REDUCTION half-plies
+         *  less deep than usual, within ALPHA and BETA, and record the
+         *  result, and that the search was a probe iff PROBE. */
+        void search(AI worker, int i, int alpha, int beta, int reduction,
+                    boolean probe) {
+            Board board = new Board(_board);
+            Square from = board.sq(_queenMoves[i] & QUEEN_MOVE_MASK),
+                to = board.sq((_queenMoves[i] >> QUEEN_MOVE_BITS)
+                              & QUEEN_MOVE_MASK);
+            worker._aborted = false;
+            worker.startPv(board, _depth);
+            board.moveQueen(from, to);
+            int score = worker.throwSpear(board, _depth - 1 - reduction,
+                                          true, _sense, alpha, beta);
+            if (worker._aborted) {
+                _aborted = true;
+                return;
+            }
+            _scores[i] = score;
+            _pvs[i] = Arrays.copyOf(worker._spearPv[0],
+                                    worker._spearPvLength[0]);
+            _probed[i] = probe;
+        }
+
+        /** Root position. */
+        private final Board _board;
+        /** Queen moves from _board. */
+        private final int[] _queenMoves;
+        /** Depth of the search in half-plies, and sense of the side to
+         *  move. */
+        private final int _depth, _sense;
+        /** Values of the queen moves searched. */
+        private final int[] _scores;
+        /** Principal variations of the queen moves searched. */
+        private final Move[][] _pvs;
+        /** True for the queen moves last searched as probes. */
+        private final boolean[] _probed;
+        /** True iff some search was stopped. */
+        private volatile boolean _aborted;
+    }
+
+    /** Return the value of BOARD, on which a spear is pending, searching
+     *  to DEPTH half-plies for SENSE within ALPHA and BETA as for
+     *  findSplitMove.  Set _lastFoundSpear to the best throw iff
+     *  SAVEMOVE. */
+    private int throwSpear(Board board, int depth, boolean saveMove,
+                           int sense, int alpha, int beta) {
+        _nodes += 1;
+        int ply = board.numMoves() - _rootPly;
+        if (depth == 0) {
+            _spearPvLength[ply] = 0;
+            return staticScore(board);
+        }
+        int bestScore = -sense * INFTY;
+        Square bestSpear = null;
+        Iterator<Square> spears =
+            board.reachableFrom(board.pendingQueen(), null);
+        if (_regions && !board.contested(board.pendingQueen())) {
+            spears = bestSpears(board, sense, 1);
+        } else if (_selectivity > 0) {
+            spears = bestSpears(board, sense, width(_selectivity, depth));
+        }
+        for (Square spear : iterable(spears)) {
+            _generated += 1;
+            board.throwSpear(spear);
+            int score = findSplitMove(board, depth - 1, false, -sense,
+                                      alpha, beta);
+            board.unthrowSpear();
+            if (_aborted) {
+                return 0;
+            }
+            if (sense == 1 ? score > bestScore : score < bestScore) {
+                bestScore = score;
+                bestSpear = spear;
+                _spearPv[ply][0] =
+                    Move.mv(board.pendingFrom(), board.pendingQueen(), spear);
+                _spearPvLength[ply] = 1 + _pvLength[ply + 1];
+                System.arraycopy(_pv[ply + 1], 0, _spearPv[ply], 1,
+                                 _pvLength[ply + 1]);
+                if (sense == 1) {
+                    alpha = max(alpha, score);
+                } else {
+                    beta = min(beta, score);
+                }
+                if (beta <= alpha) {
+                    break;
+                }
+            }
+        }
+        if (saveMove) {
+            _lastFoundSpear = bestSpear;
+        }
+        return bestScore;
+    }
+
+    /** Return an iterator over the best WIDTH spear throws on BOARD,
+     *  on which a spear is pending and whose side to move has sense
+     *  SENSE, according to spearChange. */
+    private static Iterator<Square> bestSpears(Board board, int sense,
+                                               int width) {
+        long[] keyed = new long[INITIAL_QUEEN_MOVES];
+        int n = 0;
+        for (Square spear
+                 : iterable(board.reachableFrom(board.pendingQueen(),
+                                                null))) {
+            if (n == keyed.length) {
+                keyed = Arrays.copyOf(keyed, 2 * n);
+            }
+            int value = sense * spearChange(board, spear);
+            keyed[n] = ((long) -value << QUEEN_MOVE_BITS) | spear.index();
+            n += 1;
+        }
+        Arrays.sort(keyed, 0, n);
+        Square[] spears = new Square[min(n, width)];
+        for (int k = 0; k < spears.length; k += 1) {
+            spears[k] = board.sq((int) (keyed[k] & QUEEN_MOVE_MASK));
+        }
+        return Arrays.asList(spears).iterator();
+    }
+
+    /** Return the lower bound of the null window just above ALPHA (if
+     *  SENSE is 1) or just below BETA (if SENSE is -1), used to test
+     *  cheaply whether a move is worse than the best one so far. */
+    private static int nullAlpha(int sense, int alpha, int beta) {
+        return sense == 1 ? alpha : beta - 1;
+    }
+
+    /** Return the upper bound of the null window corresponding to
+     *  nullAlpha(SENSE, ALPHA, BETA). */
+    private static int nullBeta(int sense, int alpha, int beta) {
+        return sense == 1 ? alpha + 1 : beta;
+    }
+
+    /** Return true iff SCORE, the result of a null-window search
+     *  reduced by REDUCTION half-plies for SENSE, shows that the move
+     *  might be better than the best so far within ALPHA .. BETA, so
+     *  that it must be searched again with the full window and depth. */
+    private static boolean researchNeeded(int score, int sense, int alpha,
+                                          int beta, int reduction) {
+        if (sense == 1) {
+            return score > alpha && (reduction > 0 || score < beta);
+        } else {
+            return score < beta && (reduction > 0 || score > alpha);
+        }
+    }
+
+    /** Move the queen move of MOVE, if present, to the front of
+     *  QUEENMOVES, encoded as by queenMoves. */
+    private static void promote(int[] queenMoves, Move move) {
+        promote(queenMoves, (move.to().index() << QUEEN_MOVE_BITS)
+                | move.from().index());
+    }
+
+    /** Move the queen move CODE, encoded as by queenMoves, to the front
+     *  of QUEENMOVES, if present. */
+    private static void promote(int[] queenMoves, int code) {
+        for (int i = 0; i < queenMoves.length; i += 1) {
+            if (queenMoves[i] == code) {
+                System.arraycopy(queenMoves, 0, queenMoves, 1, i);
+                queenMoves[0] = code;
+                return;
+            }
+        }
+    }
+
+    /** Return the queen moves of the side to move on BOARD, whose sense
+     *  is SENSE, each encoded as the index of its from square plus the
+     *  index of its to square shifted by QUEEN_MOVE_BITS, best first
+     *  according to the mobility each leaves (as computed by
+     *  mobilityChange). */
+    private static int[] queenMoves(Board board, int sense) {
+        return queenMoves(board, sense, false);
+    }
+
+    /** Return the queen moves of the side to move on BOARD, whose sense
+     *  is SENSE, as for queenMoves(BOARD, SENSE), but if CONTESTED, only
+     *  those of queens in regions holding queens of both sides, or if
+     *  there are none of those, only the first of the rest (see
+     *  setRegions). */
+    private static int[] queenMoves(Board board, int sense,
+                                    boolean contested) {
+        Piece side = board.turn();
+        long[] keyed = new long[INITIAL_QUEEN_MOVES];
+        int n, size = board.size();
+        n = 0;
+        for (int i = 0; i < size * size; i += 1) {
+            Square from = board.sq(i);
+            if (board.get(from) != side
+                || contested && !board.contested(from)) {
+                continue;
+            }
+            for (Square to : iterable(board.reachableFrom(from, null))) {
+                int value = sense * mobilityChange(board, from, to);
+                if (n == keyed.length) {
+                    keyed = Arrays.copyOf(keyed, 2 * n);
+                }
+                keyed[n] = ((long) -value << (2 * QUEEN_MOVE_BITS))
+                    | (to.index() << QUEEN_MOVE_BITS) | from.index();
+                n += 1;
+            }
+        }
+        if (contested && n == 0) {
+            int[] all = queenMoves(board, sense, false);
+            return Arrays.copyOf(all, min(1, all.length));
+        }
+        Arrays.sort(keyed, 0, n);
+        int[] moves = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            moves[k] = (int) (keyed[k] & QUEEN_MOVE_CODE_MASK);
+        }
+        return moves;
+    }
+
+    /** Return the number of queen moves available to the pieces of SIDE
+     *  on BOARD, ignoring spears. */
+    static int mobility(Board board, Piece side) {
+        int size = board.size();
+        int result = 0;
+        for (int i = 0; i < size * size; i += 1) {
+            Square from = board.sq(i);
+            if (board.get(from) == side) {
+                result += queenMobility(board, from);
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of queen moves from FROM on BOARD. */
+    private static int queenMobility(Board board, Square from) {
+        int result = 0;
+        for (int dir = 0; dir < 8; dir += 1) {
+            result += run(board, from, dir);
+        }
+        return result;
+    }
+
+    /** Return the number of empty squares on BOARD in a line from S
+     *  (exclusive) in direction DIR. */
+    private static int run(Board board, Square s, int dir) {
+        int result = 0;
+        for (Square to = s.queenMove(dir, 1);
+             to != null && board.get(to) == EMPTY; to = to.queenMove(dir, 1)) {
+            result += 1;
+        }
+        return result;
+    }
+
+    /** Return the change in mobility(BOARD, WHITE) - mobility(BOARD,
+     *  BLACK) that moving the queen on FROM to TO would cause, where no
+     *  spear is pending.  Only queens that can see FROM or TO are
+     *  affected, so this is much cheaper than recomputing mobility from
+     *  scratch. */
+    static int mobilityChange(Board board, Square from, Square to) {
+        int[] affected = new int[2 * 8 + 1];
+        int n = 0;
+        affected[n++] = from.index();
+        n = addVisibleQueens(board, from, affected, n);
+        n = addVisibleQueens(board, to, affected, n);
+        int before = 0, after = 0;
+        for (int k = 0; k < n; k += 1) {
+            before += signedMobility(board, board.sq(affected[k]));
+        }
+        board.moveQueen(from, to);
+        affected[0] = to.index();
+        for (int k = 0; k < n; k += 1) {
+            after += signedMobility(board, board.sq(affected[k]));
+        }
+        board.unmoveQueen();
+        return after - before;
+    }
+
+    /** Return the change in mobility(BOARD, WHITE) - mobility(BOARD,
+     *  BLACK) that throwing a spear to the empty square SPEAR would
+     *  cause.  Each queen that can see SPEAR loses it and the empty
+     *  squares beyond it. */
+    static int spearChange(Board board, Square spear) {
+        int result = 0;
+        for (int dir = 0; dir < 8; dir += 1) {
+            Square s = spear.queenMove(dir, 1);
+            while (s != null && board.get(s) == EMPTY) {
+                s = s.queenMove(dir, 1);
+            }
+            if (s != null && board.get(s) != SPEAR) {
+                int loss = 1 + run(board, spear, (dir + 4) % 8);
+                result += board.get(s) == WHITE ? -loss : loss;
+            }
+        }
+        return result;
+    }
+
+    /** Add to AFFECTED[N ..] the indices of the queens on BOARD visible
+     *  from S along a line that are not already among AFFECTED[0 ..
+     *  N-1], and return the new number of indices. */
+    private static int addVisibleQueens(Board board, Square s,
+                                        int[] affected, int n) {
+        for (int dir = 0; dir < 8; dir += 1) {
+            Square q = s.queenMove(dir, 1);
+            while (q != null && board.get(q) == EMPTY) {
+                q = q.queenMove(dir, 1);
+            }
+            if (q == null || board.get(q) == SPEAR) {
+                continue;
+            }
+            if (!contains(affected, n, q.index())) {
+                affected[n++] = q.index();
+            }
+        }
+        return n;
+    }
+
+    /** Return true iff X is among A[0 .. N-1]. */
+    private static boolean contains(int[] a, int n, int x) {
+        for (int k = 0; k < n; k += 1) {
+            if (a[k] == x) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the number of queen moves of the queen on S on BOARD,
+     *  negated if it is black. */
+    private static int signedMobility(Board board, Square s) {
+        int result = queenMobility(board, s);
+        return board.get(s) == WHITE ? result : -result;
+    }
+
+    /** Return the number of moves searched at a node DEPTH half-plies
+     *  from the horizon when forward pruning keeps K moves at nodes just
+     *  above it. */
+    private static int width(int k, int depth) {
+        return k * ((depth + 1) / 2);
+    }
+
+    /** Additional depth searched while pondering beyond the depth I
+     *  would normally use. */
+    private static final int PONDER_EXTRA_DEPTH = 1;
+
+    /** Threads that run searches, shared by all AIs. */
+    private static final ExecutorService SEARCHERS =
+        Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "amazons-search");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** Minimum number of finished stored games in which a move must have
+     *  been played for me to choose it from the book. */
+    static final int MIN_BOOK_GAMES = 3;
+
+    /** Stored games whose statistics guide my choice of move, or null. */
+    private GameStore _book;
+
+    /** True iff I search with queen moves and spear throws as separate
+     *  plies. */
+    private boolean _splitPlies = true;
+
+    /** True iff I use principal variation search. */
+    private boolean _principalVariation = true;
+
+    /** True iff I deepen iteratively with aspiration windows. */
+    private boolean _aspiration;
+
+    /** True iff I reduce the depth of late queen moves. */
+    private boolean _lateMoveReductions;
+
+    /** Number of moves kept by forward pruning at nodes just above the
+     *  horizon, or 0 to search all moves. */
+    private int _selectivity;
+
+    /** Number of threads among which splitRoot divides the root of my
+     *  searches, or 0 to search on one thread. */
+    private int _threads;
+
+    /** True iff I search only moves in contested regions (see
+     *  setRegions). */
+    private boolean _regions;
+
+    /** The AIs that search for me in splitRoot, or null. */
+    private AI[] _workers;
+
+    /** The AI for whose splitRoot I search, or null. */
+    private AI _parent;
+
+    /** Bytes I may keep between searches (see setMemory). */
+    private long _memory;
+
+    /** My own transposition table, or null if I have none yet. */
+    private TranspositionTable _ownTable;
+
+    /** The transposition table used by my current search, or null. */
+    private TranspositionTable _table;
+
+    /** My configKey() as of the start of my current search. */
+    private long _configKey;
+
+    /** The transposition table shared by all AIs, or null. */
+    private static volatile TranspositionTable _sharedTable;
+
+    /** Magnitude of the value of a position won by filler moves (see
+     *  separatedScore), less the margin of the win. */
+    private static final int SEPARATED_VALUE = 1 << 24;
+
+    /** Multiplier of the board size mixed into table keys, so that
+     *  positions on boards of different sizes do not share entries. */
+    private static final long SIZE_KEY = 0x9e3779b97f4a7c15L;
+
+    /** Odd multiplier spreading configKey over all the bits of a
+     *  table key without making different keys equal. */
+    private static final long CONFIG_KEY = 0xc2b2ae3d27d4eb4fL;
+
+    /** Values positions at the leaves of my searches. */
+    private Evaluator _evaluator = new MobilityEvaluator();
+
+    /** Identifies _evaluator in configKey: 0 for the default, and
+     *  otherwise a number given by setEvaluator that no other call of it
+     *  gives, so that AIs share table entries only if they value
+     *  positions with the default evaluator or one set in the same call
+     *  (as those created from one template do). */
+    private int _evaluatorId;
+
+    /** Source of _evaluatorId. */
+    private static final AtomicInteger EVALUATOR_IDS = new AtomicInteger();
+
+    /** Half-width of an aspiration window. */
+    static final int ASPIRATION_WINDOW = 40;
+
+    /** Number of queen moves at a node searched to full depth before
+     *  late-move reductions start. */
+    static final int LMR_MOVES = 6;
+
+    /** Late-move reductions apply only at nodes more than this many
+     *  half-plies from the horizon. */
+    static final int LMR_DEPTH = 3;
+
+    /** Best move at the previous depth of iterative deepening, searched
+     *  first at the next, or null. */
+    private Move _pvMove;
+
+    /** Number of aspiration windows that failed. */
+    private int _aspirationFailures;
+
+    /** Number of moves made before the position at the root of the
+     *  current search. */
+    private int _rootPly;
+
+    /** _pv[P][0 .. _pvLength[P] - 1] is the principal variation of the
+     *  last position searched P moves from the root with no spear
+     *  pending; _spearPv and _spearPvLength are the same for positions
+     *  with a spear pending. */
+    private Move[][] _pv, _spearPv;
+
+    /** Lengths of the elements of _pv and _spearPv. */
+    private int[] _pvLength, _spearPvLength;
+
+    /** Principal variation of my last search that finished. */
+    private Move[] _bestPv = new Move[0];
+
+    /** Depth of my last search that finished. */
+    private int _depthReached;
+
+    /** Time (as given by System.currentTimeMillis) at which to stop
+     *  searching, or 0 if there is none. */
+    private volatile long _deadline;
+
+    /** Advises how deep to search under the game clock, or null if the
+     *  game is untimed. */
+    private TimeManager _timeManager;
+
+    /** Greatest depth searched under the game clock. */
+    private static final int MAX_TIMED_DEPTH = 30;
+
+    /** True iff the search for my move should stop as soon as it may
+     *  (see moveNow). */
+    private volatile boolean _moveNow;
+
+    /** True iff the current search is for my move in a game, and
+     *  reports its progress to my controller after each depth. */
+    private boolean _reporting;
+
+    /** Time at which the search for my move started. */
+    private long _progressStart;
+
+    /** Value of _nodes when the search for my move started. */
+    private long _progressNodes;
+
+    /** True iff the current search has finished at some depth, so that
+     *  it may be stopped by _deadline. */
+    private boolean _searchDone;
+
+    /** The clock is checked when the number of nodes visited has these
+     *  bits 0. */
+    private static final long DEADLINE_CHECK_MASK = (1 << 10) - 1;
+
+    /** Value found by my last completed search. */
+    private int _lastScore;
+
+    /** Number of bits per square in an encoded queen move. */
+    private static final int QUEEN_MOVE_BITS = 8;
+
+    /** Mask extracting one square of an encoded queen move. */
+    private static final int QUEEN_MOVE_MASK = (1 << QUEEN_MOVE_BITS) - 1;
+
+    /** Mask extracting an encoded queen move. */
+    private static final int QUEEN_MOVE_CODE_MASK =
+        (1 << (2 * QUEEN_MOVE_BITS)) - 1;
+
+    /** Initial capacity for the queen moves of a position. */
+    private static final int INITIAL_QUEEN_MOVES = 128;
+
+    /** The best spear throw found by the last throwSpear that saved
+     *  one. */
+    private Square _lastFoundSpear;
+
+    /** Number of positions visited by my searches. */
+    private long _nodes;
+
+    /** Number of moves generated by my searches (see
+     *  Metrics.MOVES_GENERATED). */
+    private long _generated;
+
+    /** True iff I search on my opponent's time. */
+    private boolean _ponder;
+
+    /** The search on my opponent's time in progress, if any. */
+    private volatile Ponder _pondering;
+
+    /** Set to true to make the current search return immediately
+     *  (with a meaningless value). */
+    private volatile boolean _aborted;
+
+    /** Number of times a pondered position was reached. */
+    private int _ponderHits;
+
+    /** Number of times a pondered position was not reached. */
+    private int _ponderMisses;
+
     /**
      * Return a heuristically determined maximum search depth
      * based on characteristics of BOARD.
@@ -144,6 +1670,24 @@ class AI extends Player {
         }
     }
 
+    /** Return the value of BOARD, on which no region holds queens of
+     *  both sides, taking each side to make as many moves as
+     *  Board.fillers allows it: the side to move wins iff it has more.
+     *  The value exceeds any from an Evaluator, but stops short of a
+     *  certain win, since a side may be unable to fill all of its
+     *  regions.  The margin of the win is added, so that larger wins are
+     *  preferred. */
+    private static int separatedScore(Board board) {
+        int margin = board.fillers(WHITE) - board.fillers(BLACK);
+        if (board.turn() == BLACK) {
+            margin += 1;
+        }
+        if (margin <= 0) {
+            margin -= 1;
+        }
+        return Integer.signum(margin) * SEPARATED_VALUE + margin;
+    }
+
     /**
      * Return a heuristic value for BOARD.
      */
@@ -154,19 +1698,7 @@ class AI extends Player {
         } else if (winner == WHITE) {
             return WINNING_VALUE;
         } else {
-            int numWhiteMoves = 0;
-            int numBlackMoves = 0;
-            Iterator<Move> whiteMoves = board.legalMoves(WHITE);
-            Iterator<Move> blackMoves = board.legalMoves(BLACK);
-            while (whiteMoves.hasNext()) {
-                numWhiteMoves++;
-                whiteMoves.next();
-            }
-            while (blackMoves.hasNext()) {
-                numBlackMoves++;
-                blackMoves.next();
-            }
-            return numWhiteMoves - numBlackMoves;
+            return _evaluator.evaluate(board);
         }
     }
 }
@@ -0,0 +1,686 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Tests of the AI player.
+ *  @author Mehak Sharma
+ */
+public class AITest {
+
+    /** Return a Controller whose output is discarded, with a game
+     *  started from the position TARGET (as for UnitTest.buildBoard). */
+    static Controller controller(Piece[][] target) {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        Controller result =
+            new Controller(new NullView(), null, new TextReporter(sink, sink),
+                           new TextPlayer(), new AI(), sink);
+        result.start();
+        Board b = result.board();
+        for (int col = 0; col < Board.SIZE; col += 1) {
+            for (int row = 0; row < Board.SIZE; row += 1) {
+                b.put(target[Board.SIZE - row - 1][col], Square.sq(col, row));
+            }
+        }
+        return result;
+    }
+
+    /** Wait until AI predicts a reply, and return it. */
+    private static Move awaitPrediction(AI ai) throws InterruptedException {
+        for (int i = 0; i < 1000 && ai.predictedReply() == null; i += 1) {
+            Thread.sleep(10);
+        }
+        return ai.predictedReply();
+    }
+
+    /** Tests that a pondering AI reuses its search when the predicted
+     *  reply is played. */
+    @Test
+    public void testPonderHit() throws Exception {
+        Controller c = controller(UnitTest.LEGALMOVESTESTBOARD);
+        AI ai = (AI) new AI(true).create(WHITE, c);
+        c.executeCommand(ai.myMoveAsync().join());
+        Move reply = awaitPrediction(ai);
+        assertNotNull(reply);
+        c.executeCommand(reply.toString());
+        Move mine = Move.mv(ai.myMoveAsync().join());
+        ai.stopPondering();
+        assertEquals(1, ai.ponderHits());
+        assertEquals(0, ai.ponderMisses());
+        assertTrue(c.board().isLegal(mine));
+    }
+
+    /** Tests that a pondering AI searches afresh when its prediction
+     *  is wrong. */
+    @Test
+    public void testPonderMiss() throws Exception {
+        Controller c = controller(UnitTest.LEGALMOVESTESTBOARD);
+        AI ai = (AI) new AI(true).create(WHITE, c);
+        c.executeCommand(ai.myMoveAsync().join());
+        Move reply = awaitPrediction(ai);
+        for (Move other : Utils.iterable(c.board().legalMoves())) {
+            if (other != reply) {
+                c.executeCommand(other.toString());
+                break;
+            }
+        }
+        Move mine = Move.mv(ai.myMoveAsync().join());
+        ai.stopPondering();
+        assertEquals(0, ai.ponderHits());
+        assertEquals(1, ai.ponderMisses());
+        assertTrue(c.board().isLegal(mine));
+    }
+
+    /** Return a position reached from the initial one by MOVES random
+     *  moves chosen using SEED. */
+    static Board randomPosition(int moves, long seed) {
+        Random random = new Random(seed);
+        Board b = new Board();
+        for (int i = 0; i < moves; i += 1) {
+            List<Move> legal = new ArrayList<>();
+            for (Move move : Utils.iterable(b.legalMoves())) {
+                legal.add(move);
+            }
+            b.makeMove(legal.get(random.nextInt(legal.size())));
+        }
+        return b;
+    }
+
+    /** Tests moving a queen and throwing its spear separately. */
+    @Test
+    public void testHalfMoves() {
+        Board b = new Board(), original = new Board();
+        long hash = b.hash();
+        Square from = Square.sq("d1"), to = Square.sq("d3"),
+            spear = Square.sq("d1");
+        b.moveQueen(from, to);
+        assertTrue(b.spearPending());
+        assertEquals(to, b.pendingQueen());
+        assertEquals(WHITE, b.turn());
+        assertFalse(original.equals(b));
+        assertTrue(hash != b.hash());
+        b.throwSpear(spear);
+        assertFalse(b.spearPending());
+        assertEquals(BLACK, b.turn());
+        Board whole = new Board();
+        whole.makeMove(from, to, spear);
+        assertEquals(whole, b);
+        assertEquals(whole.hash(), b.hash());
+        assertEquals(Move.mv(from, to, spear), b.move(0));
+        b.unthrowSpear();
+        assertTrue(b.spearPending());
+        assertEquals(0, b.numMoves());
+        b.unmoveQueen();
+        assertEquals(original, b);
+        assertEquals(hash, b.hash());
+    }
+
+    /** Tests that searching with split plies finds moves of the same
+     *  value as searching whole moves, visiting fewer positions. */
+    @Test
+    public void testSplitPlies() {
+        for (long seed = 1; seed <= 3; seed += 1) {
+            Board b = randomPosition(20, seed);
+            AI whole = new AI(), split = new AI();
+            whole.setSplitPlies(false);
+            Move wholeMove = whole.bestMove(b, 2);
+            Move splitMove = split.bestMove(b, 2);
+            assertTrue(b.isLegal(wholeMove));
+            assertTrue(b.isLegal(splitMove));
+            assertEquals(whole.lastScore(), split.lastScore());
+            assertTrue(split.nodes() < whole.nodes());
+        }
+    }
+
+    /** Tests that principal variation search and aspiration windows do
+     *  not change the value of a search, and that late-move reductions
+     *  still give legal moves. */
+    @Test
+    public void testSearchTechniques() {
+        for (long seed = 1; seed <= 3; seed += 1) {
+            Board b = randomPosition(20, seed);
+            AI plain = SearchBenchmark.configured(new boolean[] {
+                    false, false, false }),
+                exact = SearchBenchmark.configured(new boolean[] {
+                        true, true, false }),
+                reduced = SearchBenchmark.configured(new boolean[] {
+                        true, true, true });
+            plain.bestMove(b, 2);
+            assertTrue(b.isLegal(exact.bestMove(b, 2)));
+            assertEquals(plain.lastScore(), exact.lastScore());
+            assertTrue(b.isLegal(reduced.bestMove(b, 2)));
+        }
+    }
+
+    /** Tests that searches divided among threads give the same move,
+     *  value, principal variation, and node count at any number of
+     *  threads, and, without late-move reductions, the same value as a
+     *  search on one thread. */
+    @Test
+    public void testDeterministicThreads() {
+        for (long seed = 1; seed <= 3; seed += 1) {
+            Board b = randomPosition(30, seed);
+            AI serial = SearchBenchmark.configured(new boolean[] {
+                    true, true, false });
+            serial.bestMove(b, 2);
+            Move move = null;
+            Move[] pv = null;
+            long nodes = 0;
+            int score = 0;
+            for (int threads = 1; threads <= 4; threads += 1) {
+                for (boolean reduced : new boolean[] { false, true }) {
+                    AI ai = SearchBenchmark.configured(new boolean[] {
+                            true, true, reduced });
+                    ai.setThreads(threads);
+                    Move found = ai.bestMove(b, 2);
+                    assertTrue(b.isLegal(found));
+                    if (!reduced) {
+                        assertEquals(serial.lastScore(), ai.lastScore());
+                        continue;
+                    } else if (move == null) {
+                        move = found;
+                        pv = ai.principalVariation();
+                        nodes = ai.nodes();
+                        score = ai.lastScore();
+                    }
+                    assertEquals(move, found);
+                    assertArrayEquals(pv, ai.principalVariation());
+                    assertEquals(nodes, ai.nodes());
+                    assertEquals(score, ai.lastScore());
+                }
+            }
+        }
+    }
+
+    /** Tests storing, finding, and replacing transposition table
+     *  entries. */
+    @Test
+    public void testTranspositionTable() {
+        TranspositionTable table = new TranspositionTable(1000);
+        assertEquals(32, table.capacity());
+        assertEquals(512, table.bytes());
+        long data = TranspositionTable.encode(-1234, 6,
+                                              TranspositionTable.UPPER,
+                                              0x6354);
+        assertEquals(-1234, TranspositionTable.score(data));
+        assertEquals(6, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.UPPER,
+                     TranspositionTable.bound(data));
+        assertEquals(0x6354, TranspositionTable.move(data));
+        table.store(7, data);
+        assertEquals(data, table.probe(7));
+        assertEquals(TranspositionTable.NONE, table.probe(7 + 32));
+        long shallow = TranspositionTable.encode(5, 2,
+                                                 TranspositionTable.EXACT, 0);
+        table.store(7, shallow);
+        assertEquals("kept deeper entry", data, table.probe(7));
+        table.store(7 + 32, shallow);
+        assertEquals(shallow, table.probe(7 + 32));
+        assertEquals(TranspositionTable.NONE, table.probe(7));
+        assertEquals(1, table.used());
+        table.clear();
+        assertEquals(0, table.used());
+        assertEquals(TranspositionTable.NONE, table.probe(7 + 32));
+    }
+
+    /** Tests that a memory budget set by command gives each AI a table
+     *  of bounded size, reported by command, that does not change the
+     *  values of exact searches. */
+    @Test
+    public void testMemoryBudget() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true);
+        Controller controller =
+            new Controller(new NullView(), null, new TextReporter(out, out),
+                           new TextPlayer(), new AI(), out);
+        controller.start();
+        controller.executeCommand("memory 64k");
+        AI ai = (AI) controller.player(BLACK);
+        Board b = randomPosition(30, 2);
+        AI plain = SearchBenchmark.configured(new boolean[] {
+                true, false, false });
+        assertEquals(plain.value(b, 2), ai.value(b, 2));
+        assertTrue(ai.nodes() <= plain.nodes());
+        controller.executeCommand("memory");
+        assertTrue(bytes.toString(),
+                   bytes.toString().contains("Black: budget 65536 bytes,"
+                                             + " table of 4096 entries"));
+        controller.executeCommand("auto white");
+        bytes.reset();
+        controller.executeCommand("memory 0");
+        controller.executeCommand("memory");
+        assertTrue(bytes.toString().contains("White: budget 0 bytes,"
+                                             + " no table"));
+        try {
+            controller.executeCommand("memory 99999999999999g");
+            fail("huge budget accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Tests that threads storing to and probing a shared off-heap
+     *  table at once never find one position's data under another's
+     *  key, and that AIs sharing a table search exactly, even when
+     *  configured differently. */
+    @Test
+    public void testSharedTable() throws Exception {
+        TranspositionTable table = TranspositionTable.offHeap(1 << 12);
+        assertTrue(table.isOffHeap());
+        assertEquals(256, table.capacity());
+        List<CompletableFuture<Integer>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t += 1) {
+            long seed = t;
+            writers.add(CompletableFuture.supplyAsync(() -> {
+                Random random = new Random(seed);
+                int wrong = 0;
+                for (int i = 0; i < 200000; i += 1) {
+                    long key = random.nextLong() & 0xfffffL;
+                    long data = TranspositionTable.encode(
+                        (int) key, 1, TranspositionTable.EXACT, 0);
+                    long found = table.probe(key);
+                    if (found != TranspositionTable.NONE && found != data) {
+                        wrong += 1;
+                    }
+                    table.store(key, data);
+                }
+                return wrong;
+            }));
+        }
+        for (CompletableFuture<Integer> writer : writers) {
+            assertEquals(0, writer.get().intValue());
+        }
+        assertTrue(table.used() > 0);
+
+        AI.setSharedTable(1 << 20);
+        try {
+            List<CompletableFuture<Integer>> searches = new ArrayList<>();
+            for (long seed = 1; seed <= 3; seed += 1) {
+                Board b = randomPosition(30, seed);
+                for (int k = 0; k < 2; k += 1) {
+                    AI ai = SearchBenchmark.configured(new boolean[] {
+                            true, true, false });
+                    searches.add(CompletableFuture.supplyAsync(
+                        () -> ai.value(b, 2)));
+                }
+            }
+            CompletableFuture.allOf(
+                searches.toArray(new CompletableFuture<?>[0])).join();
+            AI.setSharedTable(0);
+            for (long seed = 1; seed <= 3; seed += 1) {
+                Board b = randomPosition(30, seed);
+                int exact = SearchBenchmark.configured(new boolean[] {
+                        true, true, false }).value(b, 2);
+                for (int k = 0; k < 2; k += 1) {
+                    assertEquals(exact, searches.remove(0).get().intValue());
+                }
+            }
+            Board b = randomPosition(30, 1);
+            int exact = SearchBenchmark.configured(new boolean[] {
+                    true, true, false }).value(b, 2);
+            AI.setSharedTable(1 << 20);
+            AI territory = SearchBenchmark.configured(new boolean[] {
+                    true, true, false });
+            territory.setEvaluator(new TerritoryEvaluator());
+            territory.value(b, 2);
+            assertEquals("entries kept apart by configuration", exact,
+                         SearchBenchmark.configured(new boolean[] {
+                                 true, true, false }).value(b, 2));
+            AI[] weighted = new AI[2];
+            int[] alone = new int[2];
+            for (int i = 0; i < 2; i += 1) {
+                weighted[i] = SearchBenchmark.configured(new boolean[] {
+                        true, true, false });
+                weighted[i].setEvaluator(new WeightedEvaluator(
+                    new double[] { 1 + i, 1 - i, 2, 0 }));
+                AI.setSharedTable(0);
+                alone[i] = weighted[i].value(b, 2);
+            }
+            AI.setSharedTable(1 << 20);
+            weighted[0].value(b, 2);
+            assertEquals("entries kept apart by evaluator weights",
+                         alone[1], weighted[1].value(b, 2));
+            AI ai = new AI();
+            AI.setSharedTable(1 << 16);
+            ai.value(randomPosition(30, 1), 1);
+            assertTrue(ai.memoryUsage(), ai.memoryUsage().startsWith(
+                "budget 0 bytes, shared table of 4096 entries"));
+        } finally {
+            AI.setSharedTable(0);
+        }
+    }
+
+    /** Return mobility(B, WHITE) - mobility(B, BLACK). */
+    private static int mobility(Board b) {
+        return AI.mobility(b, WHITE) - AI.mobility(b, BLACK);
+    }
+
+    /** Tests the incremental mobility evaluator against recomputation
+     *  from scratch, for every queen move and spear throw. */
+    @Test
+    public void testMobilityChange() {
+        for (long seed = 1; seed <= 3; seed += 1) {
+            Board b = randomPosition(30, seed);
+            int before = mobility(b);
+            for (Move move : Utils.iterable(b.legalMoves())) {
+                if (move.spear() != move.from()) {
+                    continue;
+                }
+                int change = AI.mobilityChange(b, move.from(), move.to());
+                b.moveQueen(move.from(), move.to());
+                int moved = mobility(b);
+                assertEquals(before + change, moved);
+                for (Square spear
+                         : Utils.iterable(b.reachableFrom(move.to(),
+                                                          null))) {
+                    int thrown = AI.spearChange(b, spear);
+                    b.throwSpear(spear);
+                    assertEquals(moved + thrown, mobility(b));
+                    b.unthrowSpear();
+                }
+                b.unmoveQueen();
+            }
+        }
+    }
+
+    /** Tests that forward pruning visits fewer positions and still
+     *  gives legal moves. */
+    @Test
+    public void testForwardPruning() {
+        Board b = randomPosition(20, 1);
+        AI full = new AI(), selective = new AI();
+        selective.setSelectivity(4);
+        assertTrue(b.isLegal(full.bestMove(b, 2)));
+        assertTrue(b.isLegal(selective.bestMove(b, 2)));
+        assertTrue(selective.nodes() < full.nodes());
+    }
+
+    /** Tests that searching only contested regions visits fewer
+     *  positions and still gives legal moves, and that once the board is
+     *  divided, the side with more filler moves is found to win. */
+    @Test
+    public void testRegions() {
+        Board b = randomPosition(60, 1);
+        AI full = new AI(), regions = new AI();
+        regions.setRegions(true);
+        assertFalse(b.separated());
+        assertTrue(b.isLegal(full.bestMove(b, 3)));
+        assertTrue(b.isLegal(regions.bestMove(b, 3)));
+        assertTrue(regions.nodes() < full.nodes());
+
+        b = randomPosition(60, 2);
+        assertTrue(b.separated());
+        assertTrue(b.isLegal(regions.bestMove(b, 3)));
+        Piece side = b.turn();
+        boolean ahead = b.fillers(side) > b.fillers(side.opponent());
+        int value = regions.value(b, 2);
+        assertEquals(ahead, side == WHITE ? value > 0 : value < 0);
+    }
+
+    /** Tests that the bitboard territory evaluator agrees with the
+     *  scalar one, and that both find the initial position even. */
+    @Test
+    public void testTerritory() {
+        Evaluator scalar = new TerritoryEvaluator(),
+            bitboard = new BitboardEvaluator();
+        assertEquals(0, scalar.evaluate(new Board()));
+        assertEquals(0, bitboard.evaluate(new Board()));
+        for (long seed = 1; seed <= 20; seed += 1) {
+            Board b = randomPosition((int) seed * 3, seed);
+            assertEquals(scalar.evaluate(b), bitboard.evaluate(b));
+        }
+        for (int n = Square.MIN_SIZE; n <= Square.MAX_SIZE; n += 1) {
+            Board b = BoardBenchmark.middleGame(n, new Random(n));
+            assertEquals(scalar.evaluate(b), bitboard.evaluate(b));
+        }
+        Board b = randomPosition(20, 1);
+        AI ai = new AI();
+        ai.setEvaluator(bitboard);
+        assertTrue(b.isLegal(ai.bestMove(b, 2)));
+    }
+
+    /** Tests that an analysis gives a legal principal variation
+     *  starting with its best move, and respects its time limit. */
+    @Test
+    public void testAnalyze() {
+        Board b = randomPosition(20, 2);
+        Analysis analysis = new AI().analyze(b, 2, 0);
+        assertEquals(2, analysis.depth());
+        Move[] pv = analysis.pv();
+        assertEquals(2, pv.length);
+        assertEquals(analysis.move(), pv[0]);
+        Board c = new Board(b);
+        for (Move move : pv) {
+            assertTrue(c.isLegal(move));
+            c.makeMove(move);
+        }
+        long start = System.currentTimeMillis();
+        analysis = new AI().analyze(b, 20, 200);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(analysis.depth() >= 1 && analysis.depth() < 20);
+        assertTrue(b.isLegal(analysis.move()));
+    }
+
+    /** Tests that the batch analyzer reports positions in input order. */
+    @Test
+    public void testAnalyzer() throws IOException {
+        String input = "d1-d7(g7)\n# comment\n\nd1-d7(g7) g10-e10(a6)\n"
+            + "d1-d10(d1)\n";
+        StringWriter output = new StringWriter();
+        Analyzer analyzer = new Analyzer(new AI(), 1, 0, 3);
+        assertEquals(3, analyzer.analyze(new StringReader(input),
+                                         output));
+        String[] lines = output.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("#"));
+        assertTrue(lines[1].startsWith("1 "));
+        assertTrue(lines[2].startsWith("4 "));
+        assertEquals("5 invalid move d1-d10(d1)", lines[3]);
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        assertTrue(b.isLegal(Move.mv(lines[1].split(" ")[1])));
+    }
+
+    /** Tests that multi-PV analysis finds the best move first and gives
+     *  each move its exact value. */
+    @Test
+    public void testAnalyzeLines() {
+        boolean[] exact = { true, true, false };
+        Board b = randomPosition(20, 3);
+        List<Analysis> lines =
+            SearchBenchmark.configured(exact).analyzeLines(b, 2, 3, 0);
+        assertEquals(3, lines.size());
+        Analysis best = SearchBenchmark.configured(exact).analyze(b, 2, 0);
+        assertEquals(best.score(), lines.get(0).score());
+        int sense = b.turn() == WHITE ? 1 : -1;
+        for (int k = 0; k < lines.size(); k += 1) {
+            Analysis line = lines.get(k);
+            assertEquals(line.move(), line.pv()[0]);
+            if (k > 0) {
+                assertTrue(sense * line.score()
+                           <= sense * lines.get(k - 1).score());
+                assertFalse(line.move().equals(lines.get(k - 1).move()));
+            }
+            Board after = new Board(b);
+            after.makeMove(line.move());
+            AI check = SearchBenchmark.configured(exact);
+            check.bestMove(after, 1);
+            assertEquals(line.score(), check.lastScore());
+        }
+    }
+
+    /** Tests that a distributed search finds the best of the values of
+     *  the root moves, and survives losing workers. */
+    @Test
+    public void testDistributedSearch() throws IOException {
+        Board b = randomPosition(40, 1);
+        int sense = b.turn() == WHITE ? 1 : -1;
+        Integer best = null;
+        for (Move move : Utils.iterable(b.legalMoves())) {
+            Board after = new Board(b);
+            after.makeMove(move);
+            int value = new AI().value(after, 1);
+            if (best == null || sense * value > sense * best) {
+                best = value;
+            }
+        }
+        List<SearchWorker> workers = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < 2; i += 1) {
+            SearchWorker worker = new SearchWorker(0, new AI());
+            new Thread(worker).start();
+            workers.add(worker);
+            addresses.add(new InetSocketAddress("localhost", worker.port()));
+        }
+        ServerSocket flaky = new ServerSocket(0);
+        Thread dropper = new Thread(() -> {
+            try (Socket conn = flaky.accept()) {
+                BufferedReader in = new BufferedReader(
+                    new InputStreamReader(conn.getInputStream()));
+                in.readLine();
+                conn.getOutputStream().write("ok\n".getBytes());
+                in.readLine();
+            } catch (IOException excp) {
+                /* Ignore. */
+            }
+        });
+        dropper.start();
+        addresses.add(new InetSocketAddress("localhost",
+                                            flaky.getLocalPort()));
+        DistributedSearch search =
+            new DistributedSearch(addresses, 8, 0, new AI());
+        Analysis result = search.search(b, 2);
+        assertEquals(best.intValue(), result.score());
+        assertTrue(b.isLegal(result.move()));
+        assertEquals(1, search.workersLost());
+        assertTrue(workers.get(0).searches() + workers.get(1).searches()
+                   > 0);
+        flaky.close();
+        for (SearchWorker worker : workers) {
+            worker.close();
+        }
+        result = search.search(b, 2);
+        assertEquals(best.intValue(), result.score());
+        assertEquals(3, search.workersLost());
+        try {
+            search.search(new Board(), 0);
+            fail("depth 0 accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Tests that workers search positions on boards other than the
+     *  standard one, rather than being counted lost. */
+    @Test
+    public void testDistributedSmallBoard() throws IOException {
+        Board b = new Board(6);
+        Random random = new Random(1);
+        for (int i = 0; i < 8; i += 1) {
+            List<Move> legal = new ArrayList<>();
+            for (Move move : Utils.iterable(b.legalMoves())) {
+                legal.add(move);
+            }
+            b.makeMove(legal.get(random.nextInt(legal.size())));
+        }
+        int sense = b.turn() == WHITE ? 1 : -1;
+        Integer best = null;
+        for (Move move : Utils.iterable(b.legalMoves())) {
+            Board after = new Board(b);
+            after.makeMove(move);
+            int value = new AI().value(after, 1);
+            if (best == null || sense * value > sense * best) {
+                best = value;
+            }
+        }
+        SearchWorker worker = new SearchWorker(0, new AI());
+        new Thread(worker).start();
+        try {
+            DistributedSearch search = new DistributedSearch(
+                List.of(new InetSocketAddress("localhost", worker.port())),
+                8, 0, new AI());
+            Analysis result = search.search(b, 2);
+            assertEquals(0, search.workersLost());
+            assertTrue(worker.searches() > 0);
+            assertEquals(best.intValue(), result.score());
+            assertTrue(b.isLegal(result.move()));
+        } finally {
+            worker.close();
+        }
+    }
+
+    /** Tests that an AI reports its progress while searching for its
+     *  move, and moves promptly when asked to. */
+    @Test
+    public void testMoveNow() throws Exception {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        List<Analysis> progress = new ArrayList<>();
+        Reporter reporter = new TextReporter(sink, sink) {
+            @Override
+            public void reportProgress(Analysis analysis) {
+                synchronized (progress) {
+                    progress.add(analysis);
+                    progress.notifyAll();
+                }
+            }
+        };
+        Controller controller =
+            new Controller(new NullView(), null, reporter, new TextPlayer(),
+                           new AI(), sink);
+        controller.start();
+        controller.setClock(null, 1000000000, 0);
+        controller.move(Square.sq("d1"), Square.sq("d7"), Square.sq("g7"));
+        CompletableFuture<String> reply =
+            controller.player(BLACK).myMoveAsync();
+        synchronized (progress) {
+            while (progress.size() < 2) {
+                progress.wait();
+            }
+        }
+        assertFalse(reply.isDone());
+        long start = System.currentTimeMillis();
+        controller.moveNow();
+        Move move = Move.mv(reply.get(10, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(controller.board().isLegal(move));
+        synchronized (progress) {
+            for (int k = 0; k < progress.size(); k += 1) {
+                assertEquals(k + 1, progress.get(k).depth());
+            }
+            assertEquals(progress.get(progress.size() - 1).move(), move);
+            progress.clear();
+        }
+
+        controller.moveNow();
+        reply = controller.player(BLACK).myMoveAsync();
+        synchronized (progress) {
+            while (progress.size() < 2 && !reply.isDone()) {
+                progress.wait(100);
+            }
+            assertTrue("stale request to move now ignored",
+                       progress.size() >= 2);
+        }
+        controller.moveNow();
+        assertTrue(controller.board().isLegal(
+            Move.mv(reply.get(10, TimeUnit.SECONDS))));
+    }
+}
@@ -0,0 +1,79 @@
+package amazons;
+
+/** The result of an AI's analysis of a position: the best move found,
+ *  its value (positive favoring White), the depth of the search that
+ *  found it, the number of positions visited, the time taken, and the
+ *  principal variation.
+ *  @author Mehak Sharma
+ */
+final class Analysis {
+
+    /** An analysis finding MOVE with value SCORE by a search of depth
+     *  DEPTH that visited NODES positions in MILLIS milliseconds, with
+     *  principal variation PV. */
+    Analysis(Move move, int score, int depth, long nodes, long millis,
+             Move[] pv) {
+        _move = move;
+        _score = score;
+        _depth = depth;
+        _nodes = nodes;
+        _millis = millis;
+        _pv = pv.clone();
+    }
+
+    /** Return the best move. */
+    Move move() {
+        return _move;
+    }
+
+    /** Return the value of the best move. */
+    int score() {
+        return _score;
+    }
+
+    /** Return the depth searched. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the number of positions visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the time taken in milliseconds. */
+    long millis() {
+        return _millis;
+    }
+
+    /** Return the principal variation. */
+    Move[] pv() {
+        return _pv.clone();
+    }
+
+    /** Returns the best move, score, depth, nodes, time, and principal
+     *  variation, separated by blanks. */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%s %d %d %d %d", _move, _score, _depth,
+                                    _nodes, _millis));
+        for (Move move : _pv) {
+            result.append(' ').append(move);
+        }
+        return result.toString();
+    }
+
+    /** The best move. */
+    private final Move _move;
+    /** Value of _move. */
+    private final int _score;
+    /** Depth searched. */
+    private final int _depth;
+    /** Positions visited. */
+    private final long _nodes;
+    /** Time taken (milliseconds). */
+    private final long _millis;
+    /** Principal variation. */
+    private final Move[] _pv;
+}
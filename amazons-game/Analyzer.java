@@ -0,0 +1,195 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static amazons.Piece.*;
+
+/** Analyzes many positions in parallel.  Each non-blank line of the
+ *  input describes a position as the sequence of moves (in the
+ *  FROM-TO(SPEAR) notation, separated by blanks) leading to it from the
+ *  initial position; everything from a '#' on is a comment.  Each position is
+ *  searched by its own AI on a pool of worker threads, to a maximum
+ *  depth and for a maximum time, and one line is written for it, in
+ *  input order, as soon as it and all earlier positions are done:
+ *  the input line number, then either the analysis (best move, value,
+ *  depth, nodes, milliseconds, and principal variation; see Analysis)
+ *  or a note that the game is over or the line is invalid.  When
+ *  analyzing the best LINES > 1 moves of each position, each analysis
+ *  line is numbered LINE.K for the Kth best move.
+ *  Usage: java amazons.Analyzer INPUT OUTPUT [DEPTH [MILLIS [THREADS
+ *                                [LINES]]]].
+ *  @author Mehak Sharma
+ */
+final class Analyzer {
+
+    /** Default maximum search depth. */
+    static final int DEFAULT_DEPTH = 3;
+
+    /** Default maximum time per position, in milliseconds. */
+    static final long DEFAULT_MILLIS = 5000;
+
+    /** An analyzer searching each position with an AI created from
+     *  TEMPLATE to at most DEPTH moves and for at most about MILLIS
+     *  milliseconds (unlimited if 0), using THREADS threads. */
+    Analyzer(AI template, int depth, long millis, int threads) {
+        this(template, depth, millis, threads, 1);
+    }
+
+    /** An analyzer as for Analyzer(TEMPLATE, DEPTH, MILLIS, THREADS)
+     *  that reports the best LINES moves of each position. */
+    Analyzer(AI template, int depth, long millis, int threads,
+             int lines) {
+        _template = template;
+        _depth = depth;
+        _millis = millis;
+        _threads = threads;
+        _lines = lines;
+    }
+
+    /** Analyze the positions in the file named by ARGS[0], writing to
+     *  the file named by ARGS[1], with limits given by the rest of
+     *  ARGS. */
+    public static void main(String... args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java amazons.Analyzer INPUT OUTPUT"
+                               + " [DEPTH [MILLIS [THREADS [LINES]]]]");
+            System.exit(1);
+        }
+        int depth = args.length > 2 ? Integer.parseInt(args[2])
+            : DEFAULT_DEPTH;
+        long millis = args.length > 3 ? Long.parseLong(args[3])
+            : DEFAULT_MILLIS;
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+            : Runtime.getRuntime().availableProcessors();
+        int lines = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        Analyzer analyzer =
+            new Analyzer(new AI(), depth, millis, threads, lines);
+        try (Reader in = new FileReader(args[0]);
+             Writer out = new FileWriter(args[1])) {
+            int n = analyzer.analyze(in, out);
+            System.err.printf("Analyzed %d positions%n", n);
+        } catch (IOException excp) {
+            System.err.printf("Analysis failed: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Analyze the positions read from IN, writing the results to OUT,
+     *  and return the number of positions. */
+    int analyze(Reader in, Writer out) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(_threads);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        _written = 0;
+        PrintWriter output = new PrintWriter(out);
+        output.println("# line move score depth nodes millis pv");
+        try {
+            BufferedReader lines = new BufferedReader(in);
+            String line;
+            int lineNum = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNum += 1;
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String prefix = lineNum + " ";
+                Board board = new Board();
+                String error = play(board, line);
+                if (error != null) {
+                    results.add(
+                        CompletableFuture.completedFuture(prefix + error));
+                } else {
+                    int num = lineNum;
+                    results.add(CompletableFuture.supplyAsync(
+                        () -> analyze(num, board), workers));
+                }
+                flushDone(results, output);
+            }
+            for (CompletableFuture<String> result : results) {
+                output.println(result.join());
+            }
+            output.flush();
+        } finally {
+            workers.shutdownNow();
+        }
+        return results.size() + _written;
+    }
+
+    /** Write and remove the finished results at the start of RESULTS
+     *  to OUTPUT. */
+    private void flushDone(List<CompletableFuture<String>> results,
+                           PrintWriter output) {
+        int n;
+        for (n = 0; n < results.size() && results.get(n).isDone();
+             n += 1) {
+            output.println(results.get(n).join());
+        }
+        if (n > 0) {
+            results.subList(0, n).clear();
+            _written += n;
+            output.flush();
+        }
+    }
+
+    /** Make the moves in MOVES on BOARD, returning null if all are
+     *  legal, and otherwise an error message. */
+    private static String play(Board board, String moves) {
+        for (String word : moves.trim().split("\\s+")) {
+            Move move = Move.mv(word.toLowerCase());
+            if (move == null || !board.isLegal(move)) {
+                return "invalid move " + word;
+            }
+            board.makeMove(move);
+        }
+        return null;
+    }
+
+    /** Return the result lines for BOARD, read from input line
+     *  LINENUM. */
+    private String analyze(int lineNum, Board board) {
+        AI ai = (AI) _template.create(null, null);
+        if (board.winner() != EMPTY) {
+            return lineNum + " game over: " + board.winner() + " wins";
+        } else if (_lines == 1) {
+            return lineNum + " " + ai.analyze(board, _depth, _millis);
+        }
+        StringBuilder result = new StringBuilder();
+        List<Analysis> lines =
+            ai.analyzeLines(board, _depth, _lines, _millis);
+        for (int k = 0; k < lines.size(); k += 1) {
+            if (k > 0) {
+                result.append(System.lineSeparator());
+            }
+            result.append(String.format("%d.%d %s", lineNum, k + 1,
+                                        lines.get(k)));
+        }
+        return result.toString();
+    }
+
+    /** Creates the AIs used for searching. */
+    private final AI _template;
+    /** Maximum search depth. */
+    private final int _depth;
+    /** Maximum time per position (milliseconds), or 0. */
+    private final long _millis;
+    /** Number of worker threads. */
+    private final int _threads;
+    /** Number of moves reported for each position. */
+    private final int _lines;
+    /** Number of results written by flushDone. */
+    private int _written;
+}
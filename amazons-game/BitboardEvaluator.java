@@ -0,0 +1,110 @@
+package amazons;
+
+import static amazons.Piece.*;
+
+/** A faster TerritoryEvaluator, which represents sets of squares as
+ *  bitboards of two longs, so that each of its operations acts on up
+ *  to 64 squares at once.  Bit row * (size + 1) + col of a bitboard
+ *  stands for the square at (col, row).  The extra column of each row
+ *  is never empty, so that shifting a set one step east or west moves
+ *  squares at the edge into a column that masking with the empty
+ *  squares removes, rather than onto the next row.  The queen-distance
+ *  maps of both sides are then computed a level at a time by sliding
+ *  each side's frontier along the eight directions with shifts and
+ *  masks.
+ *
+ *  Boards whose rows (with the extra column) do not fit in 128 bits
+ *  are evaluated by the scalar TerritoryEvaluator instead, with the
+ *  same results.
+ *  @author Mehak Sharma
+ */
+class BitboardEvaluator extends TerritoryEvaluator {
+
+    /** Largest size of board represented as bitboards. */
+    static final int MAX_BITBOARD_SIZE = 10;
+
+    @Override
+    public int evaluate(Board board) {
+        int size = board.size();
+        if (size > MAX_BITBOARD_SIZE) {
+            return super.evaluate(board);
+        }
+        int stride = size + 1;
+        long[] empty = new long[2], white = new long[2],
+            black = new long[2];
+        for (int row = 0; row < size; row += 1) {
+            for (int col = 0; col < size; col += 1) {
+                Piece p = board.get(col, row);
+                long[] set =
+                    p == EMPTY ? empty : p == WHITE ? white
+                    : p == BLACK ? black : null;
+                if (set != null) {
+                    int bit = row * stride + col;
+                    set[bit >> 6] |= 1L << bit;
+                }
+            }
+        }
+        int[] shifts = {
+            stride, stride + 1, 1, 1 - stride,
+            -stride, -stride - 1, -1, stride - 1
+        };
+        long reachedWLo = white[0], reachedWHi = white[1],
+            reachedBLo = black[0], reachedBHi = black[1];
+        long[] frontW = white, frontB = black;
+        long ownW = 0, ownB = 0;
+        long[] nextW = new long[2], nextB = new long[2];
+        while ((frontW[0] | frontW[1] | frontB[0] | frontB[1]) != 0) {
+            reach(frontW, empty, shifts, nextW);
+            reach(frontB, empty, shifts, nextB);
+            nextW[0] &= ~reachedWLo;
+            nextW[1] &= ~reachedWHi;
+            nextB[0] &= ~reachedBLo;
+            nextB[1] &= ~reachedBHi;
+            reachedWLo |= nextW[0];
+            reachedWHi |= nextW[1];
+            reachedBLo |= nextB[0];
+            reachedBHi |= nextB[1];
+            ownW += Long.bitCount(nextW[0] & ~reachedBLo)
+                + Long.bitCount(nextW[1] & ~reachedBHi);
+            ownB += Long.bitCount(nextB[0] & ~reachedWLo)
+                + Long.bitCount(nextB[1] & ~reachedWHi);
+            long[] tmp = frontW;
+            frontW = nextW;
+            nextW = tmp;
+            tmp = frontB;
+            frontB = nextB;
+            nextB = tmp;
+        }
+        return (int) (ownW - ownB);
+    }
+
+    /** Set RESULT to the squares among EMPTY reachable by one queen move
+     *  from the squares in FROM, where SHIFTS are the bit offsets of the
+     *  eight directions. */
+    private static void reach(long[] from, long[] empty, int[] shifts,
+                              long[] result) {
+        long lo = 0, hi = 0;
+        for (int shift : shifts) {
+            long tLo = from[0], tHi = from[1];
+            while (true) {
+                long sLo, sHi;
+                if (shift > 0) {
+                    sHi = (tHi << shift) | (tLo >>> (64 - shift));
+                    sLo = tLo << shift;
+                } else {
+                    sLo = (tLo >>> -shift) | (tHi << (64 + shift));
+                    sHi = tHi >>> -shift;
+                }
+                tLo = sLo & empty[0];
+                tHi = sHi & empty[1];
+                if ((tLo | tHi) == 0) {
+                    break;
+                }
+                lo |= tLo;
+                hi |= tHi;
+            }
+        }
+        result[0] = lo;
+        result[1] = hi;
+    }
+}
@@ -1,10 +1,11 @@
 package amazons;
 
-import java.util.Collections;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import static amazons.Piece.*;
+import static amazons.Utils.error;
 import static java.lang.Math.*;
 
 
@@ -19,6 +20,16 @@ class Board {
     /** Initializes a game board with SIZE squares on a side in the
      *  initial position. */
     Board() {
+        this(SIZE);
+    }
+
+    /** Initializes a game board with N squares on a side in the initial
+     *  position, where Square.MIN_SIZE <= N <= Square.MAX_SIZE.  Each
+     *  side's queens start a little under a third of the way along the
+     *  edges nearest that side, as on the standard board. */
+    Board(int n) {
+        _size = n;
+        _squares = Square.squares(n);
         init();
     }
 
@@ -32,41 +43,74 @@ class Board {
         if (model == this) {
             return;
         }
+        this._size = model._size;
+        this._squares = model._squares;
         this._turn = model._turn;
         this._winner = model._winner;
-        this._gameboard = new Piece[SIZE][SIZE];
+        this._hash = model._hash;
+        this._numMoves = model._numMoves;
+        this._historyEnd = model._historyEnd;
+        this._pendingFrom = model._pendingFrom;
+        this._pendingTo = model._pendingTo;
+        this._history = Arrays.copyOf(model._history,
+                                      model._history.length);
+        this._regions =
+            model._regions == null ? null : model._regions.clone();
+        this._queens = model._queens == null ? null : model._queens.clone();
+        this._regionLog = model._regionLog.clone();
+        this._regionLogSize = model._regionLogSize;
+        this._nextRegion = model._nextRegion;
+        this._gameboard = new Piece[_size][];
 
-        for (int col = 0; col < SIZE; col += 1) {
-            for (int row = 0; row < SIZE; row += 1) {
-                this._gameboard[col][row] = model._gameboard[col][row];
-            }
+        for (int col = 0; col < _size; col += 1) {
+            this._gameboard[col] = model._gameboard[col].clone();
         }
     }
 
     /** Clears the board to the initial position. */
     void init() {
-        this._gameboard = new Piece[SIZE][SIZE];
+        this._gameboard = new Piece[_size][_size];
+        this._hash = 0;
+        this._numMoves = 0;
+        this._historyEnd = 0;
+        this._pendingFrom = this._pendingTo = null;
 
-        for (int col = 0; col < SIZE; col++) {
-            for (int row = 0; row < SIZE; row++) {
+        for (int col = 0; col < _size; col++) {
+            for (int row = 0; row < _size; row++) {
                 _gameboard[col][row] = EMPTY;
             }
         }
 
-        this._gameboard[0][3] = WHITE;
-        this._gameboard[6][0] = WHITE;
-        this._gameboard[3][0] = WHITE;
-        this._gameboard[9][3] = WHITE;
+        int k = START_FRACTION * _size / 10, last = _size - 1;
+        put(WHITE, 0, k);
+        put(WHITE, last - k, 0);
+        put(WHITE, k, 0);
+        put(WHITE, last, k);
 
-        this._gameboard[3][9] = BLACK;
-        this._gameboard[6][9] = BLACK;
-        this._gameboard[9][6] = BLACK;
-        this._gameboard[0][6] = BLACK;
+        put(BLACK, k, last);
+        put(BLACK, last - k, last);
+        put(BLACK, last, last - k);
+        put(BLACK, 0, last - k);
 
         this._turn = WHITE;
         this._winner = EMPTY;
     }
 
+    /** Return the number of squares on a side of this board. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the Square with index INDEX on this board. */
+    Square sq(int index) {
+        return _squares[index];
+    }
+
+    /** Return the Square at COL and ROW on this board. */
+    Square sq(int col, int row) {
+        return _squares[row * _size + col];
+    }
+
     /** Return the Piece whose move it is (WHITE or BLACK). */
     Piece turn() {
         return this._turn;
@@ -75,13 +119,27 @@ class Board {
     /** Return the number of moves (that have not been undone) for this
      *  board. */
     int numMoves() {
-        return this._moves.size();
+        return this._numMoves;
+    }
+
+    /** Return the number of moves that have been made, including those
+     *  that have been undone but may be redone. */
+    int historyLength() {
+        return this._historyEnd;
+    }
+
+    /** Return move number K (numbering from 0) of the moves that have
+     *  been made, including those that may be redone. */
+    Move move(int k) {
+        return decodeMove(this._history[k]);
     }
 
     /** Return the winner in the current position, or null if the game is
      *  not yet finished. */
     final Piece winner() {
-        if (_turn == WHITE && !legalMoves(_turn).hasNext()) {
+        if (_pendingTo != null) {
+            return this._winner;
+        } else if (_turn == WHITE && !legalMoves(_turn).hasNext()) {
             this._winner = BLACK;
         } else if (_turn == BLACK && !legalMoves(_turn).hasNext()) {
             this._winner = WHITE;
@@ -95,7 +153,7 @@ class Board {
     }
 
     /** Return the contents of the square at (COL, ROW), where
-     *  0 <= COL, ROW <= 9. */
+     *  0 <= COL, ROW < size(). */
     Piece get(int col, int row) {
         return this._gameboard[col][row];
     }
@@ -107,14 +165,40 @@ class Board {
 
     /** Set square S to P. */
     final void put(Piece p, Square s) {
+        checkSquare(s);
         put(p, s.col(), s.row());
     }
 
     /** Set square (COL, ROW) to P. */
     final void put(Piece p, int col, int row) {
+        place(p, col, row);
+        _regions = null;
+    }
+
+    /** Set square S to P, keeping the hash, but not the regions, up to
+     *  date. */
+    private void place(Piece p, Square s) {
+        place(p, s.col(), s.row());
+    }
+
+    /** Set square (COL, ROW) to P, keeping the hash, but not the
+     *  regions, up to date. */
+    private void place(Piece p, int col, int row) {
+        int index = row * _size + col;
+        _hash ^= ZOBRIST[_gameboard[col][row].ordinal()][index]
+            ^ ZOBRIST[p.ordinal()][index];
         this._gameboard[col][row] = p;
     }
 
+    /** Return a 64-bit hash of the current position (contents and side to
+     *  move).  Equal positions have equal hashes, however they were
+     *  reached, and the hash does not change between runs of the program,
+     *  so it may be stored. Maintained incrementally, so this is cheap. */
+    long hash() {
+        long hash = _turn == BLACK ? _hash ^ BLACK_TO_MOVE : _hash;
+        return _pendingTo == null ? hash : hash ^ SPEAR_PENDING;
+    }
+
     /** Set square COL ROW to P. */
     final void put(Piece p, char col, char row) {
         put(p, col - 'a', row - '1');
@@ -198,7 +282,7 @@ class Board {
                         tCol = from.col() + i;
                     }
                     if (!((asEmpty != null)
-                            && (Square.sq(tCol, tRow).equals(asEmpty)))) {
+                            && (sq(tCol, tRow).equals(asEmpty)))) {
                         if (!this._gameboard[tCol][tRow].equals(EMPTY)) {
                             validMove = false;
                         }
@@ -211,8 +295,18 @@ class Board {
         return validMove;
     }
 
+    /** Check that S, unless null, is a square of a board of my size,
+     *  since squares of other sizes have other indices. */
+    private void checkSquare(Square s) {
+        if (s != null && s.size() != _size) {
+            throw error("square %s is not on a %dx%d board", s, _size,
+                        _size);
+        }
+    }
+
     /** Return true iff FROM is a valid starting square for a move. */
     boolean isLegal(Square from) {
+        checkSquare(from);
         int squareRow = from.row();
         int squareCol = from.col();
         return _gameboard[squareCol][squareRow].equals(_turn);
@@ -221,12 +315,14 @@ class Board {
     /** Return true iff FROM-TO is a valid first part of move, ignoring
      *  spear throwing. */
     boolean isLegal(Square from, Square to) {
+        checkSquare(to);
         return isLegal(from) && isUnblockedMove(from, to, from);
     }
 
     /** Return true iff FROM-TO(SPEAR) is a legal move in the current
      *  position. */
     boolean isLegal(Square from, Square to, Square spear) {
+        checkSquare(spear);
         return isLegal(from, to) && isUnblockedMove(to, spear, from);
     }
 
@@ -240,13 +336,19 @@ class Board {
     void makeMove(Square from, Square to, Square spear) {
         if (isLegal(from, to, spear)) {
             if (_turn == WHITE) {
-                this.put(WHITE, to);
+                place(WHITE, to);
             } else {
-                this.put(BLACK, to);
+                place(BLACK, to);
+            }
+            place(EMPTY, from);
+            place(SPEAR, spear);
+            addSpear(spear);
+            if (_numMoves == _history.length) {
+                _history = Arrays.copyOf(_history, 2 * _history.length);
             }
-            this.put(EMPTY, from);
-            this.put(SPEAR, spear);
-            this._moves.add(Move.mv(from, to, spear));
+            _history[_numMoves] = encodeMove(from, to, spear);
+            _numMoves += 1;
+            _historyEnd = _numMoves;
             _turn = _turn.opponent();
         } else {
             System.out.println("Not a legal move.");
@@ -258,22 +360,386 @@ class Board {
         makeMove(move.from(), move.to(), move.spear());
     }
 
-    /** Undo one move.  Has no effect on the initial board. */
+    /** Undo one move.  Has no effect on the initial board.  The move
+     *  may be redone until another move is made. */
     void undo() {
-        if (this._moves.size() == 0) {
+        if (this._numMoves == 0) {
             System.out.println("No legal moves to undo.");
         } else {
-            Move lastMove = this._moves.get(this._moves.size() - 1);
-            Square startMove = lastMove.from();
-            Square endMove = lastMove.to();
-            Square spearPosition = lastMove.spear();
-            this._moves.remove(this._moves.size() - 1);
-
-            this.put(EMPTY, spearPosition);
-            this.put(EMPTY, endMove);
-            this.put(_turn.opponent(), startMove);
+            _numMoves -= 1;
+            int lastMove = _history[_numMoves];
+            Square startMove = _squares[lastMove & MOVE_MASK];
+            Square endMove = _squares[(lastMove >> MOVE_BITS) & MOVE_MASK];
+            Square spearPosition = _squares[lastMove >> (2 * MOVE_BITS)];
+
+            place(EMPTY, spearPosition);
+            removeSpear(spearPosition);
+            place(EMPTY, endMove);
+            place(_turn.opponent(), startMove);
             _turn = _turn.opponent();
+            _winner = EMPTY;
+        }
+    }
+
+    /** Redo the last move undone, if any, returning true iff there was
+     *  one. */
+    boolean redo() {
+        if (_numMoves == _historyEnd) {
+            return false;
+        }
+        int nextMove = _history[_numMoves];
+        Square from = _squares[nextMove & MOVE_MASK];
+        Square spear = _squares[nextMove >> (2 * MOVE_BITS)];
+        place(_turn, _squares[(nextMove >> MOVE_BITS) & MOVE_MASK]);
+        place(EMPTY, from);
+        place(SPEAR, spear);
+        addSpear(spear);
+        _numMoves += 1;
+        _turn = _turn.opponent();
+        return true;
+    }
+
+    /** Undo or redo moves until exactly PLY moves have been made, where
+     *  0 <= PLY <= historyLength(). */
+    void jumpTo(int ply) {
+        if (ply < 0 || ply > _historyEnd) {
+            throw error("no such move: %d", ply);
+        }
+        while (_numMoves > ply) {
+            undo();
+        }
+        while (_numMoves < ply) {
+            redo();
+        }
+    }
+
+    /** Move the queen on FROM to TO, leaving its spear to be thrown by
+     *  throwSpear, assuming that FROM-TO is a legal first part of a
+     *  move and that no spear is pending.  This and the three methods
+     *  following let a search treat a move as two plies, the turn
+     *  changing only when the spear is thrown.  While a spear is
+     *  pending, makeMove, undo, redo, and legalMoves should not be
+     *  used. */
+    void moveQueen(Square from, Square to) {
+        place(_turn, to);
+        place(EMPTY, from);
+        _pendingFrom = from;
+        _pendingTo = to;
+    }
+
+    /** Undo the moveQueen whose spear is pending. */
+    void unmoveQueen() {
+        place(EMPTY, _pendingTo);
+        place(_turn, _pendingFrom);
+        _pendingFrom = _pendingTo = null;
+    }
+
+    /** Complete the move whose spear is pending by throwing the spear to
+     *  SPEAR, assuming that is a legal throw. */
+    void throwSpear(Square spear) {
+        place(SPEAR, spear);
+        addSpear(spear);
+        if (_numMoves == _history.length) {
+            _history = Arrays.copyOf(_history, 2 * _history.length);
         }
+        _history[_numMoves] = encodeMove(_pendingFrom, _pendingTo, spear);
+        _numMoves += 1;
+        _historyEnd = _numMoves;
+        _turn = _turn.opponent();
+        _pendingFrom = _pendingTo = null;
+    }
+
+    /** Undo the spear throw of the last move, leaving that move's queen
+     *  moved and its spear pending, assuming there is a last move. */
+    void unthrowSpear() {
+        _numMoves -= 1;
+        int lastMove = _history[_numMoves];
+        _pendingFrom = _squares[lastMove & MOVE_MASK];
+        _pendingTo = _squares[(lastMove >> MOVE_BITS) & MOVE_MASK];
+        Square spear = _squares[lastMove >> (2 * MOVE_BITS)];
+        place(EMPTY, spear);
+        removeSpear(spear);
+        _turn = _turn.opponent();
+        _winner = EMPTY;
+    }
+
+    /** Return true iff a queen has been moved by moveQueen and its spear
+     *  has not yet been thrown. */
+    boolean spearPending() {
+        return _pendingTo != null;
+    }
+
+    /** Return the square of the queen whose spear is pending, or null if
+     *  there is none. */
+    Square pendingQueen() {
+        return _pendingTo;
+    }
+
+    /** Return the square from which the queen whose spear is pending
+     *  moved, or null if there is none. */
+    Square pendingFrom() {
+        return _pendingFrom;
+    }
+
+    /** Return the region of S: a number shared by exactly the squares
+     *  not holding spears that S is connected to by a chain of
+     *  neighboring (king-adjacent) squares not holding spears, or -1 if
+     *  S holds a spear.  No queen can ever leave its region, nor a spear
+     *  be thrown from one region into another, so once the spears divide
+     *  the board, the queens of one region cannot affect another except
+     *  by how many moves each side has left to make in it.  Regions are
+     *  found the first time they are asked for after a put, and then
+     *  kept as moves are made and undone (see addSpear). */
+    int region(Square s) {
+        return regions()[s.index()];
+    }
+
+    /** Return true iff the region of S holds queens of both sides. */
+    boolean contested(Square s) {
+        int region = region(s);
+        return region >= 0 && _queens[2 * region] > 0
+            && _queens[2 * region + 1] > 0;
+    }
+
+    /** Return true iff no region holds queens of both sides, so that the
+     *  outcome depends only on how many moves each can make in its own
+     *  regions (see fillers). */
+    boolean separated() {
+        regions();
+        for (int region = 0; region < _nextRegion; region += 1) {
+            if (_queens[2 * region] > 0 && _queens[2 * region + 1] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the number of empty squares in regions holding queens of
+     *  SIDE and none of its opponent: the most moves SIDE can make there,
+     *  since each move fills one such square with a spear.  Every one
+     *  may be made unless some empty square is out of reach of all of
+     *  SIDE's queens. */
+    int fillers(Piece side) {
+        int[] regions = regions();
+        int own = side == WHITE ? 0 : 1;
+        int result = 0;
+        for (int i = 0; i < regions.length; i += 1) {
+            int region = regions[i];
+            if (region >= 0 && _queens[2 * region + own] > 0
+                && _queens[2 * region + 1 - own] == 0
+                && get(_squares[i]) == EMPTY) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the regions of my squares, by index, finding them if
+     *  necessary. */
+    private int[] regions() {
+        if (_regions == null) {
+            int n = _size * _size;
+            _regions = new int[n];
+            _regionLogSize = 0;
+            _nextRegion = 0;
+            newStamp();
+            for (int i = 0; i < n; i += 1) {
+                _regions[i] = get(_squares[i]) == SPEAR ? NO_REGION : UNSEEN;
+            }
+            for (int i = 0; i < n; i += 1) {
+                if (_regions[i] == UNSEEN) {
+                    relabel(_squares[i], UNSEEN, _nextRegion, false);
+                    _nextRegion += 1;
+                }
+            }
+            _queens = new int[2 * n];
+            for (int i = 0; i < n; i += 1) {
+                countQueen(i, _regions[i], 1);
+            }
+        }
+        return _regions;
+    }
+
+    /** Add DELTA to the count of queens of region REGION of the side
+     *  whose queen, if any, is on the square with index INDEX. */
+    private void countQueen(int index, int region, int delta) {
+        Piece p = get(_squares[index]);
+        if (p == WHITE || p == BLACK) {
+            _queens[2 * region + (p == WHITE ? 0 : 1)] += delta;
+        }
+    }
+
+    /** Update the regions, if they are known, for a spear just placed
+     *  on S.  Only the region of S can change, and then only by dividing:
+     *  if the squares around S are connected to each other without it
+     *  (see DIVIDES), nothing changes; otherwise the squares reached from
+     *  its first neighbor keep the old region, and those reached from
+     *  each neighbor not yet reached get a new one.  Logs the changes,
+     *  so that removeSpear may undo them. */
+    private void addSpear(Square s) {
+        if (_regions == null) {
+            return;
+        }
+        int region = _regions[s.index()], nextRegion = _nextRegion,
+            changed = 0, around = 0;
+        _regions[s.index()] = NO_REGION;
+        for (int dir = 0; dir < 8; dir += 1) {
+            Square next = s.queenMove(dir, 1);
+            if (next != null && _regions[next.index()] != NO_REGION) {
+                around |= 1 << dir;
+            }
+        }
+        if (DIVIDES[around]) {
+            newStamp();
+            boolean first = true;
+            for (int dir = 0; dir < 8; dir += 1) {
+                Square next = s.queenMove(dir, 1);
+                if ((around & (1 << dir)) == 0
+                    || _seen[next.index()] == _stamp) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                    relabel(next, region, region, false);
+                } else {
+                    if (2 * _nextRegion + 1 >= _queens.length) {
+                        _queens = Arrays.copyOf(_queens, 2 * _queens.length);
+                    }
+                    changed += relabel(next, region, _nextRegion, true);
+                    _nextRegion += 1;
+                }
+            }
+        }
+        log(region);
+        log(nextRegion);
+        log(changed);
+    }
+
+    /** Update the regions, if they are known, for the spear just removed
+     *  from S, which must be the last one addSpear saw placed, undoing
+     *  its changes. */
+    private void removeSpear(Square s) {
+        if (_regions == null) {
+            return;
+        } else if (_regionLogSize == 0) {
+            _regions = null;
+            return;
+        }
+        int changed = _regionLog[--_regionLogSize];
+        _nextRegion = _regionLog[--_regionLogSize];
+        _regions[s.index()] = _regionLog[--_regionLogSize];
+        for (int k = 0; k < changed; k += 1) {
+            int region = _regionLog[--_regionLogSize],
+                index = _regionLog[--_regionLogSize];
+            countQueen(index, _regions[index], -1);
+            countQueen(index, region, 1);
+            _regions[index] = region;
+        }
+    }
+
+    /** Give region TO to all squares of region FROM connected to START
+     *  that are not yet marked with the current stamp (see newStamp),
+     *  marking them.  Iff LOG, log each change and update the counts of
+     *  queens.  Return the number of squares changed. */
+    private int relabel(Square start, int from, int to, boolean log) {
+        int top = 0, result = 0;
+        _stack[top++] = start.index();
+        _seen[start.index()] = _stamp;
+        while (top > 0) {
+            Square sq = _squares[_stack[--top]];
+            if (to != from) {
+                if (log) {
+                    log(sq.index());
+                    log(from);
+                    countQueen(sq.index(), from, -1);
+                    countQueen(sq.index(), to, 1);
+                }
+                _regions[sq.index()] = to;
+                result += 1;
+            }
+            for (int dir = 0; dir < 8; dir += 1) {
+                Square next = sq.queenMove(dir, 1);
+                if (next != null && _regions[next.index()] == from
+                    && _seen[next.index()] != _stamp) {
+                    _seen[next.index()] = _stamp;
+                    _stack[top++] = next.index();
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Start a new stamp for relabel, so that no square is marked. */
+    private void newStamp() {
+        if (_seen == null || _seen.length != _size * _size) {
+            _seen = new int[_size * _size];
+            _stack = new int[_size * _size];
+        }
+        _stamp += 1;
+        if (_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(_seen, 0);
+            _stamp = 1;
+        }
+    }
+
+    /** Append VALUE to the region log. */
+    private void log(int value) {
+        if (_regionLogSize == _regionLog.length) {
+            _regionLog = Arrays.copyOf(_regionLog, 2 * _regionLogSize);
+        }
+        _regionLog[_regionLogSize++] = value;
+    }
+
+    /** Return true iff the squares in the directions (as for
+     *  Square.queenMove) whose bits are set in AROUND are not all
+     *  connected to each other through themselves.  Each is a neighbor
+     *  of the next, and each orthogonal one also of the orthogonal ones
+     *  either side of it. */
+    private static boolean divides(int around) {
+        int[] group = new int[8];
+        for (int dir = 0; dir < 8; dir += 1) {
+            group[dir] = dir;
+        }
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int step = 1; step <= 2; step += 1) {
+                    int other = (dir + step) % 8;
+                    if ((step == 1 || dir % 2 == 0)
+                        && (around & (1 << dir)) != 0
+                        && (around & (1 << other)) != 0
+                        && group[dir] != group[other]) {
+                        group[dir] = group[other] =
+                            min(group[dir], group[other]);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        int first = -1;
+        for (int dir = 0; dir < 8; dir += 1) {
+            if ((around & (1 << dir)) != 0) {
+                if (first == -1) {
+                    first = group[dir];
+                } else if (group[dir] != first) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Return the history encoding of FROM-TO(SPEAR). */
+    private static int encodeMove(Square from, Square to, Square spear) {
+        return from.index() | (to.index() << MOVE_BITS)
+            | (spear.index() << (2 * MOVE_BITS));
+    }
+
+    /** Return the Move whose history encoding is CODE. */
+    private Move decodeMove(int code) {
+        return Move.mv(_squares[code & MOVE_MASK],
+                       _squares[(code >> MOVE_BITS) & MOVE_MASK],
+                       _squares[code >> (2 * MOVE_BITS)]);
     }
 
     /** Return an Iterator over the Squares that are reachable by an
@@ -287,6 +753,31 @@ class Board {
         return new ReachableFromIterator(from, asEmpty);
     }
 
+    /** Return a mask of the squares reachable from FROM as for
+     *  reachableFrom(FROM, ASEMPTY): bit I % 64 of element I / 64 is 1
+     *  iff the square with index I is reachable.  Walks the rays of FROM
+     *  directly rather than through an iterator, so that callers that
+     *  test many squares (such as a display) need not. */
+    long[] reachableMask(Square from, Square asEmpty) {
+        long[] mask = new long[(_size * _size + Long.SIZE - 1) / Long.SIZE];
+        for (int dir = 0; dir < 8; dir += 1) {
+            for (int k = 1; k <= from.rayLength(dir); k += 1) {
+                Square sq = from.queenMove(dir, k);
+                if (sq != asEmpty && get(sq) != EMPTY) {
+                    break;
+                }
+                mask[sq.index() / Long.SIZE] |= 1L << sq.index();
+            }
+        }
+        return mask;
+    }
+
+    /** Return true iff the square with index INDEX is in MASK, as
+     *  returned by reachableMask. */
+    static boolean inMask(long[] mask, int index) {
+        return (mask[index / Long.SIZE] & (1L << index)) != 0;
+    }
+
     /** Return an Iterator over all legal moves on the current board. */
     Iterator<Move> legalMoves() {
         return new LegalMoveIterator(_turn);
@@ -308,36 +799,38 @@ class Board {
             _dir = 0;
             _steps = 1;
             _asEmpty = asEmpty;
-            _next = from;
             toNext();
         }
 
         @Override
         public boolean hasNext() {
-            return _dir <= 7;
-
+            return _next != null;
         }
 
         @Override
         public Square next() {
-            Square next = _from.queenMove(_dir, _steps);
+            if (_next == null) {
+                throw new NoSuchElementException();
+            }
+            Square next = _next;
             toNext();
             return next;
         }
 
-        /** Advance _dir and _steps, so that the next valid Square is
-         *  _steps steps in direction _dir from _from. */
+        /** Advance _dir and _steps, and set _next to the next valid
+         *  Square, or null if there are no more. */
         private void toNext() {
-            while (hasNext()) {
-                _steps++;
-                if (isUnblockedMove(_from, _from.queenMove(_dir, _steps),
-                        _asEmpty)) {
+            while (_dir <= 7) {
+                Square sq = _from.queenMove(_dir, _steps);
+                if (sq != null && (sq == _asEmpty || get(sq) == EMPTY)) {
+                    _steps += 1;
+                    _next = sq;
                     return;
-                } else {
-                    _dir++;
-                    _steps = 1;
                 }
+                _dir += 1;
+                _steps = 1;
             }
+            _next = null;
         }
 
         /** Starting square. */
@@ -352,186 +845,118 @@ class Board {
         private Square _next;
     }
 
-    /** An iterator used by legalMoves. */
+    /** An iterator used by legalMoves.  Walks the precomputed queen-move
+     *  rays of each of the side's pieces (see Square.queenMove), and from
+     *  each destination, the rays along which the spear may be thrown. */
     private class LegalMoveIterator implements Iterator<Move> {
 
         /** All legal moves for SIDE (WHITE or BLACK). */
         LegalMoveIterator(Piece side) {
-            _startingSquares = Square.iterator();
-            _spearThrows = NO_SQUARES;
-            _pieceMoves = NO_SQUARES;
             _fromPiece = side;
-            _start = _startingSquares.next();
-            _next = null;
-            _spearDir = 0;
-            _queenDir = 0;
-            _lastQueenStep = 1;
-            _lastSpearStep = 1;
-            _spearPosition = null;
+            _startIndex = -1;
+            toNextStart();
+            toNext();
         }
 
         @Override
         public boolean hasNext() {
-            boolean foundStart = false;
-            boolean moveFound = false;
-            _spearPosition = null;
-            while (_startingSquares.hasNext() && !foundStart) {
-                if (isLegal(_start)) {
-                    foundStart = true;
-                }
-                while ((_queenDir <= 7) && !moveFound && foundStart) {
-                    maxQueenSteps = switchQueenDir();
-                    _next = null;
-                    boolean queenFound = false;
-                    int i = 0;
-                    for (i = _lastQueenStep; ((i <= maxQueenSteps)
-                            && !queenFound); i++) {
-                        if (isUnblockedMove(_start,
-                                _start.queenMove(_queenDir, i), null)) {
-                            queenFound = true;
-                            _next = _start.queenMove(_queenDir, i);
-                        }
-                    }
-                    boolean spearFound = false;
-                    while ((_spearDir <= 7) && !spearFound && queenFound) {
-                        maxSpearSteps = switchSpearDir();
-                        _spearPosition = null;
-                        for (i = _lastSpearStep; ((i <= maxSpearSteps)
-                                && !spearFound); i++) {
-                            if (isUnblockedMove(_next,
-                                    _next.queenMove(_spearDir, i), _start)) {
-                                spearFound = true;
-                                moveFound = true;
-                                _spearPosition = _next.queenMove(_spearDir, i);
-                            }
-                        }
-                        if (!spearFound) {
-                            _spearDir++;
-                            _lastSpearStep = 1;
-                        } else {
-                            _lastSpearStep++;
-                        }
-                        if ((_spearDir > 7) && (i > maxSpearSteps)) {
-                            _lastQueenStep++;
-                        }
-                    }
-                    if (!spearFound) {
-                        _spearDir = 0;
-                    }
-                    if (!queenFound) {
-                        _queenDir++;
-                        _lastQueenStep = 1;
-                        _spearDir = 0;
-                    }
-                }
-                if ((_queenDir > 7) || !foundStart) {
-                    _queenDir = 0;
-                    _spearDir = 0;
-                    _lastQueenStep = 1;
-                    _lastSpearStep = 1;
-                    _start = _startingSquares.next();
-                    foundStart = false;
-                }
-            }
-            if (!moveFound) {
-                _next = null;
-            }
-            return moveFound;
-        }
-
-        /** Returns switch DIR. */
-        public int switchQueenDir() {
-            switch (_queenDir) {
-            case 0: return SIZE - _start.row() - 1;
-            case 1: return SIZE - max(_start.row(),
-                        _start.col()) - 1;
-            case 2: return SIZE - _start.col() - 1;
-            case 3: return min((SIZE - _start.col() - 1),
-                        _start.row());
-            case 4: return _start.row();
-            case 5: return min(_start.row(), _start.col());
-            case 6: return _start.col();
-            case 7: return min((SIZE - _start.row() - 1),
-                        _start.col());
-            default: return 0;
-            }
+            return _nextMove != null;
         }
 
-        /** Returns switch DIR. */
-        public int switchSpearDir() {
-            switch (_spearDir) {
-            case 0: return SIZE - _next.row() - 1;
-            case 1: return SIZE - max(_next.row(),
-                    _next.col()) - 1;
-            case 2: return SIZE - _next.col() - 1;
-            case 3: return min((SIZE
-                    - _next.col() - 1), _next.row());
-            case 4: return _next.row();
-            case 5: return min(_next.row(), _next.col());
-
-            case 6: return _next.col();
-            case 7: return min((SIZE - _next.row() - 1),
-                    _next.col());
-            default: return 0;
+        @Override
+        public Move next() {
+            if (_nextMove == null) {
+                throw new NoSuchElementException();
             }
+            Move result = _nextMove;
+            toNext();
+            return result;
         }
 
-        @Override
-        public Move next() {
-            if (_next != null) {
-                return Move.mv(_start, _next, _spearPosition);
-            } else {
-                return null;
+        /** Set _start to the next square holding one of my pieces, or to
+         *  null if there is none, and start its queen moves. */
+        private void toNextStart() {
+            _start = null;
+            for (_startIndex += 1; _startIndex < _squares.length;
+                 _startIndex += 1) {
+                Square sq = _squares[_startIndex];
+                if (get(sq) == _fromPiece) {
+                    _start = sq;
+                    break;
+                }
             }
+            _queenDir = 0;
+            _queenStep = 1;
+            _to = null;
         }
 
-        /** Advance so that the next valid Move is
-         *  _start-_nextSquare(sp), where sp is the next value of
-         *  _spearThrows. */
+        /** Advance to the next legal Move, setting _nextMove to it, or to
+         *  null if there are no more. */
         private void toNext() {
+            while (_start != null) {
+                if (_to != null) {
+                    while (_spearDir <= 7) {
+                        Square spear = _to.queenMove(_spearDir, _spearStep);
+                        if (spear != null
+                            && (spear == _start || get(spear) == EMPTY)) {
+                            _spearStep += 1;
+                            _nextMove = Move.mv(_start, _to, spear);
+                            return;
+                        }
+                        _spearDir += 1;
+                        _spearStep = 1;
+                    }
+                    _to = null;
+                    _queenStep += 1;
+                }
+                while (_queenDir <= 7 && _to == null) {
+                    Square to = _start.queenMove(_queenDir, _queenStep);
+                    if (to != null && get(to) == EMPTY) {
+                        _to = to;
+                        _spearDir = 0;
+                        _spearStep = 1;
+                    } else {
+                        _queenDir += 1;
+                        _queenStep = 1;
+                    }
+                }
+                if (_to == null) {
+                    toNextStart();
+                }
+            }
+            _nextMove = null;
         }
 
         /** Color of side whose moves we are iterating. */
         private Piece _fromPiece;
-        /** Current starting square. */
+        /** Index of _start. */
+        private int _startIndex;
+        /** Current starting square, or null when done. */
         private Square _start;
-        /** Remaining starting squares to consider. */
-        private Iterator<Square> _startingSquares;
-        /** Current piece's new position. */
-        private Square _nextSquare;
-        /** Remaining moves from _start to consider. */
-        private Iterator<Square> _pieceMoves;
-        /** Remaining spear throws from _piece to consider. */
-        private Iterator<Square> _spearThrows;
-        /** Current position of spear. */
-        private Square _spearPosition;
-
+        /** Current piece's new position, or null if not yet chosen. */
+        private Square _to;
         /** Current direction of queen. */
         private int _queenDir;
         /** Current direction of spear. */
         private int _spearDir;
         /** Current queen steps. */
-        private int _lastQueenStep;
-        /** Current spear steps. */
-        private int _lastSpearStep;
-        /** Current 'to' square. */
-        private Square _next;
-        /** Max queen steps. */
-        private int maxQueenSteps;
-        /** Current 'to' square. */
-        private int maxSpearSteps;
+        private int _queenStep;
+        /** Next spear steps. */
+        private int _spearStep;
+        /** The next Move to deliver. */
+        private Move _nextMove;
     }
 
     @Override
     public String toString() {
         StringBuffer printGame = new StringBuffer();
-        for (int row = 0; row < SIZE; row++) {
+        for (int row = _size - 1; row >= 0; row--) {
             printGame.append("   ");
-            for (int col = 0; col < SIZE; col++) {
+            for (int col = 0; col < _size; col++) {
                 if (col == 0) {
-                    printGame.append(_gameboard[col][9 - row].toString());
+                    printGame.append(_gameboard[col][row].toString());
                 } else {
-                    printGame.append(" " + _gameboard[col][9 - row].toString());
+                    printGame.append(" " + _gameboard[col][row].toString());
                 }
             }
             printGame.append("\n");
@@ -540,9 +965,75 @@ class Board {
         return printGame.toString();
     }
 
-    /** An empty iterator for initialization. */
-    private static final Iterator<Square> NO_SQUARES =
-            Collections.emptyIterator();
+    /** Return true iff OBJ is a Board with the same contents and side to
+     *  move as mine (regardless of how either got there). */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Board)) {
+            return false;
+        }
+        Board other = (Board) obj;
+        return _turn == other._turn && _pendingTo == other._pendingTo
+            && Arrays.deepEquals(_gameboard, other._gameboard);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(_gameboard) * 2 + _turn.ordinal();
+    }
+
+    /** Seed for generating ZOBRIST.  Fixed so that hashes may be
+     *  saved. */
+    private static final long ZOBRIST_SEED = 0x616d617a6f6e73L;
+
+    /** ZOBRIST[p][i] is a random key for Piece with ordinal p on the
+     *  square with index i.  The keys for EMPTY are 0, so that the hash of
+     *  a board is the XOR of the keys of its occupied squares. */
+    private static final long[][] ZOBRIST =
+        new long[Piece.values().length][Square.MAX_SIZE * Square.MAX_SIZE];
+
+    /** Key for Black to move. */
+    private static final long BLACK_TO_MOVE;
+
+    /** Key for a position with a spear pending. */
+    private static final long SPEAR_PENDING;
+
+    static {
+        Random keys = new Random(ZOBRIST_SEED);
+        for (Piece p : Piece.values()) {
+            for (int i = 0; i < SIZE * SIZE; i += 1) {
+                ZOBRIST[p.ordinal()][i] = p == EMPTY ? 0 : keys.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = keys.nextLong();
+        /* Keys for squares beyond the standard board come afterwards, so
+         * that hashes of standard positions are unchanged. */
+        for (Piece p : Piece.values()) {
+            for (int i = SIZE * SIZE; i < ZOBRIST[0].length; i += 1) {
+                ZOBRIST[p.ordinal()][i] = p == EMPTY ? 0 : keys.nextLong();
+            }
+        }
+        SPEAR_PENDING = keys.nextLong();
+    }
+
+    /** DIVIDES[AROUND] is divides(AROUND). */
+    private static final boolean[] DIVIDES = new boolean[1 << 8];
+
+    static {
+        for (int around = 0; around < DIVIDES.length; around += 1) {
+            DIVIDES[around] = divides(around);
+        }
+    }
+
+    /** Region of a square holding a spear. */
+    private static final int NO_REGION = -1;
+
+    /** Region of a square not yet given one while finding regions. */
+    private static final int UNSEEN = -2;
+
+    /** Queens start START_FRACTION tenths of the way along their edges
+     *  (rounded down). */
+    private static final int START_FRACTION = 3;
 
     /** Piece whose turn it is (BLACK or WHITE). */
     private Piece _turn;
@@ -551,11 +1042,72 @@ class Board {
      *  computed. */
     private Piece _winner;
 
+    /** Number of squares on a side. */
+    private int _size;
+
+    /** The Squares of this board, by index. */
+    private Square[] _squares;
+
     /** Board. */
     private Piece[][] _gameboard;
 
-    /** Moves. */
-    private List<Move> _moves = new ArrayList<>();
+    /** Hash of the contents of _gameboard (not counting _turn). */
+    private long _hash;
+
+    /** Number of bits per square in an encoded move. */
+    private static final int MOVE_BITS = 8;
+
+    /** Mask extracting one square of an encoded move. */
+    private static final int MOVE_MASK = (1 << MOVE_BITS) - 1;
+
+    /** Initial capacity of _history. */
+    private static final int INITIAL_HISTORY = 128;
+
+    /** Moves made, each encoded as the index of its from square, plus
+     *  the index of its to square shifted by MOVE_BITS, plus the index
+     *  of its spear square shifted by 2 * MOVE_BITS.  The first
+     *  _numMoves entries are the moves that have not been undone; the
+     *  entries from there to _historyEnd are moves that may be redone. */
+    private int[] _history = new int[INITIAL_HISTORY];
+
+    /** Number of moves made and not undone. */
+    private int _numMoves;
+
+    /** Number of valid entries in _history. */
+    private int _historyEnd;
+
+    /** The squares from and to which the queen whose spear is pending
+     *  moved, or null if no spear is pending. */
+    private Square _pendingFrom, _pendingTo;
+
+    /** The region (see region) of each square, by index, or null if
+     *  not known. */
+    private int[] _regions;
+
+    /** The numbers of white and black queens in region R are
+     *  _queens[2 * R] and _queens[2 * R + 1], when _regions is known.
+     *  Queens never leave their regions, so these change only when a
+     *  region divides or rejoins. */
+    private int[] _queens;
+
+    /** Number of regions numbered so far: all regions are less. */
+    private int _nextRegion;
+
+    /** For each spear placed since _regions was found, in order: the
+     *  index and former region of each square whose region changed,
+     *  then the former region of the spear's square, the former
+     *  _nextRegion, and the number of squares changed. */
+    private int[] _regionLog = new int[INITIAL_HISTORY];
+
+    /** Number of valid entries in _regionLog. */
+    private int _regionLogSize;
+
+    /** Work space for relabel: the stamp of each square, by index, the
+     *  stamp marking squares reached in the current search, and a stack
+     *  of squares to visit. */
+    private int[] _seen, _stack;
+    /** The current stamp (see _seen). */
+    private int _stamp;
 
 
 }
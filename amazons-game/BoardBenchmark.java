@@ -0,0 +1,92 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static amazons.Piece.*;
+import static amazons.Utils.iterable;
+
+/** Measures how move generation and search scale with board size.  For
+ *  each size, it times a full enumeration of the legal moves in the
+ *  initial position and in a middle-game position reached by random
+ *  moves, and a fixed-depth AI search of the middle-game position.
+ *  Usage: java amazons.BoardBenchmark [MINSIZE [MAXSIZE [DEPTH]]].
+ *  @author Mehak Sharma
+ */
+final class BoardBenchmark {
+
+    /** Not instantiable. */
+    private BoardBenchmark() {
+    }
+
+    /** Run the benchmark for the sizes and depth given in ARGS. */
+    public static void main(String... args) {
+        int minSize = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 14;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        System.out.printf("%4s %8s %12s %8s %12s %12s%n", "size",
+                          "moves0", "gen0 (us)", "movesM", "genM (us)",
+                          "search (ms)");
+        for (int n = minSize; n <= maxSize; n += 2) {
+            Board initial = new Board(n);
+            Board middle = middleGame(n, new Random(n));
+            int moves0 = count(initial);
+            double gen0 = timeGeneration(initial);
+            int movesM = count(middle);
+            double genM = timeGeneration(middle);
+            long start = System.nanoTime();
+            new AI().bestMove(middle, depth);
+            double search = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%4d %8d %12.1f %8d %12.1f %12.1f%n", n,
+                              moves0, gen0, movesM, genM, search);
+        }
+    }
+
+    /** Return a position on an N x N board after about 4N random
+     *  moves (fewer if the game ends), chosen using RANDOM. */
+    static Board middleGame(int n, Random random) {
+        Board board = new Board(n);
+        for (int i = 0; i < MIDDLE_MOVES_PER_SIDE * n
+                 && board.winner() == EMPTY; i += 1) {
+            List<Move> moves = new ArrayList<>();
+            for (Move move : iterable(board.legalMoves())) {
+                moves.add(move);
+            }
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return board;
+    }
+
+    /** Return the number of legal moves on BOARD. */
+    private static int count(Board board) {
+        int result = 0;
+        for (Move unused : iterable(board.legalMoves())) {
+            result += 1;
+        }
+        return result;
+    }
+
+    /** Return the average time in microseconds to enumerate the legal
+     *  moves of BOARD, after warming up. */
+    private static double timeGeneration(Board board) {
+        for (int i = 0; i < WARMUP; i += 1) {
+            count(board);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i += 1) {
+            count(board);
+        }
+        return (System.nanoTime() - start) / 1e3 / REPETITIONS;
+    }
+
+    /** Random moves per square on a side used to reach the middle
+     *  game. */
+    private static final int MIDDLE_MOVES_PER_SIDE = 4;
+
+    /** Number of untimed enumerations. */
+    private static final int WARMUP = 200;
+
+    /** Number of timed enumerations. */
+    private static final int REPETITIONS = 200;
+}
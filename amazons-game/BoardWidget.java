@@ -8,6 +8,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
@@ -23,11 +24,14 @@ class BoardWidget extends Pad {
 
     /* Parameters controlling sizes, speeds, colors, and fonts. */
 
-    /** Colors of empty squares and grid lines. */
+    /** Colors of spears, empty squares, and grid lines. */
     static final Color
         SPEAR_COLOR = new Color(64, 64, 64),
         LIGHT_SQUARE_COLOR = new Color(238, 207, 161),
-        DARK_SQUARE_COLOR = new Color(205, 133, 63);
+        DARK_SQUARE_COLOR = new Color(205, 133, 63),
+        GRID_LINE_COLOR = new Color(120, 80, 40),
+        HIGHLIGHT_COLOR = new Color(80, 160, 255, 120),
+        SELECTED_COLOR = new Color(30, 90, 200);
 
     /** Locations of images of white and black queens. */
     private static final String
@@ -37,7 +41,8 @@ class BoardWidget extends Pad {
     /** Size parameters. */
     private static final int
         SQUARE_SIDE = 30,
-        BOARD_SIDE = SQUARE_SIDE * 10;
+        BOARD_SIDE = SQUARE_SIDE * 10,
+        SPEAR_MARGIN = 6;
 
     /** A graphical representation of an Amazons board that sends commands
      *  derived from mouse clicks to COMMANDS.  */
@@ -58,13 +63,100 @@ class BoardWidget extends Pad {
 
     /** Draw the bare board G.  */
     private void drawGrid(Graphics2D g) {
-        g.setColor(LIGHT_SQUARE_COLOR);
-        g.fillRect(0, 0, BOARD_SIDE, BOARD_SIDE);
+        for (int col = 0; col < Board.SIZE; col += 1) {
+            for (int row = 0; row < Board.SIZE; row += 1) {
+                g.setColor((col + row) % 2 == 0 ? DARK_SQUARE_COLOR
+                           : LIGHT_SQUARE_COLOR);
+                g.fillRect(cx(col), cy(row), SQUARE_SIDE, SQUARE_SIDE);
+            }
+        }
+        g.setColor(GRID_LINE_COLOR);
+        for (int k = 0; k <= Board.SIZE; k += 1) {
+            g.drawLine(k * SQUARE_SIDE, 0, k * SQUARE_SIDE, BOARD_SIDE);
+            g.drawLine(0, k * SQUARE_SIDE, BOARD_SIDE, k * SQUARE_SIDE);
+        }
+    }
+
+    /** Return the image of the bare board, drawing it the first time. */
+    private BufferedImage gridImage() {
+        if (_gridImage == null) {
+            _gridImage = new BufferedImage(BOARD_SIDE + 1, BOARD_SIDE + 1,
+                                           BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = _gridImage.createGraphics();
+            drawGrid(g);
+            g.dispose();
+        }
+        return _gridImage;
     }
 
+    /** Draw the board on G from the cached image of the bare board,
+     *  drawing pieces only on the squares within G's clip, which is
+     *  normally just the squares changed since the last paint. */
     @Override
     public synchronized void paintComponent(Graphics2D g) {
-        drawGrid(g);
+        long start = System.nanoTime();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, BOARD_SIDE, BOARD_SIDE);
+        }
+        g.drawImage(gridImage(), clip.x, clip.y,
+                    clip.x + clip.width, clip.y + clip.height,
+                    clip.x, clip.y, clip.x + clip.width,
+                    clip.y + clip.height, null);
+        int col0 = Math.max(0, clip.x / SQUARE_SIDE),
+            col1 = Math.min(Board.SIZE - 1,
+                            (clip.x + clip.width) / SQUARE_SIDE),
+            row0 = Math.max(0, Board.SIZE - 1
+                            - (clip.y + clip.height) / SQUARE_SIDE),
+            row1 = Math.min(Board.SIZE - 1,
+                            Board.SIZE - 1 - clip.y / SQUARE_SIDE);
+        for (int col = col0; col <= col1; col += 1) {
+            for (int row = row0; row <= row1; row += 1) {
+                Square s = sq(col, row);
+                if (_targets != null && Board.inMask(_targets, s.index())) {
+                    g.setColor(HIGHLIGHT_COLOR);
+                    g.fillRect(cx(s), cy(s), SQUARE_SIDE, SQUARE_SIDE);
+                }
+                if (s == _from || s == _to) {
+                    g.setColor(SELECTED_COLOR);
+                    g.drawRect(cx(s) + 1, cy(s) + 1, SQUARE_SIDE - 3,
+                               SQUARE_SIDE - 3);
+                }
+                Piece piece = _board.get(s);
+                if (piece == SPEAR) {
+                    drawSpear(g, s);
+                } else if (piece != EMPTY) {
+                    drawQueen(g, s, piece);
+                }
+            }
+        }
+        _lastFrameNanos = System.nanoTime() - start;
+        Metrics.FRAME_TIME.record(_lastFrameNanos / 1000);
+        _frameNanos += _lastFrameNanos;
+        _frames += 1;
+    }
+
+    /** Draw a spear at square S on G. */
+    private void drawSpear(Graphics2D g, Square s) {
+        g.setColor(SPEAR_COLOR);
+        g.fillOval(cx(s) + SPEAR_MARGIN, cy(s) + SPEAR_MARGIN,
+                   SQUARE_SIDE - 2 * SPEAR_MARGIN,
+                   SQUARE_SIDE - 2 * SPEAR_MARGIN);
+    }
+
+    /** Return the time taken by the last paint, in milliseconds. */
+    synchronized double lastFrameTime() {
+        return _lastFrameNanos / 1e6;
+    }
+
+    /** Return the mean time taken by paints so far, in milliseconds. */
+    synchronized double meanFrameTime() {
+        return _frames == 0 ? 0 : _frameNanos / 1e6 / _frames;
+    }
+
+    /** Return the number of paints so far. */
+    synchronized long frames() {
+        return _frames;
     }
 
     /** Draw a queen for side PIECE at square S on G.  */
@@ -73,9 +165,53 @@ class BoardWidget extends Pad {
                     cx(s.col()) + 2, cy(s.row()) + 4, null);
     }
 
-    /** Handle a click on S. */
+    /** Handle a click on S: select one of the pieces of the side to
+     *  move, then one of its destinations, then one of the squares to
+     *  which it may throw its spear, which completes a move.  The
+     *  squares that may be clicked next are highlighted.  Clicking
+     *  another piece of the side to move selects it instead, and
+     *  clicking any other square clears the selection. */
     private void click(Square s) {
-        repaint();
+        int k = s.index();
+        if (_from != null && _to == null && Board.inMask(_targets, k)) {
+            select(_from, s, _board.reachableMask(s, _from));
+        } else if (_to != null && Board.inMask(_targets, k)) {
+            _commands.offer(String.format("%s-%s(%s)", _from, _to, s));
+            select(null, null, null);
+        } else if (_board.get(s) == _board.turn()) {
+            select(s, null, _board.reachableMask(s, null));
+        } else {
+            select(null, null, null);
+        }
+    }
+
+    /** Make FROM and TO the selected squares and TARGETS (a mask as
+     *  returned by Board.reachableMask, or null) the highlighted ones,
+     *  repainting the squares whose appearance changes. */
+    private void select(Square from, Square to, long[] targets) {
+        repaint(_from);
+        repaint(_to);
+        repaint(_targets);
+        _from = from;
+        _to = to;
+        _targets = targets;
+        repaint(_from);
+        repaint(_to);
+        repaint(_targets);
+    }
+
+    /** Repaint the squares in MASK (as returned by Board.reachableMask),
+     *  if it is non-null. */
+    private void repaint(long[] mask) {
+        if (mask == null) {
+            return;
+        }
+        for (int w = 0; w < mask.length; w += 1) {
+            for (long bits = mask[w]; bits != 0; bits &= bits - 1) {
+                repaint(sq(w * Long.SIZE
+                           + Long.numberOfTrailingZeros(bits)));
+            }
+        }
     }
 
     /** Handle mouse click event E. */
@@ -89,18 +225,37 @@ class BoardWidget extends Pad {
         }
     }
 
-    /** Revise the displayed board according to BOARD. */
+    /** Revise the displayed board according to BOARD, repainting only
+     *  the squares whose contents have changed.  A change clears any
+     *  partial selection. */
     synchronized void update(Board board) {
+        boolean changed = false;
+        for (int i = 0; i < Board.SIZE * Board.SIZE; i += 1) {
+            Square s = sq(i);
+            if (_board.get(s) != board.get(s)) {
+                repaint(s);
+                changed = true;
+            }
+        }
         _board.copy(board);
-        repaint();
+        if (changed) {
+            select(null, null, null);
+        }
+    }
+
+    /** Repaint square S, if it is non-null. */
+    private void repaint(Square s) {
+        if (s != null) {
+            me.repaint(cx(s), cy(s), SQUARE_SIDE, SQUARE_SIDE);
+        }
     }
 
     /** Turn on move collection iff COLLECTING, and clear any current
      *  partial selection.   When move collection is off, ignore clicks on
      *  the board. */
-    void setMoveCollection(boolean collecting) {
+    synchronized void setMoveCollection(boolean collecting) {
         _acceptingMoves = collecting;
-        repaint();
+        select(null, null, null);
     }
 
     /** Return x-pixel coordinate of the left corners of column X
@@ -131,12 +286,28 @@ class BoardWidget extends Pad {
     private ArrayBlockingQueue<String> _commands;
     /** Board being displayed. */
     private final Board _board = new Board();
+    /** Image of the bare board, or null if not yet drawn. */
+    private BufferedImage _gridImage;
+
+    /** Time taken by the last paint, in nanoseconds. */
+    private long _lastFrameNanos;
+    /** Total time taken by paints, in nanoseconds. */
+    private long _frameNanos;
+    /** Number of paints. */
+    private long _frames;
 
     /** Image of white queen. */
     private BufferedImage _whiteQueen;
     /** Image of black queen. */
     private BufferedImage _blackQueen;
 
+    /** The selected piece and its selected destination, or null if
+     *  not yet selected. */
+    private Square _from, _to;
+    /** Mask (as returned by Board.reachableMask) of the squares that
+     *  may be clicked next, or null if there is no selection. */
+    private long[] _targets;
+
     /** True iff accepting moves from user. */
     private boolean _acceptingMoves;
 }
@@ -0,0 +1,207 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static amazons.Square.sq;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/** Tests of GameClock, TimeManager, and timed games.
+ *  @author Mehak Sharma
+ */
+public class ClockTest {
+
+    /** Return a Controller writing to OUT, with a game started between
+     *  a manual White and an automated Black. */
+    private static Controller controller(PrintStream out) {
+        Controller result =
+            new Controller(new NullView(), null,
+                           new TextReporter(out, out), new TextPlayer(),
+                           new AI(), out);
+        result.start();
+        return result;
+    }
+
+    /** Tests that a clock runs down the side to move's time and adds
+     *  increments. */
+    @Test
+    public void testClock() {
+        long[] now = { 0 };
+        GameClock clock = new GameClock(() -> now[0]);
+        assertFalse(clock.enabled());
+        assertTrue(clock.press(WHITE));
+        clock.set(WHITE, 60000, 1000);
+        clock.set(BLACK, 30000, 0);
+        clock.reset(WHITE);
+        now[0] = 5000;
+        assertEquals(55000, clock.remaining(WHITE));
+        assertTrue(clock.press(WHITE));
+        assertEquals(BLACK, clock.running());
+        assertEquals(56000, clock.remaining(WHITE));
+        now[0] = 36000;
+        assertEquals(-1000, clock.remaining(BLACK));
+        assertFalse(clock.press(BLACK));
+        assertEquals(-1000, clock.remaining(BLACK));
+        assertEquals("White 0:56.0 (+0:01.0), Black -0:01.0 (+0:00.0)",
+                     clock.toString());
+        clock.reset(WHITE);
+        assertEquals(30000, clock.remaining(BLACK));
+        clock.disable();
+        assertEquals("No clock.", clock.toString());
+    }
+
+    /** Tests the budgets allotted by a time manager. */
+    @Test
+    public void testTimeManager() {
+        Board board = new Board();
+        TimeManager early = new TimeManager(board, WHITE, 60000, 0, 0);
+        assertTrue(early.target() > 0);
+        assertTrue(early.target() < 60000 / 10);
+        assertTrue(early.limit() >= early.target());
+        assertTrue(early.limit() <= 60000 / 4);
+        assertEquals(early.limit(), early.deadline());
+        TimeManager incr = new TimeManager(board, WHITE, 60000, 2000, 0);
+        assertTrue(incr.target() > early.target());
+        TimeManager late = new TimeManager(board, WHITE, 100, 0, 0);
+        assertTrue(late.limit() <= 100);
+
+        TimeManager tm = new TimeManager(board, WHITE, 600000, 0, 0);
+        long target = tm.target();
+        Move a = Move.mv("d1-d7(d1)"), b = Move.mv("g1-g7(g1)");
+        assertTrue(tm.deeper(1, 100, 0, a, 1));
+        assertFalse("next depth would overrun the target",
+                    tm.deeper(2, 1000, 0, b, target / 2));
+        tm = new TimeManager(board, WHITE, 600000, 0, 0);
+        tm.deeper(1, 100, 0, a, 1);
+        assertTrue("a drop in value extends the target",
+                   tm.deeper(2, 200, -200, b, target / 2));
+        tm = new TimeManager(board, WHITE, 600000, 0, 0);
+        for (int d = 1; d <= TimeManager.STABLE_DEPTHS; d += 1) {
+            assertTrue(tm.deeper(d, 10 * d, 0, a, d));
+        }
+        assertFalse("a settled move ends the search",
+                    tm.deeper(TimeManager.STABLE_DEPTHS + 1, 40, 0, a,
+                              target / 4 + 4));
+    }
+
+    /** Tests the clock commands and losing on time. */
+    @Test
+    public void testTimedGame() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Controller controller = controller(new PrintStream(bytes, true));
+        controller.executeCommand("clock 300 2");
+        controller.executeCommand("clock black 0.5");
+        assertTrue(controller.clock().enabled());
+        assertEquals(2000, controller.clock().increment(WHITE));
+        assertEquals(0, controller.clock().increment(BLACK));
+        assertEquals(WHITE, controller.clock().running());
+        controller.move(sq("d1"), sq("d7"), sq("g7"));
+        assertEquals(BLACK, controller.clock().running());
+        assertTrue(controller.clock().remaining(WHITE) > 300000);
+        bytes.reset();
+        controller.executeCommand("time");
+        assertTrue(bytes.toString().startsWith("White 5:0"));
+        try {
+            Thread.sleep(600);
+        } catch (InterruptedException excp) {
+            fail();
+        }
+        controller.move(sq("g10"), sq("g8"), sq("g9"));
+        assertEquals(WHITE, controller.winner());
+        assertTrue(bytes.toString().contains("White wins on time."));
+        controller.executeCommand("new");
+        assertEquals(500L, controller.clock().remaining(BLACK));
+        assertEquals(EMPTY, controller.winner());
+        controller.executeCommand("clock off");
+        assertFalse(controller.clock().enabled());
+        try {
+            controller.executeCommand("clock red 10");
+            fail("bad side accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Tests that an AI under the clock moves within its budget. */
+    @Test
+    public void testTimedMove() {
+        Controller controller = controller(
+            new PrintStream(OutputStream.nullOutputStream()));
+        controller.setClock(null, 4000, 0);
+        AI ai = (AI) controller.player(BLACK);
+        controller.move(sq("d1"), sq("d7"), sq("g7"));
+        long remaining = controller.clock().remaining(BLACK);
+        TimeManager budget =
+            new TimeManager(controller.board(), BLACK, remaining, 0, 0);
+        long start = System.currentTimeMillis();
+        Move move = Move.mv(ai.myMove());
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(controller.board().isLegal(move));
+        assertTrue("took " + elapsed + " ms", elapsed
+                   <= budget.limit() + 200);
+        assertTrue(ai.depthReached() >= 1);
+    }
+
+    /** Tests that a pondering AI whose prediction is played still moves
+     *  within its budget, rather than waiting for its pondered search,
+     *  which has no deadline. */
+    @Test
+    public void testTimedPonderHit() throws Exception {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        Controller controller =
+            new Controller(new NullView(), null,
+                           new TextReporter(sink, sink), new TextPlayer(),
+                           new AI(true), sink);
+        controller.start();
+        Board game = AITest.randomPosition(51, 1);
+        for (int k = 0; k < game.numMoves(); k += 1) {
+            Move move = game.move(k);
+            controller.move(move.from(), move.to(), move.spear());
+        }
+        controller.setClock(null, 2000, 0);
+        AI ai = (AI) controller.player(BLACK);
+        controller.executeCommand(ai.myMove());
+        Move reply = null;
+        for (int i = 0; i < 1000 && reply == null; i += 1) {
+            Thread.sleep(10);
+            reply = ai.predictedReply();
+        }
+        assertNotNull(reply);
+        controller.move(reply.from(), reply.to(), reply.spear());
+        long remaining = controller.clock().remaining(BLACK);
+        TimeManager budget =
+            new TimeManager(controller.board(), BLACK, remaining, 0, 0);
+        long start = System.currentTimeMillis();
+        Move move = Move.mv(ai.myMove());
+        long elapsed = System.currentTimeMillis() - start;
+        ai.stopPondering();
+        assertTrue(controller.board().isLegal(move));
+        assertEquals(1, ai.ponderHits() + ai.ponderMisses());
+        assertTrue("took " + elapsed + " ms", elapsed
+                   <= budget.limit() + 200);
+    }
+
+    /** Tests that a time manager started at the real time, as an AI
+     *  starts one, lets a timed search on a generous clock go deeper
+     *  than depth 1. */
+    @Test
+    public void testGenerousClock() {
+        TimeManager tm = new TimeManager(new Board(), WHITE, 600000, 0,
+                                         System.currentTimeMillis());
+        assertTrue(tm.deeper(1, 100, 0, Move.mv("d1-d7(d1)"),
+                             System.currentTimeMillis()));
+        Controller controller = controller(
+            new PrintStream(OutputStream.nullOutputStream()));
+        controller.setClock(null, 8000, 5000);
+        AI ai = (AI) controller.player(BLACK);
+        controller.move(sq("d1"), sq("d7"), sq("g7"));
+        Move move = Move.mv(ai.myMove());
+        assertTrue(controller.board().isLegal(move));
+        assertTrue("reached depth " + ai.depthReached(),
+                   ai.depthReached() > 1);
+    }
+}
@@ -0,0 +1,301 @@
+package amazons;
+
+import java.nio.ByteBuffer;
+
+import static amazons.Piece.*;
+
+/** Decodes Amazons text commands directly from bytes.  This recognizes
+ *  the same language as Controller's command patterns (quit, seed N,
+ *  dump, undo, new, manual SIDE, auto SIDE, and the two forms of move),
+ *  but packs the result into a single long rather than creating a String
+ *  for each line, so that a network front end can parse many commands
+ *  without generating garbage.
+ *
+ *  The low four bits of a packed command hold its kind (one of the
+ *  constants below).  The remaining bits hold its operand: the seed
+ *  value for SEED, the ordinal of the side for MANUAL and AUTO, and the
+ *  indices of the from, to, and spear squares (eight bits each) for MOVE.
+ *  @author Mehak Sharma
+ */
+final class CommandCodec {
+
+    /** Kinds of command. BLANK is an empty or comment-only line; BAD is
+     *  an unrecognized command; BAD_NUMBER is a seed that is too large;
+     *  BAD_PLAYER is a manual or auto command naming no valid side. */
+    static final int
+        BLANK = 0, QUIT = 1, SEED = 2, DUMP = 3, UNDO = 4, NEW = 5,
+        MANUAL = 6, AUTO = 7, MOVE = 8, BAD = 9, BAD_NUMBER = 10,
+        BAD_PLAYER = 11;
+
+    /** Number of bits used for the kind of a packed command. */
+    private static final int KIND_BITS = 4;
+
+    /** Mask extracting the kind of a packed command. */
+    private static final long KIND_MASK = (1 << KIND_BITS) - 1;
+
+    /** Number of bits used for each square of a MOVE. */
+    private static final int SQUARE_BITS = 8;
+
+    /** Mask extracting one square of a MOVE. */
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+
+    /** Largest seed that fits in a packed command. */
+    static final long MAX_SEED = Long.MAX_VALUE >>> KIND_BITS;
+
+    /** Not instantiable. */
+    private CommandCodec() {
+    }
+
+    /** Return the kind of the packed command CMND. */
+    static int kind(long cmnd) {
+        return (int) (cmnd & KIND_MASK);
+    }
+
+    /** Return the seed value of the packed SEED command CMND. */
+    static long seed(long cmnd) {
+        return cmnd >>> KIND_BITS;
+    }
+
+    /** Return the side named in the packed MANUAL or AUTO command CMND. */
+    static Piece side(long cmnd) {
+        return Piece.values()[(int) (cmnd >>> KIND_BITS)];
+    }
+
+    /** Return square number K (0 for from, 1 for to, 2 for spear) of the
+     *  packed MOVE command CMND. */
+    static Square square(long cmnd, int k) {
+        return Square.sq((int) (cmnd >>> (KIND_BITS + k * SQUARE_BITS))
+                         & SQUARE_MASK);
+    }
+
+    /** Return the packed form of the command in BUF between positions
+     *  START (inclusive) and END (exclusive).  Does not change the
+     *  position or limit of BUF.  Everything from the first '#' on is a
+     *  comment, letters may be in either case, and leading and trailing
+     *  whitespace is ignored. */
+    static long decode(ByteBuffer buf, int start, int end) {
+        for (int i = start; i < end; i += 1) {
+            if (buf.get(i) == '#') {
+                end = i;
+                break;
+            }
+        }
+        while (start < end && isSpace(buf.get(start))) {
+            start += 1;
+        }
+        while (end > start && isSpace(buf.get(end - 1))) {
+            end -= 1;
+        }
+        if (start == end) {
+            return BLANK;
+        }
+        switch (lower(buf.get(start))) {
+        case 'q':
+            return keyword(buf, start, end, QUIT_WORD, QUIT);
+        case 'd':
+            return keyword(buf, start, end, DUMP_WORD, DUMP);
+        case 'u':
+            return keyword(buf, start, end, UNDO_WORD, UNDO);
+        case 'n':
+            return keyword(buf, start, end, NEW_WORD, NEW);
+        case 's':
+            return decodeSeed(buf, start, end);
+        case 'm':
+            return decodeSide(buf, word(buf, start, end, MANUAL_WORD),
+                              end, MANUAL);
+        case 'a':
+            if (end - start > 1 && lower(buf.get(start + 1)) == 'u') {
+                return decodeSide(buf, word(buf, start, end, AUTO_WORD),
+                                  end, AUTO);
+            }
+            return decodeMove(buf, start, end);
+        default:
+            return decodeMove(buf, start, end);
+        }
+    }
+
+    /** Return KIND if BUF[START .. END-1] is exactly WORD, and otherwise
+     *  the result of decoding it as a move (column letters overlap the
+     *  initial letters of several commands). */
+    private static long keyword(ByteBuffer buf, int start, int end,
+                                byte[] word, int kind) {
+        if (word(buf, start, end, word) == end) {
+            return kind;
+        }
+        return decodeMove(buf, start, end);
+    }
+
+    /** Return the packed form of the move FROM-TO(SPEAR). */
+    static long encodeMove(Square from, Square to, Square spear) {
+        return MOVE | ((long) from.index() << KIND_BITS)
+            | ((long) to.index() << (KIND_BITS + SQUARE_BITS))
+            | ((long) spear.index() << (KIND_BITS + 2 * SQUARE_BITS));
+    }
+
+    /** Return the packed form of a seed command in BUF[START .. END-1]. */
+    private static long decodeSeed(ByteBuffer buf, int start, int end) {
+        int p = word(buf, start, end, SEED_WORD);
+        if (p < 0 || p == end || !isSpace(buf.get(p))) {
+            return BAD;
+        }
+        while (p < end && isSpace(buf.get(p))) {
+            p += 1;
+        }
+        if (p == end) {
+            return BAD;
+        }
+        long value = 0;
+        boolean tooLarge = false;
+        for (; p < end; p += 1) {
+            int d = buf.get(p) - '0';
+            if (d < 0 || d > 9) {
+                return BAD;
+            }
+            if (value > (MAX_SEED - d) / 10) {
+                tooLarge = true;
+            } else {
+                value = value * 10 + d;
+            }
+        }
+        return tooLarge ? BAD_NUMBER : SEED | (value << KIND_BITS);
+    }
+
+    /** Return the packed form of a manual or auto command of kind KIND,
+     *  whose keyword ends just before P in BUF, and whose text ends at
+     *  END. */
+    private static long decodeSide(ByteBuffer buf, int p, int end, int kind) {
+        if (p < 0 || p == end || !isSpace(buf.get(p))) {
+            return BAD;
+        }
+        p += 1;
+        if (p == end) {
+            return BAD;
+        }
+        for (int i = p; i < end; i += 1) {
+            if (!isLetter(buf.get(i))) {
+                return BAD;
+            }
+        }
+        Piece side;
+        if (word(buf, p, end, WHITE_WORD) == end) {
+            side = WHITE;
+        } else if (word(buf, p, end, BLACK_WORD) == end) {
+            side = BLACK;
+        } else {
+            return BAD_PLAYER;
+        }
+        return kind | ((long) side.ordinal() << KIND_BITS);
+    }
+
+    /** Return the packed form of a move in either the FROM-TO(SPEAR) or
+     *  FROM TO SPEAR form in BUF[START .. END-1]. */
+    private static long decodeMove(ByteBuffer buf, int start, int end) {
+        int from = square(buf, start, end);
+        if (from < 0) {
+            return BAD;
+        }
+        int p = start + squareLength(from);
+        if (p == end) {
+            return BAD;
+        }
+        boolean dashed = buf.get(p) == '-';
+        if (!dashed && !isSpace(buf.get(p))) {
+            return BAD;
+        }
+        p += 1;
+        int to = square(buf, p, end);
+        if (to < 0) {
+            return BAD;
+        }
+        p += squareLength(to);
+        if (p == end) {
+            return BAD;
+        } else if (dashed ? buf.get(p) != '(' : !isSpace(buf.get(p))) {
+            return BAD;
+        }
+        p += 1;
+        int spear = square(buf, p, end);
+        if (spear < 0) {
+            return BAD;
+        }
+        p += squareLength(spear);
+        if (dashed) {
+            if (p == end || buf.get(p) != ')') {
+                return BAD;
+            }
+            p += 1;
+        }
+        if (p != end) {
+            return BAD;
+        }
+        return encodeMove(Square.sq(from), Square.sq(to), Square.sq(spear));
+    }
+
+    /** Return the index of the square designated at the start of
+     *  BUF[P .. END-1], or -1 if there is none. */
+    private static int square(ByteBuffer buf, int p, int end) {
+        if (end - p < 2) {
+            return -1;
+        }
+        int col = lower(buf.get(p)) - 'a';
+        int row = buf.get(p + 1) - '1';
+        if (col < 0 || col >= Board.SIZE || row < 0 || row > 8) {
+            return -1;
+        }
+        if (row == 0 && end - p > 2 && buf.get(p + 2) == '0') {
+            row = 9;
+        }
+        if (row >= Board.SIZE) {
+            return -1;
+        }
+        return row * Board.SIZE + col;
+    }
+
+    /** Return the number of characters in the designation of the square
+     *  with index INDEX. */
+    private static int squareLength(int index) {
+        return index / Board.SIZE >= 9 ? 3 : 2;
+    }
+
+    /** If BUF[START .. END-1] starts with WORD (ignoring case), return
+     *  the position just after it, and otherwise -1. */
+    private static int word(ByteBuffer buf, int start, int end, byte[] word) {
+        if (end - start < word.length) {
+            return -1;
+        }
+        for (int i = 0; i < word.length; i += 1) {
+            if (lower(buf.get(start + i)) != word[i]) {
+                return -1;
+            }
+        }
+        return start + word.length;
+    }
+
+    /** Return C converted to lower case, if it is an ASCII letter. */
+    private static int lower(byte c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /** Return true iff C is an ASCII letter. */
+    private static boolean isLetter(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /** Return true iff C is whitespace. */
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n'
+            || c == '\f' || c == 0x0b;
+    }
+
+    /** Keywords, in lower case. */
+    private static final byte[]
+        QUIT_WORD = { 'q', 'u', 'i', 't' },
+        SEED_WORD = { 's', 'e', 'e', 'd' },
+        DUMP_WORD = { 'd', 'u', 'm', 'p' },
+        UNDO_WORD = { 'u', 'n', 'd', 'o' },
+        NEW_WORD = { 'n', 'e', 'w' },
+        MANUAL_WORD = { 'm', 'a', 'n', 'u', 'a', 'l' },
+        AUTO_WORD = { 'a', 'u', 't', 'o' },
+        WHITE_WORD = { 'w', 'h', 'i', 't', 'e' },
+        BLACK_WORD = { 'b', 'l', 'a', 'c', 'k' };
+}
@@ -1,8 +1,13 @@
 package amazons;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
 import java.util.Random;
-import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.function.Consumer;
@@ -20,16 +25,28 @@ final class Controller {
      *  (see the Player.create method) and AUTOPLAYERTEMPLATE
      *  as an exemplar for automated players.  Reports
      *  board changes to VIEW at appropriate points.  Uses REPORTER
-     *  to report moves, wins, and errors to user. If LOGFILE is
-     *  non-null, copies all commands to it. If STRICT, exits the
+     *  to report moves, wins, and errors to user. If LOG is
+     *  non-null, records all commands in it. If STRICT, exits the
      *  program with non-zero code on receiving an erroneous move from a
      *  player. */
-    Controller(View view, PrintStream logFile, Reporter reporter,
+    Controller(View view, GameLog log, Reporter reporter,
                Player manualPlayerTemplate, Player autoPlayerTemplate) {
+        this(view, log, reporter, manualPlayerTemplate,
+             autoPlayerTemplate, System.out);
+    }
+
+    /** As for the five-argument constructor, but writes board dumps and
+     *  other direct output to OUT rather than the standard output. This
+     *  allows several Controllers (e.g., one per network game) to share
+     *  a program. */
+    Controller(View view, GameLog log, Reporter reporter,
+               Player manualPlayerTemplate, Player autoPlayerTemplate,
+               PrintStream out) {
         _view = view;
+        _out = out;
         _playing = false;
-        _logFile = logFile;
-        _input = new Scanner(System.in);
+        _log = log;
+        _input = new BufferedReader(new InputStreamReader(System.in));
         _autoPlayerTemplate = autoPlayerTemplate;
         _manualPlayerTemplate = manualPlayerTemplate;
         _nonPlayer = manualPlayerTemplate.create(EMPTY, this);
@@ -38,19 +55,15 @@ final class Controller {
 
     /** Play Amazons. */
     void play() {
-        _playing = true;
-        _winner = EMPTY;
-        _board.init();
-        _white = _manualPlayerTemplate.create(WHITE, this);
-        _black = _autoPlayerTemplate.create(BLACK, this);
+        start();
         while (_playing) {
             _view.update(_board);
             String command;
             if (_winner == EMPTY) {
                 if (_board.turn() == WHITE) {
-                    command = _white.myMove();
+                    command = _white.myMoveAsync().join();
                 } else {
-                    command = _black.myMove();
+                    command = _black.myMoveAsync().join();
                 }
             } else {
                 command = _nonPlayer.myMove();
@@ -64,9 +77,46 @@ final class Controller {
                 reportError("Error: %s%n", excp.getMessage());
             }
         }
-        if (_logFile != null) {
-            _logFile.close();
+        if (_log != null) {
+            _log.close();
+        }
+    }
+
+    /** Start a new game with a manual White player and an automated
+     *  Black player, without reading any commands. */
+    void start() {
+        _playing = true;
+        _winner = EMPTY;
+        _board.init();
+        if (_clock.enabled()) {
+            _clock.reset(WHITE);
         }
+        _white = _manualPlayerTemplate.create(WHITE, this);
+        _black = _autoPlayerTemplate.create(BLACK, this);
+        _whiteAuto = false;
+        _blackAuto = true;
+        publishMover();
+    }
+
+    /** Return true iff the session has not yet been ended by "quit". */
+    boolean playing() {
+        return _playing;
+    }
+
+    /** Return the winner of the current game, or EMPTY if it is still in
+     *  progress. */
+    Piece winner() {
+        return _winner == null ? EMPTY : _winner;
+    }
+
+    /** Return the Player currently playing SIDE (WHITE or BLACK). */
+    Player player(Piece side) {
+        return side == WHITE ? _white : _black;
+    }
+
+    /** Return true iff SIDE is currently played by an automated player. */
+    boolean isAuto(Piece side) {
+        return side == WHITE ? _whiteAuto : _blackAuto;
     }
 
     /** Return the current board.  The value returned should not be
@@ -96,10 +146,11 @@ final class Controller {
     String readLine() {
         System.out.print("> ");
         System.out.flush();
-        if (_input.hasNextLine()) {
-            return _input.nextLine().trim();
-        } else {
-            return null;
+        try {
+            String line = _input.readLine();
+            return line == null ? null : line.trim();
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
         }
     }
 
@@ -118,24 +169,66 @@ final class Controller {
         _reporter.reportMove(move);
     }
 
+    /** Report the progress of a search by calling reportProgress(ANALYSIS)
+     *  on my reporter. */
+    void reportProgress(Analysis analysis) {
+        _reporter.reportProgress(analysis);
+    }
+
+    /** Ask the player to move, if it is computing its move, to move
+     *  now.  May be called from any thread, such as a GUI's, and so
+     *  reads the player to move from _mover rather than from the board
+     *  and players, which my own thread changes. */
+    void moveNow() {
+        Player player = _mover;
+        if (player != null) {
+            player.moveNow();
+        }
+    }
+
+    /** Record in _mover the player whose turn it now is.  Called on my
+     *  own thread whenever the position or the players change. */
+    private void publishMover() {
+        _mover = player(_board.turn());
+    }
+
     /** A Command is pair (<pattern>, <processor>), where <pattern> is a
      *  Matcher that matches instances of a particular command, and
      *  <processor> is a functional object whose .accept method takes a
-     *  successfully matched Matcher and performs some operation. */
+     *  successfully matched Matcher and performs some operation.  The
+     *  pattern is compiled when first needed, once for all Controllers,
+     *  so that neither starting the program nor starting a network game
+     *  pays for compiling patterns of commands not yet used. */
     private static class Command {
         /** A new Command that matches PATN (a regular expression) and uses
          *  PROCESSOR to process commands that match the pattern. */
         Command(String patn, Consumer<Matcher> processor) {
-            _matcher = Pattern.compile(patn).matcher("");
+            _patn = patn;
             _processor = processor;
         }
 
-        /** A Matcher matching my pattern. */
-        protected final Matcher _matcher;
+        /** Return a Matcher matching my pattern. */
+        Matcher matcher() {
+            if (_matcher == null) {
+                _matcher = PATTERNS.computeIfAbsent(_patn, Pattern::compile)
+                    .matcher("");
+            }
+            return _matcher;
+        }
+
+        /** My pattern, uncompiled. */
+        private final String _patn;
+        /** A Matcher matching my pattern, or null if not yet needed. */
+        private Matcher _matcher;
         /** The function object that implements my command. */
         protected final Consumer<Matcher> _processor;
     }
 
+    /** Compiled command patterns, shared by all Controllers, keyed by
+     *  pattern. */
+    private static final Map<String, Pattern> PATTERNS =
+        new ConcurrentHashMap<>();
+
     /** A list of Commands describing the valid textual commands to the
      *  Amazons program and the methods to process them. */
     private Command[] _commands = {
@@ -146,33 +239,40 @@ final class Controller {
         new Command("new$", this::doNew),
         new Command("(manual)\\s([a-zA-Z]+)$", this::doManual),
         new Command("(auto)\\s([a-zA-Z]+)$", this::doAuto),
+        new Command("clock\\s+off$", this::doClockOff),
+        new Command("clock\\s+(?:([a-zA-Z]+)\\s+)?(\\d+(?:\\.\\d*)?)"
+                + "(?:\\s+(\\d+(?:\\.\\d*)?))?$", this::doClock),
+        new Command("time$", this::doTime),
+        new Command("metrics$", this::doMetrics),
+        new Command("memory$", this::doMemoryUsage),
+        new Command("memory\\s+(\\d+)([kmg]?)$", this::doMemory),
         new Command("([a-j](?:[1-9]|10))-([a-j](?:[1-9]|10))"
                 + "\\(([a-j](?:[1-9]|10))\\)$", this::doMove),
         new Command("([a-j](?:[1-9]|10))\\s([a-j](?:[1-9]|10))"
                 + "\\s([a-j](?:[1-9]|10))$", this::doMove)
     };
 
-    /** A Matcher whose Pattern matches comments. */
-    private final Matcher _comment = Pattern.compile("#.*").matcher("");
-
     /** Check that CMND is one of the valid Amazons commands and execute it, if
      *  so, raising an IllegalArgumentException otherwise. */
-    private void executeCommand(String cmnd) {
-        if (_logFile != null) {
-            _logFile.println(cmnd);
-            _logFile.flush();
+    void executeCommand(String cmnd) {
+        if (_log != null) {
+            _log.record(cmnd);
+        }
+        int comment = cmnd.indexOf('#');
+        if (comment >= 0) {
+            cmnd = cmnd.substring(0, comment);
         }
-        _comment.reset(cmnd);
-        cmnd = _comment.replaceFirst("").trim().toLowerCase();
+        cmnd = cmnd.trim().toLowerCase();
 
         if (cmnd.isEmpty()) {
             return;
         }
+        Metrics.COMMANDS.increment();
 
         for (Command parser : _commands) {
-            parser._matcher.reset(cmnd);
-            if (parser._matcher.matches()) {
-                parser._processor.accept(parser._matcher);
+            Matcher mat = parser.matcher().reset(cmnd);
+            if (mat.matches()) {
+                parser._processor.accept(mat);
                 return;
             }
         }
@@ -181,28 +281,22 @@ final class Controller {
 
     /** Command "new". */
     private void doNew(Matcher unused) {
-        _board.init();
-        _winner = null;
+        newGame();
     }
 
     /** Command "quit". */
     private void doQuit(Matcher unused) {
-        _playing = false;
+        quit();
     }
 
     /** Command "move". */
     private void doMove(Matcher unused) {
-        _board.makeMove(sq(unused.group(1)),
-                sq(unused.group(2)), sq(unused.group(3)));
-        _winner = _board.winner();
-        if (_winner != EMPTY) {
-            System.out.println("* " + _winner.toName() + " wins.");
-        }
+        move(sq(unused.group(1)), sq(unused.group(2)), sq(unused.group(3)));
     }
 
     /** Command "move". */
     private void doUndo(Matcher unused) {
-        _board.undo();
+        undo();
     }
 
     /** Command "seed N" where N is the first group of MAT. */
@@ -216,35 +310,230 @@ final class Controller {
 
     /** Command "manual". */
     private void doManual(Matcher unused) {
-        if (unused.group(2).toLowerCase().equals("black")) {
-            _black = _manualPlayerTemplate.create(BLACK, this);
-        } else if (unused.group(2).toLowerCase().equals("white")) {
-            _white = _manualPlayerTemplate.create(WHITE, this);
+        manual(side(unused.group(2)));
+    }
+
+    /** Command "auto". */
+    private void doAuto(Matcher unused) {
+        auto(side(unused.group(2)));
+    }
+
+    /** Command "clock [SIDE] SECONDS [INCREMENT]", where SIDE,
+     *  SECONDS, and INCREMENT are the groups of MAT. */
+    private void doClock(Matcher mat) {
+        Piece side = mat.group(1) == null ? null : side(mat.group(1));
+        long increment =
+            mat.group(3) == null ? 0 : millis(mat.group(3));
+        setClock(side, millis(mat.group(2)), increment);
+    }
+
+    /** Command "clock off". */
+    private void doClockOff(Matcher unused) {
+        setClock(null, -1, 0);
+    }
+
+    /** Command "time". */
+    private void doTime(Matcher unused) {
+        time();
+    }
+
+    /** Command "metrics". */
+    private void doMetrics(Matcher unused) {
+        metrics();
+    }
+
+    /** Command "memory". */
+    private void doMemoryUsage(Matcher unused) {
+        memory();
+    }
+
+    /** Command "memory BYTES[k|m|g]", where BYTES and the suffix
+     *  are the groups of MAT. */
+    private void doMemory(Matcher mat) {
+        try {
+            long bytes = Long.parseLong(mat.group(1));
+            int scale = mat.group(2).isEmpty() ? 0
+                : "kmg".indexOf(mat.group(2)) + 1;
+            for (int k = 0; k < scale; k += 1) {
+                bytes = Math.multiplyExact(bytes, 1024L);
+            }
+            setMemory(bytes);
+        } catch (NumberFormatException | ArithmeticException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /** Return the number of milliseconds in SECONDS, a decimal number
+     *  of seconds. */
+    private static long millis(String seconds) {
+        try {
+            return Math.round(Double.parseDouble(seconds) * 1000);
+        } catch (NumberFormatException excp) {
+            throw error("Bad time: %s", seconds);
+        }
+    }
+
+    /** Dump the contents of the board on standard output. */
+    private void doDump(Matcher unused) {
+        dump();
+    }
+
+    /** Return the side named by NAME ("white" or "black", in any case). */
+    private static Piece side(String name) {
+        if (name.toLowerCase().equals("black")) {
+            return BLACK;
+        } else if (name.toLowerCase().equals("white")) {
+            return WHITE;
         } else {
             throw error("Not a valid player.");
         }
     }
 
-    /** Command "auto". */
-    private void doAuto(Matcher unused) {
-        if (unused.group(2).toLowerCase().equals("black")) {
+    /* The methods below carry out the commands once they have been parsed,
+     * whether from a line of text (as above) or by some other front end,
+     * such as GameServer. */
+
+    /** Clear the board to the initial position. */
+    void newGame() {
+        _board.init();
+        _winner = null;
+        if (_clock.enabled()) {
+            _clock.reset(WHITE);
+        }
+        publishMover();
+    }
+
+    /** End the session. */
+    void quit() {
+        _playing = false;
+    }
+
+    /** Make the move FROM-TO(SPEAR) for the side to move, if legal. */
+    void move(Square from, Square to, Square spear) {
+        if (!_board.isLegal(from, to, spear)) {
+            _out.println("Not a legal move.");
+            return;
+        }
+        Piece mover = _board.turn();
+        _board.makeMove(from, to, spear);
+        publishMover();
+        _winner = _board.winner();
+        boolean inTime = _clock.press(mover);
+        if (!inTime) {
+            _winner = mover.opponent();
+        }
+        if (_winner != EMPTY) {
+            _clock.stop();
+            _out.println("* " + _winner.toName()
+                         + (inTime ? " wins." : " wins on time."));
+            if (_log != null) {
+                _log.endGame();
+            }
+        }
+    }
+
+    /** Take back the last move, if any. */
+    void undo() {
+        if (_board.numMoves() == 0) {
+            _out.println("No legal moves to undo.");
+            return;
+        }
+        _board.undo();
+        publishMover();
+        _clock.start(_board.turn());
+    }
+
+    /** Make SIDE a manual player. */
+    void manual(Piece side) {
+        if (side == BLACK) {
+            _black = _manualPlayerTemplate.create(BLACK, this);
+            _blackAuto = false;
+        } else {
+            _white = _manualPlayerTemplate.create(WHITE, this);
+            _whiteAuto = false;
+        }
+        publishMover();
+    }
+
+    /** Make SIDE an automated player. */
+    void auto(Piece side) {
+        if (side == BLACK) {
             _black = _autoPlayerTemplate.create(BLACK, this);
-        } else if (unused.group(2).toLowerCase().equals("white")) {
-            _white = _autoPlayerTemplate.create(WHITE, this);
+            _blackAuto = true;
         } else {
-            throw error("Not a valid player.");
+            _white = _autoPlayerTemplate.create(WHITE, this);
+            _whiteAuto = true;
         }
+        publishMover();
     }
 
-    /** Dump the contents of the board on standard output. */
-    private void doDump(Matcher unused) {
-        System.out.printf("===%n%s===%n", _board);
+    /** Print the contents of the board on my output. */
+    void dump() {
+        _out.printf("===%n%s===%n", _board);
+    }
+
+    /** Give SIDE (or both sides, if SIDE is null) MILLIS milliseconds
+     *  for each game, plus INCREMENT milliseconds per move, starting the
+     *  clock for the side to move.  If MILLIS is negative, stop keeping
+     *  time instead. */
+    void setClock(Piece side, long millis, long increment) {
+        if (millis < 0) {
+            _clock.disable();
+            return;
+        }
+        if (side == null) {
+            _clock.disable();
+            side = WHITE;
+        }
+        _clock.set(side, millis, increment);
+        _clock.start(_board.turn());
+    }
+
+    /** Print the times remaining on my output. */
+    void time() {
+        _out.println(_clock);
+    }
+
+    /** Print the current values of all metrics on my output. */
+    void metrics() {
+        _out.print(Metrics.dump());
+    }
+
+    /** Let each automated player keep no more than about BYTES bytes
+     *  of search tables between moves, including those created
+     *  later. */
+    void setMemory(long bytes) {
+        _autoPlayerTemplate.setMemory(bytes);
+        for (Player player : new Player[] { _white, _black }) {
+            if (player != null) {
+                player.setMemory(bytes);
+            }
+        }
+    }
+
+    /** Print the memory kept by each player on my output. */
+    void memory() {
+        for (Piece side : new Piece[] { WHITE, BLACK }) {
+            Player player = player(side);
+            String usage = player == null ? null : player.memoryUsage();
+            if (usage != null) {
+                _out.printf("%s: %s%n", side.toName(), usage);
+            }
+        }
+    }
+
+    /** Return the game clock, which is enabled iff games are timed. */
+    GameClock clock() {
+        return _clock;
     }
 
 
     /** The board. */
     private Board _board = new Board();
 
+    /** The game clock. */
+    private final GameClock _clock = new GameClock();
+
     /** The winning side of the current game. */
     private Piece _winner;
 
@@ -257,16 +546,27 @@ final class Controller {
     /** My pseudo-random number generator. */
     private Random _randGen = new Random();
 
-    /** Log file, or null if absent. */
-    private PrintStream _logFile;
+    /** Log of commands, or null if absent. */
+    private GameLog _log;
+
+    /** Destination of board dumps and other direct output. */
+    private PrintStream _out;
 
-    /** Input source. */
-    private Scanner _input;
+    /** Input source.  (A Scanner would do, but costs tens of
+     *  milliseconds of regular-expression compilation at startup.) */
+    private BufferedReader _input;
 
     /** The current White and Black players, each created from
      *  _autoPlayerTemplate or _manualPlayerTemplate. */
     private Player _white, _black;
 
+    /** The player whose turn it is, as last recorded by publishMover,
+     *  for moveNow to read from other threads. */
+    private volatile Player _mover;
+
+    /** True iff _white (resp. _black) is an automated player. */
+    private boolean _whiteAuto, _blackAuto;
+
     /** A dummy Player used to return commands but not moves when no
      *  game is in progress. */
     private Player _nonPlayer;
@@ -0,0 +1,343 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+import static amazons.Utils.iterable;
+
+/** The coordinator of a search spread over several processes.  The
+ *  legal moves of the root position are divided into batches, which are
+ *  handed out to SearchWorkers over TCP as they become free; each worker
+ *  searches the position after each move of its batch, and the best
+ *  move is chosen from the values returned.  The root position is sent
+ *  to each worker as the moves leading to it, so a board must have its
+ *  whole history.
+ *
+ *  A worker is lost if its connection fails, it returns a malformed
+ *  reply, or (with a timeout) it takes too long to reply.  The batch it
+ *  was searching goes back to the others, and if all workers are lost,
+ *  the coordinator searches the remaining batches itself.  An "error"
+ *  reply, however, means the request itself was bad, and fails the
+ *  search.
+ *
+ *  The subtrees are searched independently, with full windows, so the
+ *  distributed search visits more positions in all than a single search
+ *  to the same depth; it gains by spreading them over more processors.
+ *  Usage: java amazons.DistributedSearch DEPTH HOST:PORT... reads
+ *  positions as move lists (as for Analyzer), one per line, from the
+ *  standard input, and prints an analysis of each.
+ *  @author Mehak Sharma
+ */
+final class DistributedSearch {
+
+    /** Default number of root moves per batch. */
+    static final int DEFAULT_BATCH = 16;
+
+    /** A coordinator using the workers at WORKERS, handing out BATCH
+     *  root moves at a time, and giving up on a worker that takes more
+     *  than TIMEOUT milliseconds to connect or reply (never, if 0).
+     *  Searches locally with AIs created from TEMPLATE when all workers
+     *  are lost. */
+    DistributedSearch(List<InetSocketAddress> workers, int batch,
+                      int timeout, AI template) {
+        _workers = new ArrayList<>(workers);
+        _batch = batch;
+        _timeout = timeout;
+        _template = template;
+    }
+
+    /** Analyze the positions on the standard input with the workers given
+     *  by ARGS[1..] to the depth given by ARGS[0]. */
+    public static void main(String... args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java amazons.DistributedSearch DEPTH"
+                               + " HOST:PORT...");
+            System.exit(1);
+        }
+        List<InetSocketAddress> workers = new ArrayList<>();
+        for (int i = 1; i < args.length; i += 1) {
+            int colon = args[i].lastIndexOf(':');
+            workers.add(new InetSocketAddress(
+                colon < 0 ? "localhost" : args[i].substring(0, colon),
+                Integer.parseInt(args[i].substring(colon + 1))));
+        }
+        DistributedSearch coordinator =
+            new DistributedSearch(workers, DEFAULT_BATCH, 0, new AI());
+        int depth = Integer.parseInt(args[0]);
+        BufferedReader in =
+            new BufferedReader(new InputStreamReader(System.in));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                Board board = new Board();
+                for (String word : line.trim().split("\\s+")) {
+                    if (word.isEmpty()) {
+                        continue;
+                    }
+                    Move move = Move.mv(word.toLowerCase());
+                    if (move == null || !board.isLegal(move)) {
+                        throw error("invalid move %s", word);
+                    }
+                    board.makeMove(move);
+                }
+                System.out.println(coordinator.search(board, depth));
+                System.err.printf("(%d workers lost)%n",
+                                  coordinator.workersLost());
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Search failed: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return an analysis of BOARD by a search of depth DEPTH > 0,
+     *  whose principal variation is just the best move, or null if the
+     *  game on BOARD is over.  Does not modify BOARD. */
+    Analysis search(Board board, int depth) {
+        if (depth < 1) {
+            throw error("depth must be positive");
+        } else if (board.winner() != EMPTY) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        _lost = 0;
+        Job job = new Job(board, depth);
+        List<Thread> threads = new ArrayList<>();
+        for (InetSocketAddress address : _workers) {
+            Thread thread = new Thread(() -> serve(address, job),
+                                       "amazons-coordinator");
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        int[] batch;
+        while ((batch = job.takeLocal()) != null) {
+            AI ai = (AI) _template.create(null, null);
+            int[] values = new int[batch[1] - batch[0]];
+            Board child = new Board(board);
+            for (int i = batch[0]; i < batch[1]; i += 1) {
+                child.makeMove(job._moves.get(i));
+                values[i - batch[0]] = ai.value(child, depth - 1);
+                child.undo();
+            }
+            job.finish(batch, values, ai.nodes());
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException excp) {
+                /* Ignore. */
+            }
+        }
+        if (job._failure != null) {
+            throw error("worker rejected search: %s", job._failure);
+        }
+        int sense = board.turn() == WHITE ? 1 : -1;
+        int best = 0;
+        for (int i = 1; i < job._values.length; i += 1) {
+            if (sense * job._values[i] > sense * job._values[best]) {
+                best = i;
+            }
+        }
+        Move move = job._moves.get(best);
+        return new Analysis(move, job._values[best], depth, job._nodes,
+                            System.currentTimeMillis() - start,
+                            new Move[] { move });
+    }
+
+    /** Return the number of workers lost during my last search. */
+    int workersLost() {
+        return _lost;
+    }
+
+    /** Search batches of JOB on the worker at ADDRESS until there are
+     *  no more, or the worker is lost. */
+    private void serve(InetSocketAddress address, Job job) {
+        int[] batch = null;
+        try (Socket socket = new Socket()) {
+            socket.connect(address, _timeout);
+            socket.setSoTimeout(_timeout);
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(),
+                                                StandardCharsets.UTF_8);
+            if (!request(in, out, job._position).equals("ok")) {
+                throw new IOException("position refused");
+            }
+            while ((batch = job.take()) != null) {
+                StringBuilder req = new StringBuilder("search ");
+                req.append(job._depth - 1);
+                for (int i = batch[0]; i < batch[1]; i += 1) {
+                    req.append(' ').append(job._moves.get(i));
+                }
+                String[] reply = request(in, out, req.toString()).split(" ");
+                int n = batch[1] - batch[0];
+                if (reply.length != n + 2 || !reply[0].equals("scores")) {
+                    throw new IOException("malformed reply");
+                }
+                int[] values = new int[n];
+                for (int i = 0; i < n; i += 1) {
+                    values[i] = Integer.parseInt(reply[i + 2]);
+                }
+                job.finish(batch, values, Long.parseLong(reply[1]));
+                batch = null;
+            }
+            out.write("quit\n");
+            out.flush();
+        } catch (IOException | NumberFormatException excp) {
+            synchronized (this) {
+                _lost += 1;
+            }
+            job.lose(batch);
+        } catch (IllegalArgumentException excp) {
+            job.fail(excp.getMessage());
+        }
+    }
+
+    /** Send the request REQ on OUT and return the reply read from IN.
+     *  An "error" reply raises an IllegalArgumentException. */
+    private static String request(BufferedReader in, Writer out, String req)
+        throws IOException {
+        out.write(req + "\n");
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("connection closed");
+        } else if (reply.startsWith("error")) {
+            throw error(reply.substring("error".length()).trim());
+        }
+        return reply;
+    }
+
+    /** The state of one distributed search. */
+    private class Job {
+
+        /** A search of BOARD to DEPTH. */
+        Job(Board board, int depth) {
+            _depth = depth;
+            Board replay = new Board(board.size());
+            StringBuilder position = new StringBuilder("position ");
+            position.append(board.size());
+            for (int k = 0; k < board.numMoves(); k += 1) {
+                Move move = board.move(k);
+                replay.makeMove(move);
+                position.append(' ').append(move);
+            }
+            if (!replay.equals(board)) {
+                throw error("board does not have its whole history");
+            }
+            _position = position.toString();
+            for (Move move : iterable(board.legalMoves())) {
+                _moves.add(move);
+            }
+            _values = new int[_moves.size()];
+            for (int i = 0; i < _moves.size(); i += _batch) {
+                _batches.add(new int[] {
+                    i, Math.min(i + _batch, _moves.size())
+                });
+            }
+            _unfinished = _batches.size();
+            _live = _workers.size();
+        }
+
+        /** Return the next batch, as a range [START, END) of indices into
+         *  _moves, waiting while all unfinished batches are out to
+         *  workers.  Return null when there are no more. */
+        synchronized int[] take() {
+            while (_batches.isEmpty() && _unfinished > 0
+                   && _failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException excp) {
+                    return null;
+                }
+            }
+            return _failure != null ? null : _batches.poll();
+        }
+
+        /** As for take, but for the coordinator's own thread, which
+         *  searches only once all workers are lost. */
+        synchronized int[] takeLocal() {
+            while (_live > 0 && _unfinished > 0 && _failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException excp) {
+                    return null;
+                }
+            }
+            return _failure != null ? null : _batches.poll();
+        }
+
+        /** Record VALUES as the values of the moves of BATCH, found by
+         *  visiting NODES positions. */
+        synchronized void finish(int[] batch, int[] values, long nodes) {
+            System.arraycopy(values, 0, _values, batch[0], values.length);
+            _nodes += nodes;
+            _unfinished -= 1;
+            notifyAll();
+        }
+
+        /** Note that a worker has been lost while searching BATCH (if
+         *  non-null). */
+        synchronized void lose(int[] batch) {
+            if (batch != null) {
+                _batches.push(batch);
+            }
+            _live -= 1;
+            notifyAll();
+        }
+
+        /** Note that a worker rejected a request with MESSAGE. */
+        synchronized void fail(String message) {
+            _failure = message;
+            _live -= 1;
+            notifyAll();
+        }
+
+        /** The position request. */
+        private final String _position;
+        /** Depth of the whole search. */
+        private final int _depth;
+        /** The root moves. */
+        private final List<Move> _moves = new ArrayList<>();
+        /** Values after each of _moves. */
+        private final int[] _values;
+        /** Batches not yet handed out. */
+        private final Deque<int[]> _batches = new ArrayDeque<>();
+        /** Number of batches whose values are not yet known. */
+        private int _unfinished;
+        /** Number of workers not lost. */
+        private int _live;
+        /** Total positions visited. */
+        private long _nodes;
+        /** Message of a rejected request, or null. */
+        private String _failure;
+    }
+
+    /** Addresses of the workers. */
+    private final List<InetSocketAddress> _workers;
+    /** Number of root moves per batch. */
+    private final int _batch;
+    /** Timeout for connecting and replies (milliseconds), or 0. */
+    private final int _timeout;
+    /** Creates the AIs used for searching locally. */
+    private final AI _template;
+    /** Number of workers lost during the last search. */
+    private int _lost;
+}
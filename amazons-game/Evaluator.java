@@ -0,0 +1,15 @@
+package amazons;
+
+/** A static evaluation function for positions, used by AI at the
+ *  leaves of its search.
+ *  @author Mehak Sharma
+ */
+interface Evaluator {
+
+    /** Return a heuristic value for BOARD, positive if it favors White
+     *  and negative if it favors Black, assuming the game on BOARD is
+     *  not over.  Must not modify BOARD, and must be safe to call from
+     *  several threads at once. */
+    int evaluate(Board board);
+
+}
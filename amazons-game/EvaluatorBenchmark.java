@@ -0,0 +1,76 @@
+package amazons;
+
+import java.util.List;
+
+/** Compares the speed of the Evaluators on the positions of
+ *  SearchBenchmark's suite: the average time of one evaluation, after
+ *  warming up, and the time of a fixed-depth AI search of the whole
+ *  suite using each.  Also prints the sum of all the values computed,
+ *  so that the evaluations are used and cannot be optimized away.
+ *  Usage: java amazons.EvaluatorBenchmark [DEPTH].
+ *  @author Mehak Sharma
+ */
+final class EvaluatorBenchmark {
+
+    /** Not instantiable. */
+    private EvaluatorBenchmark() {
+    }
+
+    /** Run the comparison, searching to the depth given in ARGS. */
+    public static void main(String... args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        List<Board> suite = SearchBenchmark.positionSuite();
+        System.out.printf("%-10s %10s %12s %16s%n", "evaluator",
+                          "eval (us)", "search (ms)", "sum");
+        for (int e = 0; e < EVALUATORS.length; e += 1) {
+            Evaluator evaluator = EVALUATORS[e];
+            long sum = 0;
+            for (int i = 0; i < WARMUP; i += 1) {
+                sum += evaluate(evaluator, suite);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < REPETITIONS; i += 1) {
+                sum += evaluate(evaluator, suite);
+            }
+            double eval =
+                (System.nanoTime() - start) / 1e3 / REPETITIONS
+                / suite.size();
+            start = System.nanoTime();
+            for (Board board : suite) {
+                AI ai = new AI();
+                ai.setEvaluator(evaluator);
+                ai.bestMove(board, depth);
+            }
+            double search = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-10s %10.2f %12.1f %16d%n", NAMES[e], eval,
+                              search, sum);
+        }
+    }
+
+    /** Evaluate each of BOARDS with EVALUATOR, returning the sum of the
+     *  values. */
+    private static int evaluate(Evaluator evaluator, List<Board> boards) {
+        int result = 0;
+        for (Board board : boards) {
+            result += evaluator.evaluate(board);
+        }
+        return result;
+    }
+
+    /** The evaluators compared. */
+    private static final Evaluator[] EVALUATORS = {
+        new MobilityEvaluator(), new TerritoryEvaluator(),
+        new BitboardEvaluator(),
+    };
+
+    /** Names of the elements of EVALUATORS. */
+    private static final String[] NAMES = {
+        "mobility", "territory", "bitboard",
+    };
+
+    /** Number of untimed evaluations of the suite. */
+    private static final int WARMUP = 2000;
+
+    /** Number of timed evaluations of the suite. */
+    private static final int REPETITIONS = 2000;
+}
@@ -8,6 +8,8 @@ import java.util.regex.Pattern;
 
 import java.util.concurrent.ArrayBlockingQueue;
 
+import javax.swing.SwingUtilities;
+
 /** The GUI controller for an Amazons board and buttons.
  *  @author Mehak Sharma
  */
@@ -19,8 +21,8 @@ class GUI extends TopLevel implements View, Reporter {
     /** A new window with given TITLE providing a view of an Amazons board. */
     GUI(String title) {
         super(title, true);
-        System.err.println("Error: --display not implemented.");
 
+        addMenuButton("Game->Move now", this::moveNow);
         addMenuButton("Game->Quit", this::quit);
         addMenuButton("Settings->Seed", this::newSeed);
 
@@ -29,6 +31,21 @@ class GUI extends TopLevel implements View, Reporter {
             new LayoutSpec("y", 1,
                            "height", 1,
                            "width", 3));
+        addLabel("", "status",
+                 new LayoutSpec("y", 2,
+                                "width", 3));
+    }
+
+    /** Use ACTION to respond to "Move now" clicks. */
+    void setMoveNowAction(Runnable action) {
+        _moveNowAction = action;
+    }
+
+    /** Response to "Move now" click. */
+    private void moveNow(String dummy) {
+        if (_moveNowAction != null) {
+            _moveNowAction.run();
+        }
     }
 
     /** Response to "Quit" button click. */
@@ -86,12 +103,31 @@ class GUI extends TopLevel implements View, Reporter {
     }
 
     @Override
-    public void reportMove(Move unused) {
+    public void reportMove(Move move) {
+        showStatus(String.format("Moved %s.", move));
+    }
+
+    @Override
+    public void reportProgress(Analysis analysis) {
+        showStatus(String.format("Thinking: depth %d, best %s (%d),"
+                                 + " %d positions, %.1f s",
+                                 analysis.depth(), analysis.move(),
+                                 analysis.score(), analysis.nodes(),
+                                 analysis.millis() / 1000.0));
+    }
+
+    /** Display TEXT in the status line.  Does not wait for the display,
+     *  so that it may be called from a search. */
+    private void showStatus(String text) {
+        SwingUtilities.invokeLater(() -> setLabel("status", text));
     }
 
     /** The board widget. */
     private BoardWidget _widget;
 
+    /** Response to "Move now" clicks, or null. */
+    private Runnable _moveNowAction;
+
     /** Queue of pending commands resulting from menu clicks and moves on the
      *  board.  We use a blocking queue because the responses to clicks
      *  on the board and on menus happen in parallel to the methods that
@@ -0,0 +1,153 @@
+package amazons;
+
+import java.util.function.LongSupplier;
+
+import static amazons.Piece.*;
+
+/** A chess clock for a game of Amazons: each side has a remaining time
+ *  that runs down while it is that side's turn, and an increment added
+ *  to it after each of its moves.  A clock is initially disabled, in
+ *  which case it keeps no time.  Times are in milliseconds.  The
+ *  methods are synchronized, so that players may consult the clock
+ *  from other threads.
+ *  @author Mehak Sharma
+ */
+final class GameClock {
+
+    /** A disabled clock using the system clock. */
+    GameClock() {
+        this(System::currentTimeMillis);
+    }
+
+    /** A disabled clock that reads the current time from TIME. */
+    GameClock(LongSupplier time) {
+        _time = time;
+    }
+
+    /** Give SIDE MILLIS milliseconds for the game, plus INCREMENT
+     *  milliseconds after each move, enabling the clock.  If the clock
+     *  was disabled, the other side gets the same.  Takes effect
+     *  immediately, and again at each reset. */
+    synchronized void set(Piece side, long millis, long increment) {
+        if (!_enabled) {
+            Piece other = side.opponent();
+            _initial[other.ordinal()] = _remaining[other.ordinal()] = millis;
+            _increment[other.ordinal()] = increment;
+        }
+        _initial[side.ordinal()] = _remaining[side.ordinal()] = millis;
+        _increment[side.ordinal()] = increment;
+        _enabled = true;
+    }
+
+    /** Stop keeping time. */
+    synchronized void disable() {
+        _enabled = false;
+        _running = null;
+    }
+
+    /** Return true iff I am keeping time. */
+    synchronized boolean enabled() {
+        return _enabled;
+    }
+
+    /** Restore both sides' times to those last set, and start the time
+     *  of SIDE running. */
+    synchronized void reset(Piece side) {
+        System.arraycopy(_initial, 0, _remaining, 0, _initial.length);
+        _running = null;
+        start(side);
+    }
+
+    /** Start the time of SIDE running, stopping the other side's time
+     *  (without an increment). */
+    synchronized void start(Piece side) {
+        if (!_enabled) {
+            return;
+        }
+        stop();
+        _running = side;
+        _started = _time.getAsLong();
+    }
+
+    /** End the turn of SIDE, who has just moved: stop its time, add its
+     *  increment if it has not run out of time, and start the other
+     *  side's time.  Return false iff SIDE ran out of time. */
+    synchronized boolean press(Piece side) {
+        if (!_enabled) {
+            return true;
+        }
+        if (_running == side) {
+            stop();
+        }
+        boolean inTime = _remaining[side.ordinal()] >= 0;
+        if (inTime) {
+            _remaining[side.ordinal()] += _increment[side.ordinal()];
+        }
+        start(side.opponent());
+        return inTime;
+    }
+
+    /** Return the time remaining to SIDE, counting the current turn if
+     *  SIDE's time is running.  Negative if SIDE has run out of time. */
+    synchronized long remaining(Piece side) {
+        long result = _remaining[side.ordinal()];
+        if (_running == side) {
+            result -= _time.getAsLong() - _started;
+        }
+        return result;
+    }
+
+    /** Return SIDE's increment. */
+    synchronized long increment(Piece side) {
+        return _increment[side.ordinal()];
+    }
+
+    /** Return the side whose time is running, or null if none is. */
+    synchronized Piece running() {
+        return _running;
+    }
+
+    /** Stop the running time, if any, charging the elapsed time to its
+     *  side. */
+    synchronized void stop() {
+        if (_running != null) {
+            _remaining[_running.ordinal()] -= _time.getAsLong() - _started;
+            _running = null;
+        }
+    }
+
+    /** Return TIME as minutes and seconds (for example, 4:05.3). */
+    static String format(long time) {
+        String sign = time < 0 ? "-" : "";
+        time = Math.abs(time);
+        return String.format("%s%d:%04.1f", sign, time / 60000,
+                             (time % 60000) / 1000.0);
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (!_enabled) {
+            return "No clock.";
+        }
+        return String.format("White %s (+%s), Black %s (+%s)",
+                             format(remaining(WHITE)),
+                             format(_increment[WHITE.ordinal()]),
+                             format(remaining(BLACK)),
+                             format(_increment[BLACK.ordinal()]));
+    }
+
+    /** Source of the current time. */
+    private final LongSupplier _time;
+    /** True iff I am keeping time. */
+    private boolean _enabled;
+    /** Times set for each side, by Piece ordinal. */
+    private final long[] _initial = new long[Piece.values().length];
+    /** Time remaining to each side, not counting the current turn. */
+    private final long[] _remaining = new long[Piece.values().length];
+    /** Increment of each side. */
+    private final long[] _increment = new long[Piece.values().length];
+    /** Side whose time is running, or null. */
+    private Piece _running;
+    /** Time at which _running's time started running. */
+    private long _started;
+}
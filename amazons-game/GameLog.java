@@ -0,0 +1,180 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import static amazons.Square.sq;
+
+/** A log of the commands executed by a Controller.  Records are the
+ *  command lines themselves, so that a log is still valid input to
+ *  amazons.Main, but they are accumulated in memory and written out in
+ *  batches: when enough records have accumulated, when enough time has
+ *  passed since the last write, at the end of each game, and on close.
+ *  Thus a busy server running many games does not make a system call
+ *  per move.
+ *
+ *  The static replay methods read a log back into Boards for analysis.
+ *  @author Mehak Sharma
+ */
+final class GameLog {
+
+    /** Default number of records accumulated before writing. */
+    static final int DEFAULT_BATCH = 64;
+
+    /** Default longest time (in milliseconds) a record may wait to be
+     *  written, assuming further records arrive. */
+    static final long DEFAULT_INTERVAL = 1000;
+
+    /** A log writing to OUT in batches of at most BATCH records, writing
+     *  any record that is more than INTERVAL milliseconds old when the
+     *  next record arrives. */
+    GameLog(OutputStream out, int batch, long interval) {
+        _out = out;
+        _batch = batch;
+        _interval = interval;
+        _buffer = new byte[INITIAL_BUFFER];
+        _lastWrite = System.currentTimeMillis();
+    }
+
+    /** A log writing to OUT with default batching. */
+    GameLog(OutputStream out) {
+        this(out, DEFAULT_BATCH, DEFAULT_INTERVAL);
+    }
+
+    /** Return a log writing to a new file named NAME. */
+    static GameLog open(String name) throws IOException {
+        return new GameLog(new FileOutputStream(name));
+    }
+
+    /** Append the command CMND as a record. */
+    synchronized void record(String cmnd) {
+        int n = cmnd.length();
+        if (_size + n + 1 > _buffer.length) {
+            byte[] bigger = new byte[Math.max(2 * _buffer.length,
+                                              _size + n + 1)];
+            System.arraycopy(_buffer, 0, bigger, 0, _size);
+            _buffer = bigger;
+        }
+        for (int i = 0; i < n; i += 1) {
+            char c = cmnd.charAt(i);
+            _buffer[_size + i] = (byte) (c < NON_ASCII ? c : '?');
+        }
+        _buffer[_size + n] = '\n';
+        _size += n + 1;
+        _records += 1;
+        if (_records >= _batch
+            || System.currentTimeMillis() - _lastWrite >= _interval) {
+            flush();
+        }
+    }
+
+    /** Note that a game has ended, writing all pending records. */
+    void endGame() {
+        flush();
+    }
+
+    /** Write all pending records. */
+    synchronized void flush() {
+        if (_size > 0) {
+            try {
+                _out.write(_buffer, 0, _size);
+                _out.flush();
+            } catch (IOException excp) {
+                System.err.printf("Could not write log: %s%n",
+                                  excp.getMessage());
+            }
+            _writes += 1;
+        }
+        _size = 0;
+        _records = 0;
+        _lastWrite = System.currentTimeMillis();
+    }
+
+    /** Write all pending records and close the log. */
+    synchronized void close() {
+        flush();
+        try {
+            _out.close();
+        } catch (IOException excp) {
+            /* Ignore. */
+        }
+    }
+
+    /** Return the number of writes made to the underlying stream. */
+    synchronized int writes() {
+        return _writes;
+    }
+
+    /** Return the final position of each game in the log read from IN.
+     *  A game starts at the beginning of the log and after each "new"
+     *  command.  Moves and undos are applied; illegal moves and all other
+     *  commands are ignored.  Each Board retains its game's moves. */
+    static List<Board> replayGames(Reader in) throws IOException {
+        List<Board> games = new ArrayList<>();
+        Board board = new Board();
+        games.add(board);
+        BufferedReader lines = new BufferedReader(in);
+        Matcher move = Move.MOVE_PATTERN.matcher("");
+        String line;
+        while ((line = lines.readLine()) != null) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim().toLowerCase();
+            if (line.equals("new")) {
+                board = new Board();
+                games.add(board);
+            } else if (line.equals("undo")) {
+                if (board.numMoves() > 0) {
+                    board.undo();
+                }
+            } else if (move.reset(line).matches()) {
+                int k = move.group(1) != null ? 1 : 4;
+                Square from = sq(move.group(k)),
+                    to = sq(move.group(k + 1)),
+                    spear = sq(move.group(k + 2));
+                if (board.isLegal(from, to, spear)) {
+                    board.makeMove(from, to, spear);
+                }
+            }
+        }
+        return games;
+    }
+
+    /** Return the final position of the last game in the log read from
+     *  IN. */
+    static Board replay(Reader in) throws IOException {
+        List<Board> games = replayGames(in);
+        return games.get(games.size() - 1);
+    }
+
+    /** Initial size of the record buffer. */
+    private static final int INITIAL_BUFFER = 4096;
+
+    /** Characters at or above this are not written as themselves. */
+    private static final char NON_ASCII = 128;
+
+    /** Destination of records. */
+    private final OutputStream _out;
+    /** Maximum number of pending records. */
+    private final int _batch;
+    /** Maximum age of pending records (in milliseconds). */
+    private final long _interval;
+    /** Pending records. */
+    private byte[] _buffer;
+    /** Number of bytes in _buffer. */
+    private int _size;
+    /** Number of records in _buffer. */
+    private int _records;
+    /** Time of the last write. */
+    private long _lastWrite;
+    /** Number of writes made. */
+    private int _writes;
+}
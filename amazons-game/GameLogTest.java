@@ -0,0 +1,56 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.List;
+
+/** Tests of GameLog.
+ *  @author Mehak Sharma
+ */
+public class GameLogTest {
+
+    /** Tests that records are written in batches and at the end of a
+     *  game. */
+    @Test
+    public void testBatching() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameLog log = new GameLog(out, 3, Long.MAX_VALUE);
+        log.record("seed 1");
+        log.record("d1-d7(g7)");
+        assertEquals(0, out.size());
+        log.record("g10-e10(a6)");
+        assertEquals(1, log.writes());
+        log.record("dump");
+        log.endGame();
+        assertEquals(2, log.writes());
+        log.endGame();
+        assertEquals(2, log.writes());
+        assertEquals("seed 1\nd1-d7(g7)\ng10-e10(a6)\ndump\n",
+                     out.toString());
+    }
+
+    /** Tests replaying a log into Boards. */
+    @Test
+    public void testReplay() throws Exception {
+        String text = "seed 3\nd1-d7(g7)\nG10 E10 A6  # reply\n"
+            + "a1-a2(a3)\nundo\nnew\nauto white\nd1-d3(d1)\n";
+        List<Board> games = GameLog.replayGames(new StringReader(text));
+        assertEquals(2, games.size());
+        Board first = games.get(0);
+        assertEquals(1, first.numMoves());
+        assertEquals(WHITE, first.get(3, 6));
+        assertEquals(SPEAR, first.get(6, 6));
+        assertEquals(BLACK, first.get(6, 9));
+        assertEquals(EMPTY, first.get(0, 5));
+        assertEquals(BLACK, first.turn());
+        Board second = GameLog.replay(new StringReader(text));
+        assertEquals(1, second.numMoves());
+        assertEquals(SPEAR, second.get(3, 0));
+        assertEquals(WHITE, second.get(3, 2));
+    }
+}
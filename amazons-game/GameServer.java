@@ -0,0 +1,440 @@
+package amazons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static amazons.CommandCodec.*;
+import static amazons.Piece.*;
+
+/** A non-blocking network front end for the Amazons text protocol.  A
+ *  single thread multiplexes all connections with a Selector.  Each
+ *  connection plays its own game under its own Controller.  Commands are
+ *  decoded from the input bytes by CommandCodec (without creating a
+ *  String for each line) and handed to a worker pool, which executes the
+ *  commands of any one game in order and makes the automated player's
+ *  replies, so that a long search never stalls other connections.
+ *  @author Mehak Sharma
+ */
+final class GameServer implements Runnable {
+
+    /** Maximum length of a command line, in bytes. */
+    static final int MAX_LINE = 1024;
+
+    /** A server listening on PORT (0 for any free port) that plays the
+     *  automated side of each game with players created from
+     *  AUTOPLAYERTEMPLATE, using WORKERS threads to execute commands. */
+    GameServer(int port, Player autoPlayerTemplate, int workers)
+        throws IOException {
+        _autoPlayerTemplate = autoPlayerTemplate;
+        _selector = Selector.open();
+        _server = ServerSocketChannel.open();
+        _server.bind(new InetSocketAddress("localhost", port));
+        _server.configureBlocking(false);
+        _server.register(_selector, SelectionKey.OP_ACCEPT);
+        _workers = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "amazons-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Return the port on which I am listening. */
+    int port() {
+        return _server.socket().getLocalPort();
+    }
+
+    /** Return the number of connections accepted so far. */
+    int connections() {
+        return _accepted;
+    }
+
+    /** Serve connections until close() is called. */
+    @Override
+    public void run() {
+        try {
+            while (_running) {
+                _selector.select();
+                Connection ready;
+                while ((ready = _writable.poll()) != null) {
+                    ready.wantWrite();
+                }
+                for (SelectionKey key : _selector.selectedKeys()) {
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection conn = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                conn.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                conn.write();
+                            }
+                        }
+                    } catch (IOException excp) {
+                        if (key.attachment() != null) {
+                            ((Connection) key.attachment()).close();
+                        }
+                    }
+                }
+                _selector.selectedKeys().clear();
+            }
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp.getMessage());
+        } finally {
+            shutdown();
+        }
+    }
+
+    /** Stop serving.  May be called from any thread. */
+    void close() {
+        _running = false;
+        _selector.wakeup();
+    }
+
+    /** Release the selector, listening socket, and workers. */
+    private void shutdown() {
+        _workers.shutdownNow();
+        try {
+            for (SelectionKey key : _selector.keys()) {
+                key.channel().close();
+            }
+            _selector.close();
+        } catch (IOException excp) {
+            /* Ignore: we are going away anyway. */
+        }
+    }
+
+    /** Accept a pending connection, if any. */
+    private void accept() throws IOException {
+        SocketChannel channel = _server.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            Connection conn = new Connection(channel);
+            conn._key = channel.register(_selector, SelectionKey.OP_READ,
+                                         conn);
+            _accepted += 1;
+        }
+    }
+
+    /** One client connection and the game it is playing. */
+    private class Connection {
+
+        /** A connection on CHANNEL, playing a new game. */
+        Connection(SocketChannel channel) {
+            _channel = channel;
+            _game = new Game(this);
+        }
+
+        /** Read available input and submit every complete line to my
+         *  game.  A line longer than MAX_LINE is reported once as too
+         *  long, and the rest of it, up to its newline, is dropped. */
+        void read() throws IOException {
+            if (_channel.read(_in) < 0) {
+                close();
+                return;
+            }
+            int lineStart = 0;
+            int end = _in.position();
+            for (int i = 0; i < end; i += 1) {
+                if (_in.get(i) == '\n') {
+                    if (_discarding) {
+                        _discarding = false;
+                    } else {
+                        long cmnd = decode(_in, lineStart, i);
+                        _game.submit(cmnd, kind(cmnd) == BAD
+                                     ? badLine(lineStart, i) : null);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            _in.limit(end).position(lineStart);
+            _in.compact();
+            if (!_in.hasRemaining()) {
+                _in.clear();
+                if (!_discarding) {
+                    _discarding = true;
+                    _game.submit(BAD, "line too long");
+                }
+            }
+        }
+
+        /** Return the text of the unrecognized command in _in[START ..
+         *  END-1], as Controller would report it.  Only used for errors,
+         *  so this is the one place we create a String per line. */
+        private String badLine(int start, int end) {
+            byte[] text = new byte[end - start];
+            _in.get(start, text);
+            String line = new String(text, StandardCharsets.US_ASCII);
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            return line.trim().toLowerCase();
+        }
+
+        /** Queue OUTPUT to be sent, and arrange for the selector to
+         *  notice.  Called from worker threads. */
+        void send(ByteBuffer output) {
+            _output.add(output);
+            _writable.add(this);
+            _selector.wakeup();
+        }
+
+        /** Arrange to close me once all queued output has been sent. */
+        void finish() {
+            _finishing = true;
+            _writable.add(this);
+            _selector.wakeup();
+        }
+
+        /** Register interest in writing.  Called by the selector
+         *  thread. */
+        void wantWrite() {
+            if (_key.isValid()) {
+                _key.interestOps(_key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        /** Write as much queued output as possible. */
+        void write() throws IOException {
+            ByteBuffer next;
+            while ((next = _output.peek()) != null) {
+                _channel.write(next);
+                if (next.hasRemaining()) {
+                    return;
+                }
+                _output.poll();
+            }
+            if (_finishing) {
+                close();
+            } else {
+                _key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /** Close my channel and stop my game. */
+        void close() {
+            _game.stop();
+            _key.cancel();
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                /* Ignore. */
+            }
+        }
+
+        /** My channel. */
+        private final SocketChannel _channel;
+        /** My selection key. */
+        private SelectionKey _key;
+        /** Input not yet consumed. */
+        private final ByteBuffer _in = ByteBuffer.allocate(MAX_LINE);
+        /** True iff the rest of an overlong line, up to its newline, is
+         *  being dropped. */
+        private boolean _discarding;
+        /** Output waiting to be sent. */
+        private final Queue<ByteBuffer> _output =
+            new ConcurrentLinkedQueue<>();
+        /** True once the client has quit. */
+        private volatile boolean _finishing;
+        /** The game I am playing. */
+        private final Game _game;
+    }
+
+    /** The state of one game.  Commands are queued by the selector thread
+     *  and executed in order by at most one worker at a time. */
+    private class Game {
+
+        /** A new game whose output goes to CONN. */
+        Game(Connection conn) {
+            _conn = conn;
+            _bytes = new ByteArrayOutputStream();
+            _out = new PrintStream(_bytes, false);
+            _controller = new Controller(new NullView(), null,
+                                         new TextReporter(_out, _out),
+                                         new TextPlayer(),
+                                         _autoPlayerTemplate, _out);
+            _controller.start();
+        }
+
+        /** Queue the packed command CMND.  For a BAD command, BADLINE
+         *  is its text. */
+        void submit(long cmnd, String badLine) {
+            synchronized (this) {
+                if (_stopped) {
+                    return;
+                }
+                if (badLine != null) {
+                    _badLines.add(badLine);
+                }
+                if (_size == _commands.length) {
+                    long[] bigger = new long[2 * _size];
+                    for (int i = 0; i < _size; i += 1) {
+                        bigger[i] = _commands[(_head + i) % _size];
+                    }
+                    _commands = bigger;
+                    _head = 0;
+                }
+                _commands[(_head + _size) % _commands.length] = cmnd;
+                _size += 1;
+                if (_busy) {
+                    return;
+                }
+                _busy = true;
+            }
+            _workers.execute(this::drain);
+        }
+
+        /** Stop processing commands for this game. */
+        synchronized void stop() {
+            _stopped = true;
+        }
+
+        /** Execute queued commands until there are none left. */
+        private void drain() {
+            while (true) {
+                long cmnd;
+                synchronized (this) {
+                    if (_size == 0 || _stopped) {
+                        _busy = false;
+                        return;
+                    }
+                    cmnd = _commands[_head];
+                    _head = (_head + 1) % _commands.length;
+                    _size -= 1;
+                }
+                try {
+                    execute(cmnd);
+                    playAutomatedMoves();
+                } catch (IllegalArgumentException excp) {
+                    _controller.reportError("Error: %s%n", excp.getMessage());
+                }
+                flush();
+                if (!_controller.playing()) {
+                    stop();
+                    _conn.finish();
+                }
+            }
+        }
+
+        /** Execute the packed command CMND. */
+        private void execute(long cmnd) {
+            if (kind(cmnd) != BLANK) {
+                Metrics.COMMANDS.increment();
+            }
+            switch (kind(cmnd)) {
+            case BLANK:
+                break;
+            case QUIT:
+                _controller.quit();
+                break;
+            case SEED:
+                _controller.setSeed(seed(cmnd));
+                break;
+            case DUMP:
+                _controller.dump();
+                break;
+            case UNDO:
+                _controller.undo();
+                break;
+            case NEW:
+                _controller.newGame();
+                break;
+            case MANUAL:
+                _controller.manual(side(cmnd));
+                break;
+            case AUTO:
+                _controller.auto(side(cmnd));
+                break;
+            case MOVE:
+                _controller.move(square(cmnd, 0), square(cmnd, 1),
+                                 square(cmnd, 2));
+                break;
+            case BAD_NUMBER:
+                throw Utils.error("number too large");
+            case BAD_PLAYER:
+                throw Utils.error("Not a valid player.");
+            default:
+                String line;
+                synchronized (this) {
+                    line = _badLines.poll();
+                }
+                throw Utils.error("Bad command: %s", line);
+            }
+        }
+
+        /** Let automated players move for as long as it is their turn. */
+        private void playAutomatedMoves() {
+            Board board = _controller.board();
+            while (!_stopped && _controller.playing()
+                   && _controller.winner() == EMPTY
+                   && _controller.isAuto(board.turn())) {
+                _controller.executeCommand(
+                    _controller.player(board.turn()).myMove());
+                flush();
+            }
+        }
+
+        /** Send any output produced so far to my connection. */
+        private void flush() {
+            _out.flush();
+            if (_bytes.size() > 0) {
+                _conn.send(ByteBuffer.wrap(_bytes.toByteArray()));
+                _bytes.reset();
+            }
+        }
+
+        /** The connection I report to. */
+        private final Connection _conn;
+        /** Buffer accumulating my output. */
+        private final ByteArrayOutputStream _bytes;
+        /** Stream writing to _bytes. */
+        private final PrintStream _out;
+        /** Controller for my game. */
+        private final Controller _controller;
+        /** Circular queue of pending packed commands. */
+        private long[] _commands = new long[16];
+        /** Position of the first pending command in _commands. */
+        private int _head;
+        /** Number of pending commands. */
+        private int _size;
+        /** Text of pending BAD commands, in order. */
+        private final Queue<String> _badLines = new ArrayDeque<>();
+        /** True while a worker is executing my commands. */
+        private boolean _busy;
+        /** True once the game has ended or its connection has closed. */
+        private volatile boolean _stopped;
+    }
+
+    /** Template for automated players. */
+    private final Player _autoPlayerTemplate;
+    /** Multiplexes all channels. */
+    private final Selector _selector;
+    /** Listening socket. */
+    private final ServerSocketChannel _server;
+    /** Threads executing game commands. */
+    private final ExecutorService _workers;
+    /** Connections with newly queued output. */
+    private final Queue<Connection> _writable = new ConcurrentLinkedQueue<>();
+    /** Number of connections accepted. */
+    private volatile int _accepted;
+    /** False once close() has been called. */
+    private volatile boolean _running = true;
+}
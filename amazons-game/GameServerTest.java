@@ -0,0 +1,121 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.CommandCodec.*;
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Tests of CommandCodec and GameServer.
+ *  @author Mehak Sharma
+ */
+public class GameServerTest {
+
+    /** Return the packed form of LINE. */
+    private static long decode(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        return CommandCodec.decode(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /** Tests decoding of commands without operands. */
+    @Test
+    public void testSimpleCommands() {
+        assertEquals(QUIT, kind(decode("quit")));
+        assertEquals(QUIT, kind(decode("  QUIT  # bye")));
+        assertEquals(DUMP, kind(decode("dump")));
+        assertEquals(UNDO, kind(decode("undo")));
+        assertEquals(NEW, kind(decode("new")));
+        assertEquals(BLANK, kind(decode("   # nothing")));
+        assertEquals(BAD, kind(decode("quitter")));
+        assertEquals(BAD, kind(decode("dum")));
+    }
+
+    /** Tests decoding of commands with operands. */
+    @Test
+    public void testOperands() {
+        long cmnd = decode("seed 12345");
+        assertEquals(SEED, kind(cmnd));
+        assertEquals(12345L, seed(cmnd));
+        assertEquals(BAD_NUMBER, kind(decode("seed 99999999999999999999")));
+        assertEquals(BAD, kind(decode("seed x")));
+        cmnd = decode("Manual Black");
+        assertEquals(MANUAL, kind(cmnd));
+        assertEquals(BLACK, side(cmnd));
+        cmnd = decode("auto white");
+        assertEquals(AUTO, kind(cmnd));
+        assertEquals(WHITE, side(cmnd));
+        assertEquals(BAD_PLAYER, kind(decode("auto red")));
+    }
+
+    /** Tests decoding of both forms of move. */
+    @Test
+    public void testMoves() {
+        long cmnd = decode("d1-d7(g7)");
+        assertEquals(MOVE, kind(cmnd));
+        assertSame(Square.sq("d1"), square(cmnd, 0));
+        assertSame(Square.sq("d7"), square(cmnd, 1));
+        assertSame(Square.sq("g7"), square(cmnd, 2));
+        cmnd = decode("a10 J10 a1");
+        assertEquals(MOVE, kind(cmnd));
+        assertSame(Square.sq("a10"), square(cmnd, 0));
+        assertSame(Square.sq("j10"), square(cmnd, 1));
+        assertSame(Square.sq("a1"), square(cmnd, 2));
+        assertEquals(BAD, kind(decode("d1-d7(g7")));
+        assertEquals(BAD, kind(decode("k1-d7(g7)")));
+        assertEquals(BAD, kind(decode("a11 a2 a3")));
+    }
+
+    /** Tests many simultaneous games against the server, using the load
+     *  generator. */
+    @Test
+    public void testLoad() throws Exception {
+        GameServer server = new GameServer(0, new AI(), 4);
+        Thread serving = new Thread(server);
+        serving.start();
+        try {
+            LoadGenerator gen =
+                new LoadGenerator("localhost", server.port(), 50, 20, false);
+            assertEquals(0, gen.run());
+            assertEquals(50, server.connections());
+            gen = new LoadGenerator("localhost", server.port(), 4, 1, true);
+            assertEquals(0, gen.run());
+        } finally {
+            server.close();
+            serving.join();
+        }
+    }
+
+    /** Tests that the rest of a line too long to accept, up to its
+     *  newline, is dropped rather than run as a command. */
+    @Test
+    public void testLongLine() throws Exception {
+        GameServer server = new GameServer(0, new AI(), 2);
+        Thread serving = new Thread(server);
+        serving.start();
+        try (Socket socket = new Socket("localhost", server.port())) {
+            OutputStream out = socket.getOutputStream();
+            String padding = "x".repeat(2 * GameServer.MAX_LINE);
+            out.write((padding + " quit\ndump\nquit\n")
+                      .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String reply = readAll(socket.getInputStream());
+            assertEquals(1, reply.split("line too long", -1).length - 1);
+            assertTrue("quit ran: " + reply, reply.contains("==="));
+        } finally {
+            server.close();
+            serving.join();
+        }
+    }
+
+    /** Return all the text read from IN until it ends. */
+    private static String readAll(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+    }
+}
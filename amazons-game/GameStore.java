@@ -0,0 +1,466 @@
+package amazons;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static amazons.Piece.*;
+import static amazons.Square.sq;
+import static amazons.Utils.error;
+
+/** A local database of finished and unfinished games, indexed by
+ *  position.  The store is a directory holding two append-only files:
+ *  GAMES_FILE, holding for each game its winner and its moves (three bytes
+ *  per move: the indices of the from, to, and spear squares), and
+ *  INDEX_FILE, holding for each position reached in each game the
+ *  position's hash (see Board.hash) with the game number and move number.
+ *  Both are loaded into memory on opening, the index into a hash table
+ *  chained through primitive arrays, so that finding all games that reach
+ *  a position touches only the entries for that position.  Squares are
+ *  those of the standard board, so only its games may be stored, and
+ *  positions on boards of other sizes are found in no game.
+ *
+ *  A crash may leave a partial record at the end of either file, or
+ *  leave the index ahead of the games, since the two are flushed
+ *  separately.  Opening a store cuts off any partial record, and any
+ *  index entries for games that are not in GAMES_FILE.
+ *
+ *  Distinct positions with the same 64-bit hash are not distinguished;
+ *  this is vanishingly rare and harmless for statistics.
+ *  @author Mehak Sharma
+ */
+final class GameStore {
+
+    /** Name of the file of games within a store. */
+    static final String GAMES_FILE = "games.dat";
+
+    /** Name of the position index within a store. */
+    static final String INDEX_FILE = "positions.idx";
+
+    /** Statistics about one move from a position. */
+    static final class MoveStats {
+
+        /** Statistics for MOVE. */
+        MoveStats(Move move) {
+            _move = move;
+        }
+
+        /** Return the move. */
+        Move move() {
+            return _move;
+        }
+
+        /** Return the number of stored games in which it was played. */
+        int games() {
+            return _games;
+        }
+
+        /** Return the number of those games won by the side that made
+         *  the move. */
+        int wins() {
+            return _wins;
+        }
+
+        /** Return the number of those games that were finished. */
+        int decided() {
+            return _decided;
+        }
+
+        /** Return the fraction of finished games won by the side that
+         *  made the move, or 0.5 if none were finished. */
+        double winRate() {
+            return _decided == 0 ? HALF : (double) _wins / _decided;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d games %.3f", _move, _games,
+                                 winRate());
+        }
+
+        /** The move. */
+        private final Move _move;
+        /** Counts of games, wins, and finished games. */
+        private int _games, _wins, _decided;
+    }
+
+    /** Open (creating if needed) the store in directory DIR. */
+    GameStore(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("could not create " + dir);
+        }
+        _table = new int[INITIAL_TABLE];
+        Arrays.fill(_table, -1);
+        File games = new File(dir, GAMES_FILE);
+        File index = new File(dir, INDEX_FILE);
+        if (games.exists()) {
+            loadGames(games);
+        }
+        if (index.exists()) {
+            loadIndex(index);
+        }
+        _gamesOut = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(games, true)));
+        _indexOut = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(index, true)));
+    }
+
+    /** Return the number of stored games. */
+    synchronized int size() {
+        return _numGames;
+    }
+
+    /** Return the number of indexed positions (counting repeats). */
+    synchronized int positions() {
+        return _numEntries;
+    }
+
+    /** Add the game whose moves are those of BOARD (see Board.move) and
+     *  whose winner is that of BOARD, if any.  BOARD must be of the
+     *  standard size. */
+    synchronized void add(Board board) throws IOException {
+        if (board.size() != Board.SIZE) {
+            throw error("only games on a %dx%d board may be stored",
+                        Board.SIZE, Board.SIZE);
+        }
+        int n = board.numMoves();
+        Piece winner = board.winner();
+        int game = _numGames;
+        _gamesOut.writeByte(winner.ordinal());
+        _gamesOut.writeShort(n);
+        Board replay = new Board();
+        addGame(winner, n);
+        for (int k = 0; k < n; k += 1) {
+            Move move = board.move(k);
+            addMove(game, k, move);
+            _gamesOut.writeByte(move.from().index());
+            _gamesOut.writeByte(move.to().index());
+            _gamesOut.writeByte(move.spear().index());
+            addEntry(replay.hash(), game, k);
+            writeEntry(replay.hash(), game, k);
+            replay.makeMove(move);
+        }
+        addEntry(replay.hash(), game, n);
+        writeEntry(replay.hash(), game, n);
+    }
+
+    /** Add every game in the log read from LOG (see GameLog) and return
+     *  the number added. */
+    int ingest(Reader log) throws IOException {
+        List<Board> games = GameLog.replayGames(log);
+        int added = 0;
+        for (Board game : games) {
+            if (game.numMoves() > 0) {
+                add(game);
+                added += 1;
+            }
+        }
+        flush();
+        return added;
+    }
+
+    /** Write all added games to disk. */
+    synchronized void flush() throws IOException {
+        _gamesOut.flush();
+        _indexOut.flush();
+    }
+
+    /** Write all added games to disk and close the store. */
+    synchronized void close() throws IOException {
+        _gamesOut.close();
+        _indexOut.close();
+    }
+
+    /** Return the numbers of all stored games that reach POSITION. */
+    synchronized List<Integer> gamesReaching(Board position) {
+        List<Integer> result = new ArrayList<>();
+        if (position.size() != Board.SIZE) {
+            return result;
+        }
+        long hash = position.hash();
+        for (int e = _table[slot(hash)]; e >= 0; e = _next[e]) {
+            if (_hashes[e] == hash) {
+                result.add(_entryGame[e]);
+            }
+        }
+        return result;
+    }
+
+    /** Return statistics for each move that was played from POSITION in
+     *  a stored game, most frequent first. */
+    synchronized List<MoveStats> stats(Board position) {
+        Map<Move, MoveStats> moves = new LinkedHashMap<>();
+        if (position.size() != Board.SIZE) {
+            return new ArrayList<>();
+        }
+        long hash = position.hash();
+        Piece mover = position.turn();
+        for (int e = _table[slot(hash)]; e >= 0; e = _next[e]) {
+            if (_hashes[e] != hash) {
+                continue;
+            }
+            int game = _entryGame[e], k = _entryPly[e];
+            if (k >= _gameLength[game]) {
+                continue;
+            }
+            Move move = move(game, k);
+            MoveStats stats =
+                moves.computeIfAbsent(move, m -> new MoveStats(m));
+            Piece winner = Piece.values()[_gameWinner[game]];
+            stats._games += 1;
+            if (winner != EMPTY) {
+                stats._decided += 1;
+                if (winner == mover) {
+                    stats._wins += 1;
+                }
+            }
+        }
+        List<MoveStats> result = new ArrayList<>(moves.values());
+        result.sort((a, b) -> b._games - a._games);
+        return result;
+    }
+
+    /** Return the move from POSITION with the highest win rate among
+     *  those played in at least MINGAMES stored finished games, or null
+     *  if there is none or if its side lost at least half of them.  Ties
+     *  go to the more frequently played move. */
+    Move bestMove(Board position, int minGames) {
+        MoveStats best = null;
+        for (MoveStats stats : stats(position)) {
+            if (stats.decided() >= minGames && stats.winRate() > HALF
+                && (best == null || stats.winRate() > best.winRate())) {
+                best = stats;
+            }
+        }
+        return best == null ? null : best.move();
+    }
+
+    /** Return move K of game GAME. */
+    private Move move(int game, int k) {
+        int p = 3 * (_gameStart[game] + k);
+        return Move.mv(sq(_moves[p] & BYTE), sq(_moves[p + 1] & BYTE),
+                       sq(_moves[p + 2] & BYTE));
+    }
+
+    /** Read all games from FILE into memory, cutting off a partial
+     *  game at its end. */
+    private void loadGames(File file) throws IOException {
+        long complete = 0;
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int winner, n;
+                byte[] moves;
+                try {
+                    winner = in.readUnsignedByte();
+                    n = in.readUnsignedShort();
+                    moves = new byte[3 * n];
+                    in.readFully(moves);
+                } catch (EOFException excp) {
+                    break;
+                }
+                int game = _numGames;
+                addGame(Piece.values()[winner], n);
+                for (int k = 0; k < n; k += 1) {
+                    addMove(game, k,
+                            Move.mv(sq(moves[3 * k] & BYTE),
+                                    sq(moves[3 * k + 1] & BYTE),
+                                    sq(moves[3 * k + 2] & BYTE)));
+                }
+                complete += GAME_HEADER_BYTES + moves.length;
+            }
+        }
+        truncate(file, complete);
+    }
+
+    /** Read the position index from FILE into memory, cutting it off at
+     *  a partial entry or at the first entry for a game not loaded by
+     *  loadGames.  Games are indexed in order, so all entries after that
+     *  are for such games too. */
+    private void loadIndex(File file) throws IOException {
+        long complete = 0;
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                long hash;
+                int game, k;
+                try {
+                    hash = in.readLong();
+                    game = in.readInt();
+                    k = in.readUnsignedShort();
+                } catch (EOFException excp) {
+                    break;
+                }
+                if (game < 0 || game >= _numGames) {
+                    break;
+                }
+                addEntry(hash, game, k);
+                complete += ENTRY_BYTES;
+            }
+        }
+        truncate(file, complete);
+    }
+
+    /** Cut FILE off after its first LENGTH bytes, if it is longer. */
+    private static void truncate(File file, long length)
+        throws IOException {
+        if (file.length() > length) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(length);
+            }
+        }
+    }
+
+    /** Write the index entry (HASH, GAME, K). */
+    private void writeEntry(long hash, int game, int k) throws IOException {
+        _indexOut.writeLong(hash);
+        _indexOut.writeInt(game);
+        _indexOut.writeShort(k);
+    }
+
+    /** Record a new game with winner WINNER and N moves in memory. */
+    private void addGame(Piece winner, int n) {
+        if (_numGames == _gameStart.length) {
+            int size = 2 * _numGames;
+            _gameStart = Arrays.copyOf(_gameStart, size);
+            _gameLength = Arrays.copyOf(_gameLength, size);
+            _gameWinner = Arrays.copyOf(_gameWinner, size);
+        }
+        _gameStart[_numGames] = _numMoves;
+        _gameLength[_numGames] = n;
+        _gameWinner[_numGames] = (byte) winner.ordinal();
+        _numGames += 1;
+        _numMoves += n;
+        if (3 * _numMoves > _moves.length) {
+            _moves = Arrays.copyOf(_moves, Math.max(2 * _moves.length,
+                                                    3 * _numMoves));
+        }
+    }
+
+    /** Record MOVE as move K of GAME in memory. */
+    private void addMove(int game, int k, Move move) {
+        int p = 3 * (_gameStart[game] + k);
+        _moves[p] = (byte) move.from().index();
+        _moves[p + 1] = (byte) move.to().index();
+        _moves[p + 2] = (byte) move.spear().index();
+    }
+
+    /** Add the index entry saying that GAME reaches the position with
+     *  hash HASH before move K. */
+    private void addEntry(long hash, int game, int k) {
+        if (_numEntries == _hashes.length) {
+            int size = 2 * _numEntries;
+            _hashes = Arrays.copyOf(_hashes, size);
+            _entryGame = Arrays.copyOf(_entryGame, size);
+            _entryPly = Arrays.copyOf(_entryPly, size);
+            _next = Arrays.copyOf(_next, size);
+        }
+        if (2 * _numEntries > _table.length) {
+            rehash();
+        }
+        int e = _numEntries;
+        _hashes[e] = hash;
+        _entryGame[e] = game;
+        _entryPly[e] = (short) k;
+        _next[e] = _table[slot(hash)];
+        _table[slot(hash)] = e;
+        _numEntries += 1;
+    }
+
+    /** Double the size of _table and rechain all entries. */
+    private void rehash() {
+        _table = new int[2 * _table.length];
+        Arrays.fill(_table, -1);
+        for (int e = 0; e < _numEntries; e += 1) {
+            _next[e] = _table[slot(_hashes[e])];
+            _table[slot(_hashes[e])] = e;
+        }
+    }
+
+    /** Return the slot in _table for HASH. */
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (_table.length - 1);
+    }
+
+    /** Ingest the logs named by ARGS[1..] into the store in directory
+     *  ARGS[0]. */
+    public static void main(String... args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java amazons.GameStore DIR [LOG...]");
+            System.exit(1);
+        }
+        GameStore store = new GameStore(new File(args[0]));
+        for (int i = 1; i < args.length; i += 1) {
+            try (Reader log = new FileReader(args[i])) {
+                System.out.printf("%s: %d games%n", args[i],
+                                  store.ingest(log));
+            }
+        }
+        System.out.printf("%d games, %d positions%n", store.size(),
+                          store.positions());
+        store.close();
+    }
+
+    /** Win rate reported when nothing is known. */
+    private static final double HALF = 0.5;
+
+    /** Mask for converting a byte to an unsigned value. */
+    private static final int BYTE = 0xff;
+
+    /** Bytes in a game's record before its moves: its winner and its
+     *  number of moves. */
+    private static final int GAME_HEADER_BYTES = 3;
+
+    /** Bytes in an index entry: a hash, a game number, and a move
+     *  number. */
+    private static final int ENTRY_BYTES = 14;
+
+    /** Initial size of _table (a power of 2). */
+    private static final int INITIAL_TABLE = 1024;
+
+    /** Initial capacity of the per-game and per-entry arrays. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Number of stored games. */
+    private int _numGames;
+    /** Total number of moves in stored games. */
+    private int _numMoves;
+    /** Moves of all games, three bytes per move. */
+    private byte[] _moves = new byte[3 * INITIAL_CAPACITY];
+    /** For each game, the number of moves before it in _moves. */
+    private int[] _gameStart = new int[INITIAL_CAPACITY];
+    /** For each game, its number of moves. */
+    private int[] _gameLength = new int[INITIAL_CAPACITY];
+    /** For each game, the ordinal of its winner. */
+    private byte[] _gameWinner = new byte[INITIAL_CAPACITY];
+
+    /** Number of index entries. */
+    private int _numEntries;
+    /** For each entry, its position's hash. */
+    private long[] _hashes = new long[INITIAL_CAPACITY];
+    /** For each entry, its game. */
+    private int[] _entryGame = new int[INITIAL_CAPACITY];
+    /** For each entry, the number of moves made before its position. */
+    private short[] _entryPly = new short[INITIAL_CAPACITY];
+    /** For each entry, the next entry in the same slot, or -1. */
+    private int[] _next = new int[INITIAL_CAPACITY];
+    /** For each slot, its first entry, or -1. */
+    private int[] _table;
+
+    /** Output streams for the games file and index file. */
+    private final DataOutputStream _gamesOut, _indexOut;
+}
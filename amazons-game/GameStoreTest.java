@@ -0,0 +1,174 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.List;
+
+/** Tests of GameStore and Board hashing.
+ *  @author Mehak Sharma
+ */
+public class GameStoreTest {
+
+    /** Tests that Board.hash depends only on the position. */
+    @Test
+    public void testHash() {
+        Board a = new Board(), b = new Board();
+        assertEquals(a.hash(), b.hash());
+        a.makeMove(Move.mv("d1-d7(g7)"));
+        assertNotEquals(a.hash(), b.hash());
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        assertEquals(a.hash(), b.hash());
+        assertEquals(a.hash(), new Board(a).hash());
+        a.undo();
+        assertEquals(new Board().hash(), a.hash());
+    }
+
+    /** A log of three unfinished games, two of which start with
+     *  d1-d7(g7). */
+    private static final String LOG =
+        "d1-d7(g7)\ng10-e10(a6)\nnew\nd1-d7(g7)\nnew\nd1-d3(d1)\n";
+
+    /** Return a new, empty store in a temporary directory. */
+    private static File tempStore() throws IOException {
+        return Files.createTempDirectory("amazons-store").toFile();
+    }
+
+    /** Tests that games on boards of other sizes are refused, without
+     *  writing anything, and that their positions are in no game. */
+    @Test
+    public void testOtherSizes() throws IOException {
+        File dir = tempStore();
+        GameStore store = new GameStore(dir);
+        Board small = new Board(6);
+        small.makeMove(Move.mv("a2-c4(a2)", 6));
+        try {
+            store.add(small);
+            fail("game on a 6x6 board stored");
+        } catch (IllegalArgumentException excp) {
+            assertEquals(0, store.size());
+        }
+        store.ingest(new StringReader(LOG));
+        assertTrue(store.gamesReaching(new Board(6)).isEmpty());
+        assertTrue(store.stats(new Board(6)).isEmpty());
+        store.close();
+        store = new GameStore(dir);
+        assertEquals(3, store.size());
+        store.close();
+    }
+
+    /** Tests ingesting and querying, including after reopening. */
+    @Test
+    public void testQueries() throws IOException {
+        File dir = tempStore();
+        GameStore store = new GameStore(dir);
+        assertEquals(3, store.ingest(new StringReader(LOG)));
+        Board start = new Board();
+        assertEquals(3, store.gamesReaching(start).size());
+        Board after = new Board();
+        after.makeMove(Move.mv("d1-d7(g7)"));
+        assertEquals(2, store.gamesReaching(after).size());
+        store.close();
+
+        store = new GameStore(dir);
+        assertEquals(3, store.size());
+        List<GameStore.MoveStats> stats = store.stats(start);
+        assertEquals(2, stats.size());
+        assertEquals(Move.mv("d1-d7(g7)"), stats.get(0).move());
+        assertEquals(2, stats.get(0).games());
+        assertEquals(1, store.stats(after).size());
+        assertNull(store.bestMove(start, 1));
+        store.close();
+    }
+
+    /** Tests reopening a store after a crash that left a partial game
+     *  at the end of the games and, past it, index entries for games
+     *  that were never written, the last of them partial. */
+    @Test
+    public void testTornTail() throws IOException {
+        File dir = tempStore();
+        GameStore store = new GameStore(dir);
+        store.ingest(new StringReader(LOG));
+        store.close();
+        File games = new File(dir, GameStore.GAMES_FILE),
+            index = new File(dir, GameStore.INDEX_FILE);
+        long gamesLength = games.length(), indexLength = index.length();
+        Board start = new Board();
+        try (DataOutputStream out = new DataOutputStream(
+                 new FileOutputStream(games, true))) {
+            out.writeByte(EMPTY.ordinal());
+            out.writeShort(5);
+            out.writeByte(3);
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 new FileOutputStream(index, true))) {
+            out.writeLong(start.hash());
+            out.writeInt(3);
+            out.writeShort(0);
+            out.writeLong(start.hash());
+        }
+
+        store = new GameStore(dir);
+        assertEquals(3, store.size());
+        assertEquals(gamesLength, games.length());
+        assertEquals(indexLength, index.length());
+        assertEquals(3, store.gamesReaching(start).size());
+        assertEquals(2, store.stats(start).size());
+        store.ingest(new StringReader("d1-d3(d1)\n"));
+        store.close();
+        store = new GameStore(dir);
+        assertEquals(4, store.size());
+        assertEquals(4, store.gamesReaching(start).size());
+        store.close();
+    }
+
+    /** Return a game played at random from the initial position until
+     *  one side wins, using SEED. */
+    static Board randomGame(long seed) {
+        java.util.Random random = new java.util.Random(seed);
+        Board board = new Board();
+        while (board.winner() == EMPTY) {
+            List<Move> moves = new java.util.ArrayList<>();
+            for (Move move : Utils.iterable(board.legalMoves())) {
+                moves.add(move);
+            }
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return board;
+    }
+
+    /** Tests that the AI plays moves that won in stored games. */
+    @Test
+    public void testBook() throws IOException {
+        GameStore store = new GameStore(tempStore());
+        Board game = randomGame(1);
+        Board start = new Board();
+        Piece loser = game.winner().opponent();
+        for (int i = 0; i < AI.MIN_BOOK_GAMES; i += 1) {
+            store.add(game);
+        }
+        Move first = game.move(0), second = game.move(1);
+        assertEquals(loser == WHITE ? null : first,
+                     store.bestMove(start, AI.MIN_BOOK_GAMES));
+        start.makeMove(first);
+        assertEquals(loser == BLACK ? null : second,
+                     store.bestMove(start, AI.MIN_BOOK_GAMES));
+        Controller c = AITest.controller(UnitTest.INITTESTBOARD);
+        AI ai = new AI();
+        ai.setBook(store);
+        Player black = ai.create(BLACK, c);
+        c.move(first.from(), first.to(), first.spear());
+        if (loser == WHITE) {
+            assertEquals(second.toString(), black.myMove());
+        }
+        store.close();
+    }
+}
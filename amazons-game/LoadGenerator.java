@@ -0,0 +1,169 @@
+package amazons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static amazons.Utils.iterable;
+
+/** A local load generator for GameServer.  Opens a number of
+ *  simultaneous client connections, each of which plays a random game
+ *  (both sides manual) for a fixed number of moves, then dumps the board
+ *  and quits, checking that the server's dump agrees with its own copy of
+ *  the game.  Optionally, each client instead plays one move against the
+ *  automated Black player.
+ *  @author Mehak Sharma
+ */
+final class LoadGenerator {
+
+    /** A generator that runs CLIENTS clients against the server at HOST
+     *  and PORT, each making MOVES moves.  If AUTO, each client instead
+     *  makes one move and lets the server's AI reply. */
+    LoadGenerator(String host, int port, int clients, int moves,
+                  boolean auto) {
+        _host = host;
+        _port = port;
+        _clients = clients;
+        _moves = moves;
+        _auto = auto;
+    }
+
+    /** Run all clients to completion, and return the number whose
+     *  transcripts were wrong (or that failed to connect). */
+    int run() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < _clients; i += 1) {
+            final int seed = i;
+            Thread t = new Thread(() -> client(seed), "amazons-client");
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        _elapsed = System.nanoTime() - start;
+        return _failures.get();
+    }
+
+    /** Return the total number of commands sent by the last run. */
+    long commands() {
+        return _commands.get();
+    }
+
+    /** Return the duration of the last run in nanoseconds. */
+    long elapsed() {
+        return _elapsed;
+    }
+
+    /** Play one client's game, choosing moves at random from SEED. */
+    private void client(int seed) {
+        Random random = new Random(seed);
+        Board board = new Board();
+        StringBuilder script = new StringBuilder();
+        script.append("seed ").append(seed).append('\n');
+        if (_auto) {
+            script.append(pick(board, random)).append('\n');
+        } else {
+            script.append("manual black\n");
+            for (int i = 0; i < _moves && board.winner() == Piece.EMPTY;
+                 i += 1) {
+                Move move = pick(board, random);
+                board.makeMove(move);
+                script.append(i % 2 == 0 ? move.toString()
+                              : String.format("%s %s %s", move.from(),
+                                              move.to(), move.spear()))
+                    .append('\n');
+            }
+        }
+        script.append("dump\nquit\n");
+        String expected = String.format("===%n%s===%n", board);
+
+        try (Socket socket = new Socket(_host, _port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(script.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String reply = readAll(socket.getInputStream());
+            _commands.addAndGet(script.chars().filter(c -> c == '\n')
+                                .count());
+            boolean ok = _auto ? reply.startsWith("* ")
+                && reply.contains("===") : reply.equals(expected);
+            if (!ok) {
+                _failures.incrementAndGet();
+            }
+        } catch (IOException excp) {
+            _failures.incrementAndGet();
+        }
+    }
+
+    /** Return a random legal move on BOARD chosen using RANDOM. */
+    private static Move pick(Board board, Random random) {
+        List<Move> moves = new ArrayList<>();
+        for (Move move : iterable(board.legalMoves())) {
+            moves.add(move);
+        }
+        return moves.get(random.nextInt(moves.size()));
+    }
+
+    /** Return everything read from IN until end of file. */
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buf = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            result.write(buf, 0, n);
+        }
+        return result.toString(StandardCharsets.US_ASCII);
+    }
+
+    /** Run a load test against a local server.  ARGS are the port, and
+     *  optionally the number of clients, number of moves per client, and
+     *  "auto" to play against the automated player. */
+    public static void main(String... args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java amazons.LoadGenerator PORT"
+                               + " [CLIENTS [MOVES [auto]]]");
+            System.exit(1);
+        }
+        int port = Integer.parseInt(args[0]);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int moves = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        boolean auto = args.length > 3 && args[3].equals("auto");
+        LoadGenerator gen =
+            new LoadGenerator("localhost", port, clients, moves, auto);
+        int failures = gen.run();
+        System.out.printf("%d clients, %d commands, %d failures,"
+                          + " %.1f ms, %.0f commands/s%n",
+                          clients, gen.commands(), failures,
+                          gen.elapsed() / 1e6,
+                          gen.commands() / (gen.elapsed() / 1e9));
+    }
+
+    /** Size of read buffer. */
+    private static final int BUFFER_SIZE = 4096;
+
+    /** Server address. */
+    private final String _host;
+    /** Server port. */
+    private final int _port;
+    /** Number of simultaneous clients. */
+    private final int _clients;
+    /** Number of moves per client. */
+    private final int _moves;
+    /** True iff clients play against the automated player. */
+    private final boolean _auto;
+    /** Number of failed clients. */
+    private final AtomicInteger _failures = new AtomicInteger();
+    /** Number of commands sent. */
+    private final AtomicLong _commands = new AtomicLong();
+    /** Duration of the last run. */
+    private long _elapsed;
+}
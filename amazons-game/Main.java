@@ -1,6 +1,7 @@
 package amazons;
 
 import java.util.List;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -19,13 +20,42 @@ public class Main {
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --log={0,1} --={0,2}", args);
+            new CommandArgs("--display --ponder --regions --log={0,1}"
+                            + " --book={0,1}"
+                            + " --weights={0,1} --server={0,1}"
+                            + " --spectators={0,1} --threads={0,1}"
+                            + " --shared-table={0,1} --={0,2}",
+                            args);
         if (!options.ok()) {
             System.err.println("Usage: java amazons.Main [--display]"
-                               + " [--log=FILE] [INPUT [OUTPUT]]");
+                               + " [--ponder] [--regions] [--log=FILE]"
+                               + " [--book=DIR]"
+                               + " [--weights=FILE] [--server=PORT]"
+                               + " [--spectators=PORT] [--threads=N]"
+                               + " [--shared-table=MB]"
+                               + " [INPUT [OUTPUT]]");
             System.exit(1);
         }
 
+        Thread metrics = new Thread(Metrics::register, "amazons-metrics");
+        metrics.setDaemon(true);
+        metrics.start();
+
+        if (options.contains("--shared-table")) {
+            try {
+                AI.setSharedTable(Long.parseLong(
+                    options.getFirst("--shared-table")) << MB_SHIFT);
+            } catch (IllegalArgumentException excp) {
+                System.err.println("Invalid table size");
+                System.exit(1);
+            }
+        }
+
+        if (options.contains("--server")) {
+            serve(options.getFirst("--server"));
+            return;
+        }
+
         List<String> files = options.get("--");
         if (!files.isEmpty()) {
             try {
@@ -53,11 +83,33 @@ public class Main {
 
     }
 
+    /** Log base 2 of the number of bytes in a megabyte. */
+    private static final int MB_SHIFT = 20;
+
+    /** Run a GameServer on PORT until the program is killed. */
+    private static void serve(String port) {
+        try {
+            GameServer server =
+                new GameServer(Integer.parseInt(port), new AI(),
+                               Runtime.getRuntime().availableProcessors());
+            System.out.printf("Amazons server listening on port %d%n",
+                              server.port());
+            server.run();
+        } catch (NumberFormatException excp) {
+            System.err.printf("Invalid port: %s%n", port);
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("Could not start server: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
         Player manualPlayer;
         GUI gui;
-        PrintStream log;
+        GameLog log;
         View view;
         Reporter reporter;
 
@@ -73,15 +125,57 @@ public class Main {
             manualPlayer = new TextPlayer();
             view = new NullView();
         }
+        if (options.contains("--spectators")) {
+            ViewBroadcaster broadcaster = new ViewBroadcaster(view, 2);
+            try {
+                int port = broadcaster.listen(
+                    Integer.parseInt(options.getFirst("--spectators")));
+                System.err.printf("Spectators may connect on port %d%n",
+                                  port);
+            } catch (IOException | NumberFormatException excp) {
+                throw error("Could not listen for spectators");
+            }
+            view = broadcaster;
+        }
         log = null;
         if (options.contains("--log")) {
             try {
-                log = new PrintStream(options.getFirst("--log"));
+                log = GameLog.open(options.getFirst("--log"));
             } catch (IOException excp) {
                 throw error("Could not open log file");
             }
         }
 
-        return new Controller(view, log, reporter, manualPlayer, new AI());
+        AI ai = new AI(options.contains("--ponder"));
+        ai.setRegions(options.contains("--regions"));
+        if (options.contains("--book")) {
+            try {
+                File book = new File(options.getFirst("--book"));
+                ai.setBook(new GameStore(book));
+            } catch (IOException excp) {
+                throw error("Could not open game store");
+            }
+        }
+        if (options.contains("--weights")) {
+            try {
+                File weights = new File(options.getFirst("--weights"));
+                ai.setEvaluator(WeightedEvaluator.load(weights));
+            } catch (IOException excp) {
+                throw error("Could not read weights file");
+            }
+        }
+        if (options.contains("--threads")) {
+            try {
+                ai.setThreads(Integer.parseInt(options.getFirst("--threads")));
+            } catch (NumberFormatException excp) {
+                throw error("Invalid number of threads");
+            }
+        }
+        Controller result =
+            new Controller(view, log, reporter, manualPlayer, ai);
+        if (gui != null) {
+            gui.setMoveNowAction(result::moveNow);
+        }
+        return result;
     }
 }
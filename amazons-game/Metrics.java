@@ -0,0 +1,223 @@
+package amazons;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** A registry of named counters and histograms describing the work done
+ *  by the program.  Both are lock-free: a counter is a LongAdder, and a
+ *  histogram keeps a LongAdder per bucket, so that threads recording at
+ *  once do not contend.  Histogram buckets are log-linear, as in
+ *  HdrHistogram: each power of two is split into SUB_BUCKETS equal
+ *  buckets, so that any value is known to within 1/SUB_BUCKETS of
+ *  itself.  The registry may be read as text (see dump), or through JMX
+ *  as the MXBean amazons:type=Metrics (see register).
+ *  @author Mehak Sharma
+ */
+final class Metrics {
+
+    /** Not instantiable. */
+    private Metrics() {
+    }
+
+    /** Return the counter named NAME, creating it if needed. */
+    static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /** Return the histogram named NAME, creating it if needed. */
+    static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    /** Return the current values of all counters, by name. */
+    static Map<String, Long> counters() {
+        Map<String, Long> result = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+
+    /** Return a text description of all metrics: for each counter, its
+     *  name and value, and for each histogram, its name, the number of
+     *  values recorded, and their mean, median, 90th and 99th
+     *  percentiles, and maximum. */
+    static String dump() {
+        StringBuilder result = new StringBuilder();
+        counters().forEach((name, value) ->
+            result.append(String.format("%s %d%n", name, value)));
+        new TreeMap<>(HISTOGRAMS).forEach((name, hist) ->
+            result.append(String.format("%s %s%n", name, hist)));
+        return result.toString();
+    }
+
+    /** Make the metrics available through JMX, if they are not
+     *  already.  Starting the platform MBean server takes a few hundred
+     *  milliseconds, so programs that care how fast they start should
+     *  call this on another thread. */
+    static synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new Bean(), name);
+            }
+        } catch (JMException excp) {
+            System.err.printf("Could not register metrics: %s%n",
+                              excp.getMessage());
+        }
+    }
+
+    /** The JMX view of the registry. */
+    private static class Bean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            return counters();
+        }
+
+        @Override
+        public Map<String, String> getHistograms() {
+            Map<String, String> result = new TreeMap<>();
+            HISTOGRAMS.forEach((name, hist) ->
+                result.put(name, hist.toString()));
+            return result;
+        }
+
+        @Override
+        public String getDump() {
+            return dump();
+        }
+    }
+
+    /** A distribution of non-negative long values. */
+    static final class Histogram {
+
+        /** An empty histogram. */
+        Histogram() {
+            for (int b = 0; b < BUCKETS; b += 1) {
+                _buckets[b] = new LongAdder();
+            }
+        }
+
+        /** Record VALUE, taken as 0 if negative. */
+        void record(long value) {
+            value = Math.max(0, value);
+            _buckets[bucket(value)].increment();
+            _sum.add(value);
+            _max.accumulate(value);
+        }
+
+        /** Return the number of values recorded. */
+        long count() {
+            long result = 0;
+            for (LongAdder bucket : _buckets) {
+                result += bucket.sum();
+            }
+            return result;
+        }
+
+        /** Return the mean of the values recorded, or 0 if none. */
+        double mean() {
+            long n = count();
+            return n == 0 ? 0 : (double) _sum.sum() / n;
+        }
+
+        /** Return the largest value recorded, or 0 if none. */
+        long max() {
+            return _max.get();
+        }
+
+        /** Return a value that about FRACTION of the values recorded do
+         *  not exceed (the highest value in its bucket, and so within
+         *  1/SUB_BUCKETS of the true value), or 0 if none. */
+        long percentile(double fraction) {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int b = 0; b < BUCKETS; b += 1) {
+                counts[b] = _buckets[b].sum();
+                n += counts[b];
+            }
+            long rank = (long) Math.ceil(fraction * n), seen = 0;
+            for (int b = 0; b < BUCKETS; b += 1) {
+                seen += counts[b];
+                if (seen >= rank && counts[b] > 0) {
+                    return b + 1 == BUCKETS ? max()
+                        : Math.min(max(), lowest(b + 1) - 1);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d"
+                                 + " max=%d", count(), mean(),
+                                 percentile(0.5), percentile(0.9),
+                                 percentile(0.99), max());
+        }
+
+        /** Return the bucket holding VALUE >= 0. */
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value)
+                - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS
+                + (int) (value >>> shift) - SUB_BUCKETS;
+        }
+
+        /** Return the least value in bucket B. */
+        static long lowest(int b) {
+            if (b < SUB_BUCKETS) {
+                return b;
+            }
+            int shift = b / SUB_BUCKETS - 1;
+            return (long) (SUB_BUCKETS + b % SUB_BUCKETS) << shift;
+        }
+
+        /** Number of values recorded in each bucket. */
+        private final LongAdder[] _buckets = new LongAdder[BUCKETS];
+        /** Sum of the values recorded. */
+        private final LongAdder _sum = new LongAdder();
+        /** Largest value recorded. */
+        private final LongAccumulator _max =
+            new LongAccumulator(Math::max, 0);
+    }
+
+    /** Log base 2 of the number of buckets per power of two. */
+    static final int SUB_BUCKET_BITS = 3;
+    /** Number of buckets per power of two. */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Number of buckets in a histogram: enough for any long. */
+    static final int BUCKETS = Histogram.bucket(Long.MAX_VALUE) + 1;
+
+    /** JMX name of the registry. */
+    static final String MBEAN_NAME = "amazons:type=Metrics";
+
+    /** The counters, by name. */
+    private static final Map<String, LongAdder> COUNTERS =
+        new ConcurrentHashMap<>();
+    /** The histograms, by name. */
+    private static final Map<String, Histogram> HISTOGRAMS =
+        new ConcurrentHashMap<>();
+
+    /** Number of moves generated by searches (queen moves and spear
+     *  throws, each counted once, with split plies). */
+    static final LongAdder MOVES_GENERATED = counter("search.moves");
+    /** Number of positions visited by searches. */
+    static final LongAdder NODES_SEARCHED = counter("search.nodes");
+    /** Time taken by automated players to choose each move, in
+     *  milliseconds. */
+    static final Histogram SEARCH_LATENCY = histogram("search.latency.ms");
+    /** Time taken by each paint of the board display, in
+     *  microseconds. */
+    static final Histogram FRAME_TIME = histogram("gui.frame.us");
+    /** Number of commands executed by Controllers. */
+    static final LongAdder COMMANDS = counter("controller.commands");
+}
@@ -0,0 +1,19 @@
+package amazons;
+
+import java.util.Map;
+
+/** The JMX view of Metrics.  (JMX requires that this be public.)
+ *  @author Mehak Sharma
+ */
+public interface MetricsMXBean {
+
+    /** Return the values of all counters, by name. */
+    Map<String, Long> getCounters();
+
+    /** Return descriptions of all histograms (as for Metrics.dump), by
+     *  name. */
+    Map<String, String> getHistograms();
+
+    /** Return the result of Metrics.dump. */
+    String getDump();
+}
@@ -0,0 +1,116 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Tests of Metrics and of the counts kept by the rest of the program.
+ *  @author Mehak Sharma
+ */
+public class MetricsTest {
+
+    /** Tests that every value falls in the bucket whose range holds
+     *  it, and that buckets are contiguous. */
+    @Test
+    public void testBuckets() {
+        for (int b = 0; b + 1 < Metrics.BUCKETS; b += 1) {
+            long lo = Metrics.Histogram.lowest(b),
+                hi = Metrics.Histogram.lowest(b + 1) - 1;
+            assertEquals(b, Metrics.Histogram.bucket(lo));
+            assertEquals(b, Metrics.Histogram.bucket(hi));
+            assertTrue("bucket too wide",
+                       hi - lo <= Math.max(0, lo / Metrics.SUB_BUCKETS));
+        }
+        assertEquals(Metrics.BUCKETS - 1,
+                     Metrics.Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    /** Tests the summary statistics of a histogram. */
+    @Test
+    public void testHistogram() {
+        Metrics.Histogram hist = new Metrics.Histogram();
+        assertEquals(0, hist.percentile(0.5));
+        for (int v = 1; v <= 1000; v += 1) {
+            hist.record(v);
+        }
+        assertEquals(1000, hist.count());
+        assertEquals(500.5, hist.mean(), 1e-9);
+        assertEquals(1000, hist.max());
+        assertEquals(1000, hist.percentile(1.0));
+        long p50 = hist.percentile(0.5), p90 = hist.percentile(0.9);
+        assertTrue("p50 = " + p50,
+                   p50 >= 500 && p50 <= 500 + 500 / Metrics.SUB_BUCKETS);
+        assertTrue("p90 = " + p90,
+                   p90 >= 900 && p90 <= 900 + 900 / Metrics.SUB_BUCKETS);
+        hist.record(-5);
+        assertEquals(1001, hist.count());
+        assertTrue(hist.toString().startsWith("count=1001 "));
+    }
+
+    /** Tests that searches and commands are counted, and that the
+     *  "metrics" command reports the counts. */
+    @Test
+    public void testCounts() {
+        long nodes = Metrics.NODES_SEARCHED.sum(),
+            moves = Metrics.MOVES_GENERATED.sum(),
+            commands = Metrics.COMMANDS.sum();
+        AI ai = new AI();
+        Board board = new Board();
+        ai.value(board, 1);
+        assertEquals(ai.nodes(), Metrics.NODES_SEARCHED.sum() - nodes);
+        assertTrue(Metrics.MOVES_GENERATED.sum() > moves);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true);
+        Controller controller =
+            new Controller(new NullView(), null, new TextReporter(out, out),
+                           new TextPlayer(), new TextPlayer(), out);
+        controller.executeCommand("new");
+        controller.executeCommand("");
+        controller.executeCommand("metrics");
+        assertEquals(2, Metrics.COMMANDS.sum() - commands);
+        String dump = bytes.toString();
+        assertTrue(dump.contains("search.nodes "));
+        assertTrue(dump.contains("controller.commands "));
+        assertTrue(dump.contains("search.latency.ms count="));
+    }
+
+    /** Tests that multi-line analysis and static values, which do not
+     *  go through the main search, are counted too. */
+    @Test
+    public void testAnalysisCounts() {
+        AI ai = new AI();
+        Board board = new Board();
+        long nodes = Metrics.NODES_SEARCHED.sum(),
+            moves = Metrics.MOVES_GENERATED.sum();
+        ai.analyzeLines(board, 1, 2, 0);
+        assertEquals(ai.nodes(), Metrics.NODES_SEARCHED.sum() - nodes);
+        assertTrue(Metrics.MOVES_GENERATED.sum() > moves);
+        nodes = Metrics.NODES_SEARCHED.sum();
+        ai.value(board, 0);
+        assertEquals(nodes + 1, Metrics.NODES_SEARCHED.sum());
+    }
+
+    /** Tests that the metrics may be read through JMX. */
+    @Test
+    public void testJMX() throws JMException {
+        Metrics.register();
+        Metrics.register();
+        Metrics.COMMANDS.increment();
+        Object counters = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName(Metrics.MBEAN_NAME), "Counters");
+        assertTrue(counters.toString().contains("controller.commands"));
+        String dump = (String) ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName(Metrics.MBEAN_NAME), "Dump");
+        assertTrue(dump.contains("gui.frame.us"));
+        Map<String, Long> local = Metrics.counters();
+        assertTrue(local.get("controller.commands") > 0);
+    }
+}
@@ -0,0 +1,27 @@
+package amazons;
+
+import java.util.Iterator;
+
+import static amazons.Piece.*;
+
+/** An Evaluator that values a position as the number of legal moves
+ *  White has less the number Black has.
+ *  @author Mehak Sharma
+ */
+class MobilityEvaluator implements Evaluator {
+
+    @Override
+    public int evaluate(Board board) {
+        return count(board.legalMoves(WHITE)) - count(board.legalMoves(BLACK));
+    }
+
+    /** Return the number of moves delivered by MOVES. */
+    private static int count(Iterator<Move> moves) {
+        int result = 0;
+        while (moves.hasNext()) {
+            moves.next();
+            result += 1;
+        }
+        return result;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.regex.Matcher;
 
 import static amazons.Square.sq;
 import static amazons.Square.SQ;
+import static amazons.Square.ANY_SQ;
 
 /** A move in the game of Amazons. As for Squares, Moves are immutable
  *  and unique: there is only one move object for each possible move
@@ -17,11 +18,19 @@ final class Move {
     /** The syntax for a move, using either the forms FROM-TO(SPEAR) or
      *  FROM TO SPEAR.  Either groups 1-3 or 4-6 in a match from this pattern
      *  contain FROM, TO, and SPEAR (the other 3 groups are null in each
-     *  case. */
+     *  case.  Only matches moves on the standard board; see
+     *  ANY_MOVE_PATTERN for other sizes. */
     static final Pattern MOVE_PATTERN =
         Pattern.compile(String.format("%s-%s\\(%s\\)|%s\\s+%s\\s+%s",
                                       SQ, SQ, SQ, SQ, SQ, SQ));
 
+    /** As for MOVE_PATTERN, but matching moves on a board of any size up
+     *  to Square.MAX_SIZE (see Square.ANY_SQ). */
+    static final Pattern ANY_MOVE_PATTERN =
+        Pattern.compile(String.format("%s-%s\\(%s\\)|%s\\s+%s\\s+%s",
+                                      ANY_SQ, ANY_SQ, ANY_SQ, ANY_SQ,
+                                      ANY_SQ, ANY_SQ));
+
     /** Return the square moved from. */
     Square from() {
         return _from;
@@ -37,18 +46,49 @@ final class Move {
         return _spear;
     }
 
-    /** Return the unique Move FROM-TO(SPEAR). */
+    /** Return the unique Move FROM-TO(SPEAR), where all three squares
+     *  are on a board of the same size.  Safe to call from several
+     *  threads (e.g., searches on different games). */
     static Move mv(Square from, Square to, Square spear) {
-        if (MOVES[from.index()][to.index()][spear.index()] == null) {
-            MOVES[from.index()][to.index()][spear.index()] =
-                new Move(from, to, spear);
+        Move[][][] moves = MOVES[from.size()];
+        if (moves != null) {
+            Move[][] fromMoves = moves[from.index()];
+            if (fromMoves != null) {
+                Move[] toMoves = fromMoves[to.index()];
+                if (toMoves != null && toMoves[spear.index()] != null) {
+                    return toMoves[spear.index()];
+                }
+            }
         }
-        return MOVES[from.index()][to.index()][spear.index()];
+        return create(from, to, spear);
     }
 
-    /** Return the Move denoted by STR, if STR denotes a move with
-     *  valid syntax in which the piece move and spear throw are proper
-     *  queen moves, and null otherwise. */
+    /** Return the unique Move FROM-TO(SPEAR), creating it and the
+     *  portions of the cache that hold it as necessary. */
+    private static Move create(Square from, Square to, Square spear) {
+        synchronized (MOVES) {
+            int n = from.size() * from.size();
+            if (MOVES[from.size()] == null) {
+                MOVES[from.size()] = new Move[n][][];
+            }
+            Move[][][] moves = MOVES[from.size()];
+            if (moves[from.index()] == null) {
+                moves[from.index()] = new Move[n][];
+            }
+            if (moves[from.index()][to.index()] == null) {
+                moves[from.index()][to.index()] = new Move[n];
+            }
+            Move[] toMoves = moves[from.index()][to.index()];
+            if (toMoves[spear.index()] == null) {
+                toMoves[spear.index()] = new Move(from, to, spear);
+            }
+            return toMoves[spear.index()];
+        }
+    }
+
+    /** Return the Move denoted by STR on the standard board, if STR
+     *  denotes a move with valid syntax in which the piece move and spear
+     *  throw are proper queen moves, and null otherwise. */
     static Move mv(String str) {
         _moveMatcher.reset(str);
         if (_moveMatcher.matches()) {
@@ -63,6 +103,34 @@ final class Move {
         return null;
     }
 
+    /** Return the Move denoted by STR on a board with SIZE squares on a
+     *  side, if STR denotes a move with valid syntax whose squares exist
+     *  on that board and in which the piece move and spear throw are
+     *  proper queen moves, and null otherwise.  Unlike mv(String), safe
+     *  to call from several threads. */
+    static Move mv(String str, int size) {
+        Matcher matcher = ANY_MOVE_PATTERN.matcher(str);
+        if (!matcher.matches()) {
+            return null;
+        }
+        int k = matcher.group(1) != null ? 1 : 4;
+        Square[] squares = new Square[3];
+        for (int i = 0; i < 3; i += 1) {
+            String posn = matcher.group(k + i);
+            int col = Square.colNum(posn.charAt(0)),
+                row = Square.rowNum(posn.substring(1));
+            if (!Square.exists(col, row, size)) {
+                return null;
+            }
+            squares[i] = sq(col, row, size);
+        }
+        if (squares[0].isQueenMove(squares[1])
+            && squares[1].isQueenMove(squares[2])) {
+            return mv(squares[0], squares[1], squares[2]);
+        }
+        return null;
+    }
+
     /** Return true iff STR has the right format for a Move, ignoring whether
      *  its piece-move and spear-throw are valid queen moves. */
     static boolean isGrammaticalMove(String str) {
@@ -78,16 +146,23 @@ final class Move {
     /** Construct the Move FROM-TO(SPEAR). */
     private Move(Square from, Square to, Square spear) {
         _from = from; _to = to; _spear = spear;
-        _str = String.format("%s-%s(%s)", from, to, spear);
+        _str = from + "-" + to + "(" + spear + ")";
     }
 
-    /** The cache of all Moves created. */
-    private static final Move[][][] MOVES = new Move[100][100][100];
+    /** The cache of all Moves created.  MOVES[n][f][t][s] is the move
+     *  from the square with index f to the one with index t, throwing to
+     *  the one with index s, on a board with n squares on a side.  The
+     *  arrays are allocated as needed, since only a small fraction of
+     *  the possible triples are queen moves, and only part of those are
+     *  ever made (preallocating the whole cache would take 196 cubed
+     *  entries on a 14x14 board). */
+    private static final Move[][][][] MOVES =
+        new Move[Square.MAX_SIZE + 1][][][];
 
     /** The components of a Move. */
     private final Square _from, _to, _spear;
     /** The printed form of a Move. */
-    private String _str;
+    private final String _str;
     /**  A utility Matcher for moves, using MOVE_PATTERN. */
     private static Matcher _moveMatcher = MOVE_PATTERN.matcher("");
 }
@@ -1,5 +1,7 @@
 package amazons;
 
+import java.util.concurrent.CompletableFuture;
+
 import static amazons.Utils.*;
 
 /** A generic Amazons Player.
@@ -36,6 +38,31 @@ abstract class Player {
      *  is not null. */
     abstract String myMove();
 
+    /** Return a future that supplies the value of myMove().  By default,
+     *  the move is computed synchronously by the caller, which suits
+     *  players that read their moves from the caller's input.  Players
+     *  that compute their moves may override this to do so on another
+     *  thread, leaving the caller free. */
+    CompletableFuture<String> myMoveAsync() {
+        return CompletableFuture.completedFuture(myMove());
+    }
+
+    /** Make my move as soon as possible, if I am computing one.  May be
+     *  called from any thread.  By default, does nothing. */
+    void moveNow() {
+    }
+
+    /** Keep no more than about BYTES bytes of tables between moves, if
+     *  I keep any.  By default, does nothing. */
+    void setMemory(long bytes) {
+    }
+
+    /** Return a description of the memory I keep between moves, or null
+     *  if I keep none.  By default, returns null. */
+    String memoryUsage() {
+        return null;
+    }
+
     /** My Controller. */
     protected Controller _controller;
     /** The Piece I play (WHITE or BLACK). */
@@ -16,5 +16,11 @@ interface Reporter {
     /** Display MOVE as needed. */
     void reportMove(Move move);
 
+    /** Display ANALYSIS, the best move found so far by a search for an
+     *  automated player's move, as needed.  May be called from any
+     *  thread.  By default, does nothing. */
+    default void reportProgress(Analysis analysis) {
+    }
+
 }
 
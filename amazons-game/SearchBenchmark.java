@@ -0,0 +1,196 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.Math.max;
+
+import static amazons.Piece.*;
+import static amazons.Utils.iterable;
+
+/** Compares the search techniques of the AI on a fixed suite of
+ *  positions.  For each configuration (plain alpha-beta, then each of
+ *  principal variation search, aspiration windows, and late-move
+ *  reductions alone, then all together), it reports the total number of
+ *  positions visited and the total time taken by fixed-depth searches
+ *  of every position in the suite, and the number of positions on which
+ *  the configuration chose a move of different value from plain
+ *  alpha-beta.  A shallow search of the suite comes first, so that the
+ *  timings include less compilation.
+ *
+ *  With the argument "select", it instead measures forward pruning:
+ *  for each of several selectivities, the nodes and time of searching
+ *  the suite, and the result of a match against a full-width AI of the
+ *  same depth, starting from each position of the suite with each
+ *  color.
+ *  Usage: java amazons.SearchBenchmark [DEPTH]
+ *     or: java amazons.SearchBenchmark select [DEPTH [MATCHDEPTH]].
+ *  @author Mehak Sharma
+ */
+final class SearchBenchmark {
+
+    /** Not instantiable. */
+    private SearchBenchmark() {
+    }
+
+    /** Run the comparison at the depth given in ARGS. */
+    public static void main(String... args) {
+        if (args.length > 0 && args[0].equals("select")) {
+            select(args.length > 1 ? Integer.parseInt(args[1]) : 2,
+                   args.length > 2 ? Integer.parseInt(args[2]) : 1);
+            return;
+        }
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        List<Board> suite = positionSuite();
+        int[] baseline = null;
+        for (Board board : suite) {
+            configured(CONFIGS[0]).bestMove(board, 1);
+        }
+        System.out.printf("%-10s %12s %10s %8s%n", "config", "nodes",
+                          "time (ms)", "differ");
+        for (int c = 0; c < CONFIGS.length; c += 1) {
+            boolean[] config = CONFIGS[c];
+            int[] scores = new int[suite.size()];
+            long nodes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < suite.size(); i += 1) {
+                AI ai = configured(config);
+                ai.bestMove(suite.get(i), depth);
+                scores[i] = ai.lastScore();
+                nodes += ai.nodes();
+            }
+            double time = (System.nanoTime() - start) / 1e6;
+            if (baseline == null) {
+                baseline = scores;
+            }
+            int differ = 0;
+            for (int i = 0; i < scores.length; i += 1) {
+                if (scores[i] != baseline[i]) {
+                    differ += 1;
+                }
+            }
+            System.out.printf("%-10s %12d %10.1f %8d%n", NAMES[c], nodes,
+                              time, differ);
+        }
+    }
+
+    /** Compare forward pruning with each of SELECTIVITIES to full-width
+     *  search: searching the suite to DEPTH, and in matches at
+     *  MATCHDEPTH. */
+    private static void select(int depth, int matchDepth) {
+        List<Board> suite = positionSuite();
+        System.out.printf("%4s %12s %10s %6s %6s %10s %10s%n", "k",
+                          "nodes", "time (ms)", "won", "lost",
+                          "ms/move", "full ms/mv");
+        for (int k : SELECTIVITIES) {
+            long nodes = 0;
+            long start = System.nanoTime();
+            for (Board board : suite) {
+                AI ai = new AI();
+                ai.setSelectivity(k);
+                ai.bestMove(board, depth);
+                nodes += ai.nodes();
+            }
+            double time = (System.nanoTime() - start) / 1e6;
+            int won = 0;
+            long[] times = new long[2], moves = new long[2];
+            for (Board board : suite) {
+                for (Piece side : new Piece[] { WHITE, BLACK }) {
+                    AI selective = new AI();
+                    selective.setSelectivity(k);
+                    if (play(board, selective, side, new AI(), matchDepth,
+                             times, moves) == side) {
+                        won += 1;
+                    }
+                }
+            }
+            int games = 2 * suite.size();
+            System.out.printf("%4d %12d %10.1f %6d %6d %10.2f %10.2f%n",
+                              k, nodes, time, won, games - won,
+                              times[0] / 1e6 / max(1, moves[0]),
+                              times[1] / 1e6 / max(1, moves[1]));
+        }
+    }
+
+    /** Play a game from START between FIRST, playing SIDE, and SECOND,
+     *  each searching to DEPTH, and return the winner.  Add the time
+     *  in nanoseconds taken and the number of moves made by FIRST and
+     *  SECOND to TIMES[0] and MOVES[0] and to TIMES[1] and MOVES[1]
+     *  respectively. */
+    private static Piece play(Board start, AI first, Piece side,
+                              AI second, int depth, long[] times,
+                              long[] moves) {
+        Board board = new Board(start);
+        while (board.winner() == EMPTY) {
+            int k = board.turn() == side ? 0 : 1;
+            long before = System.nanoTime();
+            Move move = (k == 0 ? first : second).bestMove(board, depth);
+            times[k] += System.nanoTime() - before;
+            moves[k] += 1;
+            board.makeMove(move);
+        }
+        return board.winner();
+    }
+
+    /** Return a new AI using principal variation search, aspiration
+     *  windows, and late-move reductions as indicated by the elements
+     *  of CONFIG. */
+    static AI configured(boolean[] config) {
+        AI ai = new AI();
+        ai.setPrincipalVariation(config[0]);
+        ai.setAspiration(config[1]);
+        ai.setLateMoveReductions(config[2]);
+        return ai;
+    }
+
+    /** Return the fixed suite of positions: positions reached by
+     *  SUITE_MOVES[k] random moves from the initial position, for each
+     *  k and each seed from 1 to SUITE_SEEDS. */
+    static List<Board> positionSuite() {
+        List<Board> result = new ArrayList<>();
+        for (int moves : SUITE_MOVES) {
+            for (long seed = 1; seed <= SUITE_SEEDS; seed += 1) {
+                Random random = new Random(seed);
+                Board board = new Board();
+                for (int i = 0; i < moves && board.winner() == EMPTY;
+                     i += 1) {
+                    List<Move> legal = new ArrayList<>();
+                    for (Move move : iterable(board.legalMoves())) {
+                        legal.add(move);
+                    }
+                    board.makeMove(legal.get(random.nextInt(legal.size())));
+                }
+                if (board.winner() == EMPTY) {
+                    result.add(board);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Numbers of random moves leading to the positions of the suite. */
+    private static final int[] SUITE_MOVES = { 10, 20, 30, 40 };
+
+    /** Number of positions in the suite for each element of
+     *  SUITE_MOVES. */
+    private static final int SUITE_SEEDS = 3;
+
+    /** Configurations compared: whether to use principal variation
+     *  search, aspiration windows, and late-move reductions. */
+    private static final boolean[][] CONFIGS = {
+        { false, false, false },
+        { true, false, false },
+        { false, true, false },
+        { false, false, true },
+        { true, true, true },
+    };
+
+    /** Selectivities compared by select, full width first. */
+    private static final int[] SELECTIVITIES = { 0, 16, 8, 4, 2 };
+
+    /** Names of the elements of CONFIGS. */
+    private static final String[] NAMES = {
+        "plain", "pvs", "aspiration", "lmr", "all",
+    };
+}
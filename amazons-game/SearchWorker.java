@@ -0,0 +1,221 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static amazons.Utils.error;
+
+/** A worker for DistributedSearch: a server that searches subtrees of
+ *  positions for coordinators connecting over TCP.  Each connection is
+ *  served by its own thread, and carries requests and replies of one
+ *  line each:
+ *  <dl>
+ *  <dt> position SIZE MOVE...
+ *  <dd> Set the position of the connection to the one reached by the
+ *       MOVEs (in FROM-TO(SPEAR) notation) from the initial position of
+ *       a board of SIZE squares on a side.  Reply "ok".
+ *  <dt> search DEPTH MOVE...
+ *  <dd> For each MOVE, search the position it leads to from the
+ *       connection's position to DEPTH moves.  Reply "scores NODES
+ *       VALUE...", where NODES is the total number of positions visited
+ *       and each VALUE is the value (positive favoring White) after the
+ *       corresponding MOVE.
+ *  <dt> quit
+ *  <dd> Close the connection.
+ *  </dl>
+ *  An invalid request, or one that fails, gets the reply "error
+ *  MESSAGE".
+ *  Usage: java amazons.SearchWorker [PORT].
+ *  @author Mehak Sharma
+ */
+final class SearchWorker implements Runnable {
+
+    /** Default port. */
+    static final int DEFAULT_PORT = 9261;
+
+    /** A worker listening on PORT (0 for any free port) on all network
+     *  interfaces, searching with AIs created from TEMPLATE. */
+    SearchWorker(int port, AI template) throws IOException {
+        _server = new ServerSocket(port);
+        _template = template;
+    }
+
+    /** Serve searches on the port given by ARGS[0], if any. */
+    public static void main(String... args) {
+        try {
+            SearchWorker worker =
+                new SearchWorker(args.length > 0 ? Integer.parseInt(args[0])
+                                 : DEFAULT_PORT, new AI());
+            System.out.printf("Amazons search worker listening on port %d%n",
+                              worker.port());
+            worker.run();
+        } catch (NumberFormatException excp) {
+            System.err.printf("Invalid port: %s%n", args[0]);
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("Could not start worker: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return the port on which I am listening. */
+    int port() {
+        return _server.getLocalPort();
+    }
+
+    /** Accept and serve connections until close() is called. */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Socket socket = _server.accept();
+                synchronized (this) {
+                    _connections.add(socket);
+                }
+                Thread thread = new Thread(() -> serve(socket),
+                                           "amazons-search-worker");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException excp) {
+            /* Closed. */
+        } finally {
+            close();
+        }
+    }
+
+    /** Stop listening and drop all connections, as if the worker had
+     *  died.  May be called from any thread. */
+    synchronized void close() {
+        try {
+            _server.close();
+            for (Socket socket : _connections) {
+                socket.close();
+            }
+        } catch (IOException excp) {
+            /* Ignore: we are going away anyway. */
+        }
+        _connections.clear();
+    }
+
+    /** Return the number of searches requested of me so far. */
+    synchronized int searches() {
+        return _searches;
+    }
+
+    /** Serve the requests arriving on SOCKET until it closes. */
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                 socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(),
+                                                 StandardCharsets.UTF_8)) {
+            Board board = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                String reply;
+                try {
+                    if (words[0].equals("quit")) {
+                        break;
+                    } else if (words[0].equals("position")
+                               && words.length >= 2) {
+                        board = position(words);
+                        reply = "ok";
+                    } else if (words[0].equals("search")
+                               && words.length >= 2 && board != null) {
+                        reply = search(board, words);
+                    } else {
+                        throw error("bad request: %s", line);
+                    }
+                } catch (IllegalArgumentException excp) {
+                    reply = "error " + excp.getMessage();
+                } catch (RuntimeException excp) {
+                    reply = "error " + excp;
+                }
+                out.write(reply + "\n");
+                out.flush();
+            }
+        } catch (IOException excp) {
+            /* Coordinator went away. */
+        } finally {
+            synchronized (this) {
+                _connections.remove(socket);
+            }
+        }
+    }
+
+    /** Return the board described by the request WORDS: "position SIZE
+     *  MOVE...". */
+    private static Board position(String[] words) {
+        Board board = new Board(number(words[1]));
+        for (int i = 2; i < words.length; i += 1) {
+            Move move = parse(board, words[i]);
+            board.makeMove(move);
+        }
+        return board;
+    }
+
+    /** Return the reply to the request WORDS, "search DEPTH MOVE...",
+     *  from BOARD. */
+    private String search(Board board, String[] words) {
+        int depth = number(words[1]);
+        List<Move> moves = new ArrayList<>();
+        for (int i = 2; i < words.length; i += 1) {
+            moves.add(parse(board, words[i]));
+        }
+        synchronized (this) {
+            _searches += 1;
+        }
+        AI ai = (AI) _template.create(null, null);
+        StringBuilder values = new StringBuilder();
+        Board child = new Board(board);
+        for (Move move : moves) {
+            child.makeMove(move);
+            values.append(' ').append(ai.value(child, depth));
+            child.undo();
+        }
+        return "scores " + ai.nodes() + values;
+    }
+
+    /** Return the non-negative number WORD. */
+    private static int number(String word) {
+        try {
+            int result = Integer.parseInt(word);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through. */
+        }
+        throw error("bad number: %s", word);
+    }
+
+    /** Return the move denoted by WORD, which must be legal on BOARD,
+     *  whatever its size. */
+    private static Move parse(Board board, String word) {
+        Move move = Move.mv(word, board.size());
+        if (move == null || !board.isLegal(move)) {
+            throw error("bad move: %s", word);
+        }
+        return move;
+    }
+
+    /** Socket on which I listen. */
+    private final ServerSocket _server;
+    /** Creates the AIs used for searching. */
+    private final AI _template;
+    /** Open connections. */
+    private final List<Socket> _connections = new ArrayList<>();
+    /** Number of search requests received. */
+    private int _searches;
+}
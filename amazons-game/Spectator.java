@@ -0,0 +1,107 @@
+package amazons;
+
+import java.util.function.Consumer;
+
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+
+/** A spectator's copy of a game relayed by a ViewBroadcaster, kept up
+ *  to date by applying the broadcaster's deltas to it.  Records only the
+ *  contents of the board, the side to move, and the number of moves.
+ *  @author Mehak Sharma
+ */
+final class Spectator implements Consumer<String> {
+
+    /** A spectator that has not yet received a position. */
+    Spectator() {
+    }
+
+    /** Apply DELTA, a line from a ViewBroadcaster. */
+    @Override
+    public synchronized void accept(String delta) {
+        String[] words = delta.trim().split("\\s+");
+        if (words[0].equals("position") && words.length == 5) {
+            _size = Integer.parseInt(words[1]);
+            _turn = words[2].equals("B") ? BLACK : WHITE;
+            _moves = Integer.parseInt(words[3]);
+            _cells = new Piece[_size * _size];
+            for (int i = 0; i < _cells.length; i += 1) {
+                _cells[i] = piece(words[4].charAt(i));
+            }
+        } else if (_cells != null && words.length == 2
+                   && (words[0].equals("move") || words[0].equals("undo"))) {
+            String[] squares = words[1].split("[-()]");
+            int from = index(squares[0]), to = index(squares[1]),
+                spear = index(squares[2]);
+            if (words[0].equals("move")) {
+                _cells[from] = EMPTY;
+                _cells[to] = _turn;
+                _cells[spear] = SPEAR;
+                _moves += 1;
+            } else {
+                _cells[spear] = EMPTY;
+                _cells[to] = EMPTY;
+                _cells[from] = _turn.opponent();
+                _moves -= 1;
+            }
+            _turn = _turn.opponent();
+        } else {
+            throw error("bad delta: %s", delta);
+        }
+        _updates += 1;
+    }
+
+    /** Return true iff I show the same contents, side to move, and
+     *  number of moves as BOARD. */
+    synchronized boolean matches(Board board) {
+        if (_cells == null || board.size() != _size
+            || board.turn() != _turn || board.numMoves() != _moves) {
+            return false;
+        }
+        for (int i = 0; i < _cells.length; i += 1) {
+            if (board.get(board.sq(i)) != _cells[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the number of deltas applied. */
+    synchronized int updates() {
+        return _updates;
+    }
+
+    /** Return the number of moves made. */
+    synchronized int numMoves() {
+        return _moves;
+    }
+
+    /** Return the index of the square named NAME. */
+    private int index(String name) {
+        int col = name.charAt(0) - 'a',
+            row = Integer.parseInt(name.substring(1)) - 1;
+        return row * _size + col;
+    }
+
+    /** Return the Piece whose symbol is C. */
+    private static Piece piece(char c) {
+        for (Piece p : Piece.values()) {
+            if (p.toString().charAt(0) == c) {
+                return p;
+            }
+        }
+        throw error("bad square contents: %c", c);
+    }
+
+    /** Number of squares on a side. */
+    private int _size;
+    /** Contents of each square, by index, or null if no position has
+     *  been received. */
+    private Piece[] _cells;
+    /** Side to move. */
+    private Piece _turn;
+    /** Number of moves made. */
+    private int _moves;
+    /** Number of deltas applied. */
+    private int _updates;
+}
@@ -9,13 +9,17 @@ import static java.lang.Math.abs;
 import static amazons.Utils.*;
 
 /** Represents a position on an Amazons board.  Positions are numbered
- *  from 0 (lower-left corner) to 99 (upper-right corner).  Squares
+ *  from 0 (lower-left corner) to 99 (upper-right corner) on the standard
+ *  board, and to N * N - 1 on a board with N squares on a side.  Each
+ *  board size has its own set of squares, built (with the tables used
+ *  for queen moves) the first time a board of that size is used.  Squares
  *  are immutable and unique: there is precisely one square created for
- *  each distinct position.  Clients create squares using the factory method
- *  sq, not the constructor.  Because there is a unique Square object for each
- *  position, you can freely use the cheap == operator (rather than the
- *  .equals method) to compare Squares, and the program does not waste time
- *  creating the same square over and over again.
+ *  each distinct position on a board of a given size.  Clients create
+ *  squares using the factory method sq, not the constructor.  Because
+ *  there is a unique Square object for each position, you can freely use
+ *  the cheap == operator (rather than the .equals method) to compare
+ *  Squares, and the program does not waste time creating the same square
+ *  over and over again.
  *  @author Mehak Sharma
  */
 final class Square {
@@ -24,9 +28,15 @@ final class Square {
      *  a3). For convenience, it is in parentheses to make it a
      *  group.  This subpattern is intended to be incorporated into
      *  other pattern that contain square designations (such as
-     *  patterns for moves). */
+     *  patterns for moves).  Only matches squares of the standard
+     *  board; see ANY_SQ for other sizes. */
     static final String SQ = "([a-j](?:[1-9]|10))";
 
+    /** As for SQ, but matching a square designation on a board of any
+     *  size up to MAX_SIZE (e.g., p16).  Whether the square exists on a
+     *  particular board is checked by sq(String, int). */
+    static final String ANY_SQ = "([a-p](?:1[0-6]|[1-9]))";
+
     /** Return my ROW position, where 0 is the bottom row. */
     int row() {
         return _row;
@@ -45,20 +55,25 @@ final class Square {
 
     /** Return my COL number. */
     static int colNum(char col) {
-        return "abcdefghij".indexOf(col);
+        return COLUMNS.indexOf(col);
     }
 
     /** Return my COL character. */
     static char colChar(int col) {
-        return "abcdefghij".charAt(col);
+        return COLUMNS.charAt(col);
     }
 
-    /** Return my index position (0-99).  0 represents square a1, and 99
-     *  is square j10. */
+    /** Return my index position (0-99 on the standard board).  0
+     *  represents square a1, and 99 is square j10. */
     int index() {
         return _index;
     }
 
+    /** Return the number of squares on a side of my board. */
+    int size() {
+        return _size;
+    }
+
     /** Return true iff THIS - TO is a valid queen move. */
     boolean isQueenMove(Square to) {
         int colDiff = abs(this.col() - to.col());
@@ -86,20 +101,18 @@ final class Square {
      *  northwest. If DIR has another value, return null. Thus, unless the
      *  result is null the resulting square is a queen move away from me. */
     Square queenMove(int dir, int steps) {
-        int moveCol = this._col;
-        int moveRow = this._row;
-
         if (dir > 7 || dir < 0) {
             return null;
-        } else {
-            moveCol += (DIR[dir][0]) * abs(steps);
-            moveRow += (DIR[dir][1]) * abs(steps);
-            if (moveCol < 0 || moveRow < 0 || moveCol > 9 || moveCol > 9) {
-                return null;
-            }
-            Square moved = sq(moveCol, moveRow);
-            return moved;
         }
+        steps = abs(steps);
+        Square[] ray = _rays[dir];
+        return steps == 0 || steps > ray.length ? null : ray[steps - 1];
+    }
+
+    /** Return the number of squares between me and the edge of the board
+     *  in direction DIR (as for queenMove). */
+    int rayLength(int dir) {
+        return _rays[dir].length;
     }
 
     /** Return the direction (an int as defined in the documentation
@@ -141,66 +154,160 @@ final class Square {
 
     /** Return true iff COL ROW is a legal square. */
     static boolean exists(int col, int row) {
-        return row >= 0 && col >= 0 && row < Board.SIZE && col < Board.SIZE;
+        return exists(col, row, Board.SIZE);
+    }
+
+    /** Return true iff COL ROW is a legal square on a board with SIZE
+     *  squares on a side. */
+    static boolean exists(int col, int row, int size) {
+        return row >= 0 && col >= 0 && row < size && col < size;
     }
 
-    /** Return the (unique) Square denoting COL ROW. */
+    /** Return the (unique) Square denoting COL ROW on the standard
+     *  board. */
     static Square sq(int col, int row) {
         if (!exists(col, row)) {
             throw error("row or column out of bounds");
         }
-        return sq((row * 10) + col);
+        return sq((row * Board.SIZE) + col);
     }
 
-    /** Return the (unique) Square denoting the position with index INDEX. */
+    /** Return the (unique) Square denoting the position with index INDEX
+     *  on the standard board. */
     static Square sq(int index) {
         return SQUARES[index];
     }
 
-    /** Return the (unique) Square denoting the position COL ROW, where
-     *  COL ROW is the standard text format for a square (e.g., a4). */
+    /** Return the (unique) Square denoting COL ROW on a board with SIZE
+     *  squares on a side. */
+    static Square sq(int col, int row, int size) {
+        if (!exists(col, row, size)) {
+            throw error("row or column out of bounds");
+        }
+        return squares(size)[row * size + col];
+    }
+
+    /** Return the Squares of a board with SIZE squares on a side, indexed
+     *  by index(), where MIN_SIZE <= SIZE <= MAX_SIZE.  The result must
+     *  not be modified. */
+    static Square[] squares(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw error("board size must be between %d and %d",
+                        MIN_SIZE, MAX_SIZE);
+        }
+        Square[] result = ALL_SQUARES[size];
+        if (result == null) {
+            synchronized (ALL_SQUARES) {
+                result = ALL_SQUARES[size];
+                if (result == null) {
+                    result = makeSquares(size);
+                    ALL_SQUARES[size] = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the (unique) Square denoting the position COL ROW on the
+     *  standard board, where COL ROW is the standard text format for a
+     *  square (e.g., a4). */
     static Square sq(String col, String row) {
         return sq(col + row);
     }
 
-    /** Return the (unique) Square denoting the position in POSN, in the
-     *  standard text format for a square (e.g. a4). POSN must be a
-     *  valid square designation. */
+    /** Return the (unique) Square denoting the position in POSN on the
+     *  standard board, in the standard text format for a square (e.g.
+     *  a4). POSN must be a valid square designation. */
     static Square sq(String posn) {
         assert posn.matches(SQ);
         return sq((rowNum(posn.substring(1)) * 10) + colNum(posn.charAt(0)));
 
     }
+
+    /** Return the (unique) Square denoting the position in POSN, in the
+     *  standard text format for a square, on a board with SIZE squares
+     *  on a side.  POSN must match ANY_SQ, and denote a square that
+     *  exists on that board. */
+    static Square sq(String posn, int size) {
+        assert posn.matches(ANY_SQ);
+        return sq(colNum(posn.charAt(0)), rowNum(posn.substring(1)), size);
+    }
+
     /** Return an iterator over all Squares. */
     static Iterator<Square> iterator() {
         return SQUARE_LIST.iterator();
     }
 
-    /** Return the Square with index INDEX. */
-    private Square(int index) {
+    /** Return an iterator over all Squares of a board with SIZE squares on
+     *  a side. */
+    static Iterator<Square> iterator(int size) {
+        return Arrays.asList(squares(size)).iterator();
+    }
+
+    /** Return the Square with index INDEX on a board with SIZE squares on
+     *  a side. */
+    private Square(int index, int size) {
         _index = index;
-        _row = index / 10;
-        _col = index % 10;
-        _str = String.format(String.valueOf(colChar(_col))
-                + String.valueOf(_row + 1));
+        _size = size;
+        _row = index / size;
+        _col = index % size;
+        _str = String.valueOf(colChar(_col)).concat(String.valueOf(_row + 1));
     }
 
-    /** The cache of all created squares, by index. */
-    private static final Square[] SQUARES =
-            new Square[Board.SIZE * Board.SIZE];
+    /** Return a new array of the Squares of a board with SIZE squares on
+     *  a side, with their queen-move tables filled in. */
+    private static Square[] makeSquares(int size) {
+        Square[] result = new Square[size * size];
+        for (int i = size * size - 1; i >= 0; i -= 1) {
+            result[i] = new Square(i, size);
+        }
+        for (Square s : result) {
+            for (int dir = 0; dir < DIR.length; dir += 1) {
+                int n;
+                for (n = 0; exists(s._col + (n + 1) * DIR[dir][0],
+                                   s._row + (n + 1) * DIR[dir][1], size);
+                     n += 1) {
+                    continue;
+                }
+                s._rays[dir] = new Square[n];
+                for (int k = 1; k <= n; k += 1) {
+                    s._rays[dir][k - 1] =
+                        result[(s._row + k * DIR[dir][1]) * size
+                               + s._col + k * DIR[dir][0]];
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Smallest and largest supported board sizes.  MAX_SIZE is limited
+     *  by the eight bits used for a square index in encoded moves. */
+    static final int MIN_SIZE = 4, MAX_SIZE = 16;
+
+    /** Column designations, in order. */
+    private static final String COLUMNS = "abcdefghijklmnop";
+
+    /** The caches of squares for each board size, indexed by size, or
+     *  null for sizes not yet used. */
+    private static final Square[][] ALL_SQUARES = new Square[MAX_SIZE + 1][];
+
+    /** The cache of all created squares on the standard board, by
+     *  index. */
+    private static final Square[] SQUARES = squares(Board.SIZE);
 
     /** SQUARES viewed as a List. */
     private static final List<Square> SQUARE_LIST = Arrays.asList(SQUARES);
 
-    static {
-        for (int i = Board.SIZE * Board.SIZE - 1; i >= 0; i -= 1) {
-            SQUARES[i] = new Square(i);
-        }
-    }
-
     /** My index position. */
     private final int _index;
 
+    /** The number of squares on a side of my board. */
+    private final int _size;
+
+    /** _rays[d] contains the squares 1, 2, ... steps from me in
+     *  direction d, out to the edge of the board. */
+    private final Square[][] _rays = new Square[DIR.length][];
+
     /** My row and column (redundant, since these are determined by _index). */
     private final int _row, _col;
 
@@ -0,0 +1,94 @@
+package amazons;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Measures the time from starting a new JVM running amazons.Main to its
+ *  first prompt, as seen by a parent process that spawns many short-lived
+ *  games.  Each run starts "java amazons.Main" with my own class path,
+ *  waits for the first "> " on its standard output, sends "quit", and
+ *  waits for it to exit.  Prints the minimum, median, and maximum times
+ *  to the first prompt and to exit.
+ *  Usage: java amazons.StartupBenchmark [RUNS [JVMOPTION...]].
+ *  @author Mehak Sharma
+ */
+final class StartupBenchmark {
+
+    /** Not instantiable. */
+    private StartupBenchmark() {
+    }
+
+    /** Run the number of games given by ARGS[0], passing the rest of
+     *  ARGS to the JVM. */
+    public static void main(String... args) throws IOException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.addAll(Arrays.asList(args).subList(Math.min(1, args.length),
+                                                   args.length));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("amazons.Main");
+        long[] prompt = new long[runs], exit = new long[runs];
+        for (int i = -WARMUP_RUNS; i < runs; i += 1) {
+            long[] times = run(command);
+            if (i >= 0) {
+                prompt[i] = times[0];
+                exit[i] = times[1];
+            }
+        }
+        System.out.printf("%-8s %8s %8s %8s%n", "(ms)", "min", "median",
+                          "max");
+        report("prompt", prompt);
+        report("exit", exit);
+    }
+
+    /** Start COMMAND, and return the times in nanoseconds from starting
+     *  it to its first prompt and to its exit. */
+    static long[] run(List<String> command) throws IOException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        InputStream out = process.getInputStream();
+        long prompt = -1;
+        int prev = -1, c;
+        while ((c = out.read()) >= 0) {
+            if (prev == '>' && c == ' ') {
+                prompt = System.nanoTime() - start;
+                break;
+            }
+            prev = c;
+        }
+        if (prompt < 0) {
+            throw new IOException("game exited without prompting");
+        }
+        OutputStream in = process.getOutputStream();
+        in.write("quit\n".getBytes(StandardCharsets.UTF_8));
+        in.close();
+        out.transferTo(OutputStream.nullOutputStream());
+        try {
+            process.waitFor();
+        } catch (InterruptedException excp) {
+            process.destroy();
+        }
+        return new long[] { prompt, System.nanoTime() - start };
+    }
+
+    /** Print the minimum, median, and maximum of TIMES (in nanoseconds)
+     *  in milliseconds, labeled with LABEL. */
+    private static void report(String label, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-8s %8.1f %8.1f %8.1f%n", label, sorted[0] / 1e6,
+                          sorted[sorted.length / 2] / 1e6,
+                          sorted[sorted.length - 1] / 1e6);
+    }
+
+    /** Number of unmeasured runs first made to warm the file cache. */
+    private static final int WARMUP_RUNS = 2;
+}
@@ -0,0 +1,104 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static amazons.Piece.*;
+
+/** An Evaluator that values a position by territory: the number of
+ *  empty squares White can reach in fewer queen moves than Black, less
+ *  the number Black can reach in fewer than White.  Queen moves here
+ *  ignore spear throws, and squares neither side can reach, or both can
+ *  reach equally quickly, count for neither.
+ *
+ *  This is the scalar version, which works on boards of any size: it
+ *  copies the board into a flat byte array and computes the
+ *  queen-distance map of each side by breadth-first search.  See
+ *  BitboardEvaluator for a faster version.
+ *  @author Mehak Sharma
+ */
+class TerritoryEvaluator implements Evaluator {
+
+    @Override
+    public int evaluate(Board board) {
+        int size = board.size();
+        byte[] cells = cells(board);
+        byte[] white = distances(cells, size, WHITE_CELL),
+            black = distances(cells, size, BLACK_CELL);
+        int result = 0;
+        for (int i = 0; i < cells.length; i += 1) {
+            if (cells[i] == EMPTY_CELL) {
+                result += Integer.signum(black[i] - white[i]);
+            }
+        }
+        return result;
+    }
+
+    /** Return the contents of BOARD as an array of EMPTY_CELL,
+     *  WHITE_CELL, BLACK_CELL, and SPEAR_CELL values, indexed by square
+     *  index. */
+    static byte[] cells(Board board) {
+        int size = board.size();
+        byte[] result = new byte[size * size];
+        for (int i = 0; i < result.length; i += 1) {
+            Piece p = board.get(board.sq(i));
+            result[i] =
+                p == EMPTY ? EMPTY_CELL
+                : p == WHITE ? WHITE_CELL
+                : p == BLACK ? BLACK_CELL : SPEAR_CELL;
+        }
+        return result;
+    }
+
+    /** Return the queen-distance map of the pieces whose cells are SIDE
+     *  on the SIZE x SIZE board CELLS: the least number of queen moves
+     *  (over empty cells) from one of those pieces to each cell, or
+     *  UNREACHABLE. */
+    static byte[] distances(byte[] cells, int size, byte side) {
+        byte[] result = new byte[cells.length];
+        Arrays.fill(result, UNREACHABLE);
+        int[] frontier = new int[cells.length], next = new int[cells.length];
+        int n = 0;
+        for (int i = 0; i < cells.length; i += 1) {
+            if (cells[i] == side) {
+                result[i] = 0;
+                frontier[n++] = i;
+            }
+        }
+        for (byte level = 1; n > 0; level += 1) {
+            int m = 0;
+            for (int k = 0; k < n; k += 1) {
+                int col0 = frontier[k] % size, row0 = frontier[k] / size;
+                for (int dir = 0; dir < DCOL.length; dir += 1) {
+                    int col = col0 + DCOL[dir], row = row0 + DROW[dir];
+                    while (col >= 0 && col < size && row >= 0 && row < size
+                           && cells[row * size + col] == EMPTY_CELL) {
+                        int i = row * size + col;
+                        if (result[i] == UNREACHABLE) {
+                            result[i] = level;
+                            next[m++] = i;
+                        }
+                        col += DCOL[dir];
+                        row += DROW[dir];
+                    }
+                }
+            }
+            int[] tmp = frontier;
+            frontier = next;
+            next = tmp;
+            n = m;
+        }
+        return result;
+    }
+
+    /** Values of the cells of a flat board. */
+    static final byte
+        EMPTY_CELL = 0, WHITE_CELL = 1, BLACK_CELL = 2, SPEAR_CELL = 3;
+
+    /** Distance of a cell that cannot be reached. */
+    static final byte UNREACHABLE = Byte.MAX_VALUE;
+
+    /** Column and row steps of the eight queen directions. */
+    static final int[]
+        DCOL = { 0, 1, 1, 1, 0, -1, -1, -1 },
+        DROW = { 1, 1, 0, -1, -1, -1, 0, 1 };
+}
@@ -1,25 +1,44 @@
 package amazons;
 
+import java.io.PrintStream;
+
 /** A Reporter that uses the standard output for messaeges and standard
  *  error for error messages.
  *  @author P. N. Hilfinger
  */
 class TextReporter implements Reporter {
 
+    /** A TextReporter writing to the standard output and error. */
+    TextReporter() {
+        this(System.out, System.err);
+    }
+
+    /** A TextReporter that writes messages and moves to OUT and errors
+     *  to ERR. */
+    TextReporter(PrintStream out, PrintStream err) {
+        _out = out;
+        _err = err;
+    }
+
     @Override
     public void reportError(String fmt, Object... args) {
-        System.err.printf(fmt, args);
-        System.err.println();
+        _err.printf(fmt, args);
+        _err.println();
     }
 
     @Override
     public void reportNote(String fmt, Object... args) {
-        System.out.printf("* " + fmt, args);
-        System.out.println();
+        _out.printf("* " + fmt, args);
+        _out.println();
     }
 
     @Override
     public void reportMove(Move move) {
-        System.out.printf("* %s%n", move);
+        _out.printf("* %s%n", move);
     }
+
+    /** Destination of messages and moves. */
+    private final PrintStream _out;
+    /** Destination of error messages. */
+    private final PrintStream _err;
 }
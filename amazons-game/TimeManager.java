@@ -0,0 +1,138 @@
+package amazons;
+
+import static java.lang.Math.*;
+
+import static amazons.Piece.*;
+
+/** Decides how long an AI may think about one move under a game clock.
+ *  It sets a target time, from the time remaining, the increment, and
+ *  an estimate of the number of moves the side has left (each move
+ *  fills a square, and games rarely fill much more than half the empty
+ *  squares), and a hard limit a few times larger.  The search deepens
+ *  iteratively; after each depth, the time manager decides whether to
+ *  go deeper:
+ *  <ul>
+ *  <li> not if the next depth, predicted to take as long as this one
+ *       times the effective branching factor measured between the last
+ *       two depths, would end past the target;
+ *  <li> not if the best move has not changed for several depths and a
+ *       good part of the target has been used, since the move is then
+ *       clearly decided;
+ *  <li> and with the target extended (up to the limit) if the value has
+ *       just dropped sharply, since the choice is then unsettled.
+ *  </ul>
+ *  The AI stops at the hard limit even in the middle of a depth.
+ *  @author Mehak Sharma
+ */
+final class TimeManager {
+
+    /** A time manager for SIDE's move on BOARD, which has REMAINING
+     *  milliseconds on its clock and gets INCREMENT milliseconds after
+     *  each move, starting at time NOW. */
+    TimeManager(Board board, Piece side, long remaining, long increment,
+                long now) {
+        int empty = 0;
+        for (int i = 0; i < board.size() * board.size(); i += 1) {
+            if (board.get(board.sq(i)) == EMPTY) {
+                empty += 1;
+            }
+        }
+        int movesToGo = max(MIN_MOVES_TO_GO, empty / EMPTY_PER_MOVE);
+        long usable = max(0, remaining - SAFETY_MARGIN);
+        _target = min(usable, usable / movesToGo + increment * 3 / 4);
+        _limit = min(usable / LIMIT_FRACTION + increment,
+                     LIMIT_FACTOR * _target);
+        _limit = max(_target, min(_limit, usable));
+        _start = _lastFinish = now;
+    }
+
+    /** Return the time at which the move started. */
+    long start() {
+        return _start;
+    }
+
+    /** Return the time by which the search must stop. */
+    long deadline() {
+        return _start + _limit;
+    }
+
+    /** Return the target time for this move, in milliseconds. */
+    long target() {
+        return _target;
+    }
+
+    /** Return the hard limit for this move, in milliseconds. */
+    long limit() {
+        return _limit;
+    }
+
+    /** Record that a search of depth DEPTH, visiting NODES positions,
+     *  has just finished at time NOW with value SCORE (for the side to
+     *  move, positive favoring it) and best move BEST, and return true
+     *  iff the search should go a depth deeper. */
+    boolean deeper(int depth, long nodes, int score, Move best, long now) {
+        long elapsed = now - _start;
+        long iteration = now - _lastFinish;
+        if (_depth > 0 && score < _score - SCORE_DROP) {
+            _target = min(_limit, _target * 2);
+        }
+        if (best.equals(_best)) {
+            _stable += 1;
+        } else {
+            _stable = 0;
+        }
+        double branching =
+            _nodes > 0 ? max(MIN_BRANCHING, (double) nodes / _nodes)
+            : DEFAULT_BRANCHING;
+        _depth = depth;
+        _nodes = nodes;
+        _score = score;
+        _best = best;
+        _lastFinish = now;
+        if (_stable >= STABLE_DEPTHS && elapsed >= _target / 4) {
+            return false;
+        }
+        return elapsed + iteration * branching <= _target;
+    }
+
+    /** Start of the current move's time. */
+    private final long _start;
+    /** Target time. */
+    private long _target;
+    /** Hard limit. */
+    private long _limit;
+    /** Depth of the last finished search, or 0 if none has finished. */
+    private int _depth;
+    /** Nodes visited by the last finished search. */
+    private long _nodes;
+    /** Value of the last finished search. */
+    private int _score;
+    /** Best move of the last finished search. */
+    private Move _best;
+    /** Number of consecutive finished searches that kept the best
+     *  move. */
+    private int _stable;
+    /** Time at which the last search finished (or the move started). */
+    private long _lastFinish;
+
+    /** Time kept in reserve against overheads (milliseconds). */
+    static final long SAFETY_MARGIN = 50;
+    /** Least number of moves assumed to remain. */
+    static final int MIN_MOVES_TO_GO = 5;
+    /** Empty squares per move assumed to remain to the side. */
+    static final int EMPTY_PER_MOVE = 4;
+    /** The limit is at most the remaining time divided by this (plus
+     *  the increment). */
+    static final int LIMIT_FRACTION = 4;
+    /** The limit is at most this multiple of the target. */
+    static final int LIMIT_FACTOR = 4;
+    /** A drop in value of more than this extends the target. */
+    static final int SCORE_DROP = 50;
+    /** Number of depths with the same best move after which the move is
+     *  considered decided. */
+    static final int STABLE_DEPTHS = 3;
+    /** Branching factor assumed before it can be measured. */
+    static final double DEFAULT_BRANCHING = 8;
+    /** Least effective branching factor assumed. */
+    static final double MIN_BRANCHING = 2;
+}
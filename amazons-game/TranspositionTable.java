@@ -0,0 +1,198 @@
+package amazons;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import static amazons.Utils.error;
+
+/** A cache of the results of searching positions, for AI, of a fixed
+ *  size allocated all at once.  Each entry takes ENTRY_BYTES bytes of a
+ *  single buffer of longs: the key of its position XORed with its data,
+ *  and its data, which packs a value, the depth it was searched to,
+ *  whether the value is exact or a bound, and the best queen move found.
+ *  An entry is found by its key's low bits and accepted only if XORing
+ *  its two halves gives back the key, so that a position whose key
+ *  shares the slot of another is simply a miss.  An entry is replaced by
+ *  any other position, or by a search of the same position at least as
+ *  deep.
+ *
+ *  The buffer is either an array on the heap, for one AI, or, for a
+ *  table shared by all the AIs of a program (see offHeap), memory
+ *  outside the heap, which costs the garbage collector nothing.  A
+ *  shared table takes no locks.  Threads may store to the same entry at
+ *  once, and a reader may see one thread's key half and another's data
+ *  half; but then XORing them will not give back the key, so the
+ *  reader sees a miss rather than another position's data.
+ *  @author Mehak Sharma
+ */
+final class TranspositionTable {
+
+    /** Bytes taken by each entry. */
+    static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    /** Kinds of value: EXACT, a LOWER bound, or an UPPER bound. */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Data of a missing entry. */
+    static final long NONE = 0;
+
+    /** A table on the heap of the largest power of two entries that
+     *  fits in BYTES, which must be at least ENTRY_BYTES. */
+    TranspositionTable(long bytes) {
+        this(bytes, false);
+    }
+
+    /** A table of the largest power of two entries that fits in BYTES,
+     *  which must be at least ENTRY_BYTES, outside the heap iff
+     *  OFFHEAP. */
+    private TranspositionTable(long bytes, boolean offHeap) {
+        if (bytes < ENTRY_BYTES) {
+            throw error("table must have room for an entry");
+        }
+        int entries =
+            (int) Math.min(Long.highestOneBit(bytes / ENTRY_BYTES),
+                           MAX_ENTRIES);
+        _mask = entries - 1;
+        if (offHeap) {
+            _slots = ByteBuffer.allocateDirect(entries * ENTRY_BYTES)
+                .order(ByteOrder.nativeOrder()).asLongBuffer();
+        } else {
+            _slots = LongBuffer.allocate(2 * entries);
+        }
+    }
+
+    /** Return a table outside the heap, as large as fits in BYTES, that
+     *  may be used by many threads at once. */
+    static TranspositionTable offHeap(long bytes) {
+        return new TranspositionTable(bytes, true);
+    }
+
+    /** Return the data stored for the position with key KEY, or NONE. */
+    long probe(long key) {
+        int i = 2 * ((int) key & _mask);
+        long data = _slots.get(i + 1);
+        long check = _slots.get(i);
+        _probes.increment();
+        if (data == NONE || (check ^ data) != key) {
+            return NONE;
+        }
+        _hits.increment();
+        return data;
+    }
+
+    /** Store DATA (as from encode) for the position with key KEY. */
+    void store(long key, long data) {
+        int i = 2 * ((int) key & _mask);
+        long old = _slots.get(i + 1);
+        if (old != NONE && (_slots.get(i) ^ old) == key
+            && depth(old) > depth(data)) {
+            return;
+        }
+        _slots.put(i, key ^ data);
+        _slots.put(i + 1, data);
+    }
+
+    /** Remove all entries.  Not to be used while others use me. */
+    void clear() {
+        for (int i = 0; i < _slots.capacity(); i += 1) {
+            _slots.put(i, 0);
+        }
+    }
+
+    /** Return the number of entries I can hold. */
+    int capacity() {
+        return _mask + 1;
+    }
+
+    /** Return the number of bytes my entries occupy. */
+    long bytes() {
+        return (long) _slots.capacity() * Long.BYTES;
+    }
+
+    /** Return true iff my entries are outside the heap. */
+    boolean isOffHeap() {
+        return _slots.isDirect();
+    }
+
+    /** Return the number of entries in use, counting them. */
+    int used() {
+        int result = 0;
+        for (int i = 1; i < _slots.capacity(); i += 2) {
+            if (_slots.get(i) != NONE) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of probes made so far. */
+    long probes() {
+        return _probes.sum();
+    }
+
+    /** Return the number of probes so far that found their position. */
+    long hits() {
+        return _hits.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries (%.1f%% used), %d bytes%s,"
+                             + " %d/%d hits", capacity(),
+                             100.0 * used() / capacity(), bytes(),
+                             isOffHeap() ? " off heap" : "", hits(),
+                             probes());
+    }
+
+    /** Return the data for a position whose value, searched to DEPTH
+     *  half-plies, is SCORE, of kind BOUND (EXACT, LOWER, or UPPER), and
+     *  whose best queen move is MOVE (encoded as by AI.queenMoves, or 0
+     *  if none). */
+    static long encode(int score, int depth, int bound, int move) {
+        return ((long) score << SCORE_SHIFT)
+            | ((long) (move & MOVE_MASK) << MOVE_SHIFT)
+            | ((long) (depth & DEPTH_MASK) << DEPTH_SHIFT) | bound;
+    }
+
+    /** Return the value in DATA. */
+    static int score(long data) {
+        return (int) (data >> SCORE_SHIFT);
+    }
+
+    /** Return the depth in DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the kind of value in DATA. */
+    static int bound(long data) {
+        return (int) data & BOUND_MASK;
+    }
+
+    /** Return the best queen move in DATA. */
+    static int move(long data) {
+        return (int) (data >>> MOVE_SHIFT) & MOVE_MASK;
+    }
+
+    /** Largest number of entries, limited by the size of a buffer. */
+    private static final int MAX_ENTRIES =
+        Integer.highestOneBit(Integer.MAX_VALUE / ENTRY_BYTES);
+
+    /** Layout of an entry's data: bound in the low bits, then depth,
+     *  best queen move, and value. */
+    private static final int
+        BOUND_MASK = 3,
+        DEPTH_SHIFT = 2, DEPTH_MASK = (1 << 8) - 1,
+        MOVE_SHIFT = 10, MOVE_MASK = (1 << 16) - 1,
+        SCORE_SHIFT = 32;
+
+    /** Entries: the key XOR the data, and the data, of each. */
+    private final LongBuffer _slots;
+    /** Number of entries, less 1. */
+    private final int _mask;
+    /** Numbers of probes made and of probes that hit. */
+    private final LongAdder _probes = new LongAdder(),
+        _hits = new LongAdder();
+}
@@ -0,0 +1,251 @@
+package amazons;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static amazons.Piece.*;
+import static amazons.Utils.iterable;
+import static amazons.WeightedEvaluator.NUM_FEATURES;
+
+/** Fits the weights of a WeightedEvaluator to the results of
+ *  self-play games, Texel style.  It plays games between AIs, starting
+ *  each with a few random moves so that the games differ, and records
+ *  the features of each position reached along with the game's winner,
+ *  in primitive arrays.  It then finds by gradient descent the weights
+ *  that minimize the mean squared difference between each result (1 for
+ *  a White win and 0 for a Black win) and the logistic function of the
+ *  weighted sum of the position's features.  Games are played, and
+ *  gradients computed, in parallel.
+ *  Usage: java amazons.Tuner [GAMES [WEIGHTSFILE]].
+ *  @author Mehak Sharma
+ */
+final class Tuner {
+
+    /** Default number of self-play games. */
+    static final int DEFAULT_GAMES = 200;
+
+    /** Default name of the weights file written. */
+    static final String DEFAULT_WEIGHTS = "amazons.weights";
+
+    /** A tuner that plays GAMES games of self-play, choosing random
+     *  openings using SEED, on THREADS threads. */
+    Tuner(int games, long seed, int threads) {
+        _games = games;
+        _seed = seed;
+        _threads = threads;
+    }
+
+    /** Play the games and fit weights as described in ARGS. */
+    public static void main(String... args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0])
+            : DEFAULT_GAMES;
+        File output = new File(args.length > 1 ? args[1] : DEFAULT_WEIGHTS);
+        Tuner tuner = new Tuner(games, System.currentTimeMillis(),
+                                Runtime.getRuntime().availableProcessors());
+        tuner.play();
+        System.out.printf("%d positions from %d games%n",
+                          tuner.positions(), games);
+        WeightedEvaluator fitted = tuner.fit(ITERATIONS);
+        System.out.printf("loss %.5f%n", tuner.loss(fitted.weights()));
+        try {
+            fitted.save(output);
+        } catch (IOException excp) {
+            System.err.printf("Could not write weights: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Play my self-play games, recording their positions. */
+    void play() {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int g = 0; g < _games; g += 1) {
+            long seed = _seed + g;
+            results.add(pool.submit(() -> playGame(seed)));
+        }
+        int n = 0;
+        int[][] games = new int[_games][];
+        try {
+            for (int g = 0; g < _games; g += 1) {
+                games[g] = results.get(g).get();
+                n += games[g].length / (NUM_FEATURES + 1);
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdown();
+        }
+        _features = new int[n * NUM_FEATURES];
+        _results = new byte[n];
+        int k = 0;
+        for (int[] game : games) {
+            for (int p = 0; p < game.length; p += NUM_FEATURES + 1) {
+                System.arraycopy(game, p, _features, k * NUM_FEATURES,
+                                 NUM_FEATURES);
+                _results[k] = (byte) game[p + NUM_FEATURES];
+                k += 1;
+            }
+        }
+        _positions = n;
+    }
+
+    /** Play one game starting with random moves chosen using SEED, and
+     *  return the features of each position after the random moves,
+     *  each followed by the result (1 if White won, else 0). */
+    private int[] playGame(long seed) {
+        Random random = new Random(seed);
+        Board board = new Board();
+        for (int i = 0; i < RANDOM_MOVES && board.winner() == EMPTY;
+             i += 1) {
+            List<Move> moves = new ArrayList<>();
+            for (Move move : iterable(board.legalMoves())) {
+                moves.add(move);
+            }
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        AI player = new AI();
+        player.setEvaluator(new BitboardEvaluator());
+        int[] features = new int[INITIAL_GAME * (NUM_FEATURES + 1)];
+        int n = 0;
+        while (board.winner() == EMPTY) {
+            if (n + NUM_FEATURES + 1 > features.length) {
+                features = Arrays.copyOf(features, 2 * features.length);
+            }
+            WeightedEvaluator.features(board, features, n);
+            n += NUM_FEATURES + 1;
+            board.makeMove(player.bestMove(board, PLAY_DEPTH));
+        }
+        int result = board.winner() == WHITE ? 1 : 0;
+        for (int p = NUM_FEATURES; p < n; p += NUM_FEATURES + 1) {
+            features[p] = result;
+        }
+        return Arrays.copyOf(features, n);
+    }
+
+    /** Return the number of positions recorded. */
+    int positions() {
+        return _positions;
+    }
+
+    /** Return the evaluator whose weights are found by ITERATIONS steps
+     *  of gradient descent on the recorded positions.  The features are
+     *  first scaled to unit standard deviation, so that one learning
+     *  rate suits them all. */
+    WeightedEvaluator fit(int iterations) {
+        double[] scale = new double[NUM_FEATURES];
+        for (int i = 0; i < NUM_FEATURES; i += 1) {
+            double sum = 0, sumSq = 0;
+            for (int k = 0; k < _positions; k += 1) {
+                double f = _features[k * NUM_FEATURES + i];
+                sum += f;
+                sumSq += f * f;
+            }
+            double mean = sum / _positions;
+            double sd = Math.sqrt(sumSq / _positions - mean * mean);
+            scale[i] = sd > 0 ? 1 / sd : 0;
+        }
+        double[] w = new double[NUM_FEATURES];
+        for (int t = 0; t < iterations; t += 1) {
+            double[] gradient = gradient(w, scale);
+            for (int i = 0; i < NUM_FEATURES; i += 1) {
+                w[i] -= LEARNING_RATE * gradient[i];
+            }
+        }
+        for (int i = 0; i < NUM_FEATURES; i += 1) {
+            w[i] *= scale[i];
+        }
+        return new WeightedEvaluator(w);
+    }
+
+    /** Return the gradient of the loss with respect to weights W of
+     *  the features multiplied by SCALE, computed in parallel over
+     *  chunks of the positions. */
+    private double[] gradient(double[] w, double[] scale) {
+        int chunks = (_positions + CHUNK - 1) / CHUNK;
+        double[][] partial = new double[chunks][NUM_FEATURES];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            double[] g = partial[c];
+            int end = Math.min(_positions, (c + 1) * CHUNK);
+            for (int k = c * CHUNK; k < end; k += 1) {
+                double sum = 0;
+                for (int i = 0; i < NUM_FEATURES; i += 1) {
+                    sum += w[i] * scale[i] * _features[k * NUM_FEATURES + i];
+                }
+                double p = sigmoid(sum);
+                double d = 2 * (p - _results[k]) * p * (1 - p);
+                for (int i = 0; i < NUM_FEATURES; i += 1) {
+                    g[i] += d * scale[i] * _features[k * NUM_FEATURES + i];
+                }
+            }
+        });
+        double[] result = new double[NUM_FEATURES];
+        for (double[] g : partial) {
+            for (int i = 0; i < NUM_FEATURES; i += 1) {
+                result[i] += g[i] / _positions;
+            }
+        }
+        return result;
+    }
+
+    /** Return the mean squared error of the predictions of weights W
+     *  on the recorded positions. */
+    double loss(double[] w) {
+        double total = 0;
+        for (int k = 0; k < _positions; k += 1) {
+            double sum = 0;
+            for (int i = 0; i < NUM_FEATURES; i += 1) {
+                sum += w[i] * _features[k * NUM_FEATURES + i];
+            }
+            double e = sigmoid(sum) - _results[k];
+            total += e * e;
+        }
+        return total / _positions;
+    }
+
+    /** Return the logistic function of X. */
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    /** Number of random moves at the start of each game. */
+    private static final int RANDOM_MOVES = 6;
+
+    /** Depth of the searches of the self-play games. */
+    private static final int PLAY_DEPTH = 1;
+
+    /** Initial capacity, in positions, of the record of a game. */
+    private static final int INITIAL_GAME = 64;
+
+    /** Number of positions in each parallel chunk of the gradient. */
+    private static final int CHUNK = 4096;
+
+    /** Step size of gradient descent. */
+    private static final double LEARNING_RATE = 2.0;
+
+    /** Number of steps of gradient descent made by main. */
+    private static final int ITERATIONS = 2000;
+
+    /** Number of self-play games. */
+    private final int _games;
+    /** Seed of the random openings of the first game. */
+    private final long _seed;
+    /** Number of threads playing games. */
+    private final int _threads;
+    /** Number of recorded positions. */
+    private int _positions;
+    /** Features of the recorded positions: those of position K start at
+     *  K * NUM_FEATURES. */
+    private int[] _features;
+    /** Result of the game of each recorded position: 1 if White won. */
+    private byte[] _results;
+}
@@ -0,0 +1,44 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+/** Tests of WeightedEvaluator and Tuner.
+ *  @author Mehak Sharma
+ */
+public class TunerTest {
+
+    /** Tests that the features of the symmetric initial position are
+     *  all zero. */
+    @Test
+    public void testInitialFeatures() {
+        int[] features = new int[WeightedEvaluator.NUM_FEATURES];
+        WeightedEvaluator.features(new Board(), features, 0);
+        for (int f : features) {
+            assertEquals(0, f);
+        }
+    }
+
+    /** Tests that tuning on a few self-play games fits better than
+     *  zero weights, and that weights survive saving and loading. */
+    @Test
+    public void testTuning() throws IOException {
+        Tuner tuner = new Tuner(10, 1, 2);
+        tuner.play();
+        assertTrue(tuner.positions() > 10);
+        WeightedEvaluator fitted = tuner.fit(200);
+        double[] zero = new double[WeightedEvaluator.NUM_FEATURES];
+        assertTrue(tuner.loss(fitted.weights()) < tuner.loss(zero));
+        File file = File.createTempFile("amazons", ".weights");
+        file.deleteOnExit();
+        fitted.save(file);
+        WeightedEvaluator loaded = WeightedEvaluator.load(file);
+        assertArrayEquals(fitted.weights(), loaded.weights(), 0);
+        Board b = AITest.randomPosition(20, 1);
+        assertEquals(fitted.evaluate(b), loaded.evaluate(b));
+    }
+}
@@ -6,9 +6,14 @@ import static amazons.Piece.*;
 import static org.junit.Assert.*;
 import ucb.junit.textui;
 
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /** The suite of all JUnit tests for the amazons package.
@@ -19,7 +24,11 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(UnitTest.class);
+        textui.runClasses(UnitTest.class, GameServerTest.class,
+                          AITest.class, GameLogTest.class,
+                          GameStoreTest.class, TunerTest.class,
+                          ClockTest.class, ViewBroadcasterTest.class,
+                          MetricsTest.class);
     }
 
     /** Tests basic correctness of put and get on the initialized board. */
@@ -71,6 +80,215 @@ public class UnitTest {
         assertEquals(BLACK, b.get(6, 9));
     }
 
+    /** Tests that copies keep the move history, and redo and jumpTo. */
+    @Test
+    public void testHistory() {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        b.makeMove(Move.mv("g10-e10(a6)"));
+        b.makeMove(Move.mv("a4-b4(c4)"));
+        Board c = new Board(b);
+        assertEquals(3, c.numMoves());
+        assertEquals(Move.mv("g10-e10(a6)"), c.move(1));
+        c.undo();
+        c.undo();
+        assertEquals(3, b.numMoves());
+        assertEquals(BLACK, c.get(6, 9));
+        assertEquals(3, c.historyLength());
+        assertTrue(c.redo());
+        assertEquals(SPEAR, c.get(0, 5));
+        assertEquals(WHITE, c.turn());
+        c.jumpTo(3);
+        assertEquals(b, c);
+        assertEquals(b.hash(), c.hash());
+        assertFalse(c.redo());
+        c.jumpTo(0);
+        assertEquals(new Board(), c);
+        c.makeMove(Move.mv("d1-d3(d1)"));
+        assertEquals(1, c.historyLength());
+        assertFalse(c.redo());
+    }
+
+    /** Tests boards of other sizes: layout, squares, and that
+     *  legalMoves agrees with isLegal on every possible triple. */
+    @Test
+    public void testBoardSizes() {
+        Board b = new Board(6);
+        assertEquals(6, b.size());
+        assertEquals(WHITE, b.get(0, 1));
+        assertEquals(WHITE, b.get(4, 0));
+        assertEquals(BLACK, b.get(1, 5));
+        assertEquals(BLACK, b.get(5, 4));
+        Square corner = Square.sq(5, 5, 6);
+        assertEquals(35, corner.index());
+        assertEquals("f6", corner.toString());
+        assertNull(corner.queenMove(0, 1));
+        assertSame(Square.sq(0, 0, 6), corner.queenMove(5, 5));
+        assertNotSame(Square.sq(5, 5), corner);
+        b.makeMove(Move.mv(b.sq(0, 1), b.sq(2, 3), b.sq(0, 1)));
+        Set<Move> moves = new HashSet<>();
+        for (Move m : Utils.iterable(b.legalMoves())) {
+            assertTrue(moves.add(m));
+        }
+        int legal = 0;
+        for (int f = 0; f < 36; f += 1) {
+            for (int t = 0; t < 36; t += 1) {
+                for (int s = 0; s < 36; s += 1) {
+                    if (b.isLegal(b.sq(f), b.sq(t), b.sq(s))) {
+                        legal += 1;
+                        assertTrue(moves.contains(
+                            Move.mv(b.sq(f), b.sq(t), b.sq(s))));
+                    }
+                }
+            }
+        }
+        assertEquals(legal, moves.size());
+        Board c = new Board(b);
+        c.undo();
+        assertEquals(new Board(6), c);
+    }
+
+    /** Tests that moves are parsed for boards of any size, and that a
+     *  board refuses squares of another size. */
+    @Test
+    public void testSquareSizes() {
+        Board b = new Board(6);
+        assertSame(b.sq(2, 3), Square.sq("c4", 6));
+        assertSame(Square.sq("p16", 16), Square.sq(15, 15, 16));
+        Move move = Move.mv("a2-c4(a2)", 6);
+        assertSame(Move.mv(b.sq(0, 1), b.sq(2, 3), b.sq(0, 1)), move);
+        assertSame(move, Move.mv("a2 c4 a2", 6));
+        assertNull(Move.mv("a2-g8(a2)", 6));
+        assertNull(Move.mv("a2-c5(a2)", 6));
+        assertSame(Move.mv("d1-d7(g7)"), Move.mv("d1-d7(g7)", 10));
+        try {
+            b.isLegal(Move.mv("a4-b4(c4)"));
+            fail("square of another size accepted");
+        } catch (IllegalArgumentException excp) {
+            assertTrue(excp.getMessage().contains("6x6"));
+        }
+        try {
+            b.makeMove(Square.sq("a2"), Square.sq("c4"), Square.sq("a2"));
+            fail("square of another size accepted");
+        } catch (IllegalArgumentException excp) {
+            assertEquals(0, b.numMoves());
+        }
+        b.makeMove(move);
+        assertSame(move, b.move(0));
+    }
+
+    /** Tests that reachableMask agrees with reachableFrom, on boards
+     *  of several sizes and with and without a square treated as
+     *  empty. */
+    @Test
+    public void testReachableMask() {
+        for (int size : new int[] { 6, 10, 16 }) {
+            Board b = new Board(size);
+            b.makeMove(b.legalMoves().next());
+            for (int i = 0; i < size * size; i += 1) {
+                Square from = b.sq(i);
+                Square asEmpty = b.get(from) == EMPTY ? null : from;
+                long[] mask = b.reachableMask(from, asEmpty);
+                Set<Square> reachable = new HashSet<>();
+                for (Square s : Utils.iterable(b.reachableFrom(from,
+                                                               asEmpty))) {
+                    reachable.add(s);
+                }
+                for (int k = 0; k < size * size; k += 1) {
+                    assertEquals(reachable.contains(b.sq(k)),
+                                 Board.inMask(mask, k));
+                }
+            }
+        }
+    }
+
+    /** Tests that regions divide when a wall of spears is closed and
+     *  rejoin when it is opened again, and that the regions kept as
+     *  random games are played and taken back are those found afresh. */
+    @Test
+    public void testRegions() {
+        Board b = new Board();
+        for (int col = 0; col < Board.SIZE - 1; col += 1) {
+            b.put(SPEAR, col, 5);
+        }
+        assertEquals(-1, b.region(Square.sq("a6")));
+        assertEquals(b.region(Square.sq("a1")), b.region(Square.sq("a10")));
+        assertTrue(b.contested(Square.sq("j4")));
+        assertFalse(b.separated());
+        assertEquals(0, b.fillers(WHITE));
+        b.makeMove(Move.mv("j4-j5(j6)"));
+        assertNotEquals(b.region(Square.sq("a1")),
+                        b.region(Square.sq("a10")));
+        assertFalse(b.contested(Square.sq("j5")));
+        assertTrue(b.separated());
+        assertEquals(46, b.fillers(WHITE));
+        assertEquals(36, b.fillers(BLACK));
+        b.undo();
+        assertEquals(b.region(Square.sq("a1")), b.region(Square.sq("a10")));
+        assertTrue(b.contested(Square.sq("j4")));
+
+        Random random = new Random(1);
+        for (int size : new int[] { 6, 8 }) {
+            b = new Board(size);
+            b.region(b.sq(0));
+            while (b.winner() == EMPTY) {
+                List<Move> legal = new ArrayList<>();
+                for (Move move : Utils.iterable(b.legalMoves())) {
+                    legal.add(move);
+                }
+                b.makeMove(legal.get(random.nextInt(legal.size())));
+                assertSameRegions(b);
+            }
+            while (b.numMoves() > 0) {
+                b.undo();
+                assertSameRegions(b);
+            }
+        }
+    }
+
+    /** Assert that the regions of B are those of a copy finding them
+     *  afresh. */
+    private void assertSameRegions(Board b) {
+        Board fresh = new Board(b);
+        fresh.put(fresh.get(fresh.sq(0)), fresh.sq(0));
+        int n = b.size() * b.size();
+        for (int i = 0; i < n; i += 1) {
+            assertEquals(fresh.contested(fresh.sq(i)), b.contested(b.sq(i)));
+            for (int j = 0; j < n; j += 1) {
+                assertEquals(fresh.region(fresh.sq(i))
+                             == fresh.region(fresh.sq(j)),
+                             b.region(b.sq(i)) == b.region(b.sq(j)));
+            }
+        }
+        assertEquals(fresh.fillers(WHITE), b.fillers(WHITE));
+        assertEquals(fresh.fillers(BLACK), b.fillers(BLACK));
+    }
+
+    /** Tests parsing of commands, with comments and either form of
+     *  move, by Controllers sharing compiled command patterns. */
+    @Test
+    public void testCommands() {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        for (int k = 0; k < 2; k += 1) {
+            Controller controller =
+                new Controller(new NullView(), null,
+                               new TextReporter(out, out), new TextPlayer(),
+                               new TextPlayer(), out);
+            controller.start();
+            controller.executeCommand("D1-d7(g7)   # opening");
+            controller.executeCommand("  # nothing");
+            controller.executeCommand("g10 g8 g9");
+            assertEquals(2, controller.board().numMoves());
+            assertEquals(Move.mv("g10-g8(g9)"), controller.board().move(1));
+            try {
+                controller.executeCommand("d7-d1(d7) extra");
+                fail("bad command accepted");
+            } catch (IllegalArgumentException excp) {
+                assertEquals(2, controller.board().numMoves());
+            }
+        }
+    }
+
     /** Tests toString for initial board state and a smiling board state. :) */
     @Test
     public void testToString() {
@@ -0,0 +1,305 @@
+package amazons;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/** A View that relays a game to any number of spectators.  Each update
+ *  is turned into a one-line delta from the previous one:
+ *  <dl>
+ *  <dt> move FROM-TO(SPEAR) <dd> the move was made.
+ *  <dt> undo FROM-TO(SPEAR) <dd> the move was taken back.
+ *  <dt> position SIZE TURN MOVES CELLS
+ *  <dd> anything else happened: the board is now SIZE squares on a
+ *       side, TURN (W or B) is to move, MOVES moves have been made, and
+ *       CELLS gives the contents of each square (-, W, B, or S) in order
+ *       of index.
+ *  </dl>
+ *  A new subscriber first gets a position.  (Spectator applies the
+ *  deltas to its own copy of the board.)
+ *
+ *  Each subscriber has its own bounded queue, drained on a shared pool
+ *  of threads, so that a slow subscriber delays no one else.  When a
+ *  delta finds a subscriber's queue full, the deltas waiting there are
+ *  dropped and replaced by a single position, which supersedes them; the
+ *  subscriber sees fewer updates, but still ends at the current board.
+ *  A subscriber whose listener throws an exception is dropped.
+ *
+ *  Spectators may also connect over TCP (see listen), receiving the
+ *  deltas as lines of text.  I pass every update on to another View
+ *  as well.
+ *  @author Mehak Sharma
+ */
+final class ViewBroadcaster implements View {
+
+    /** Default capacity of a subscriber's queue. */
+    static final int DEFAULT_CAPACITY = 64;
+
+    /** A broadcaster that passes updates on to VIEW, delivering deltas
+     *  to subscribers on THREADS threads. */
+    ViewBroadcaster(View view, int threads) {
+        _view = view;
+        _pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "amazons-broadcaster");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public synchronized void update(Board board) {
+        _view.update(board);
+        String delta = delta(board);
+        if (delta == null) {
+            return;
+        }
+        _shown.copy(board);
+        _snapshot = null;
+        for (Subscription sub : _subscribers) {
+            sub.offer(delta);
+        }
+    }
+
+    /** Return the delta from the board last broadcast to BOARD, or null
+     *  if they are the same. */
+    private String delta(Board board) {
+        if (board.equals(_shown) && board.numMoves() == _shown.numMoves()) {
+            return null;
+        }
+        int n = board.numMoves();
+        if (board.size() == _shown.size() && n > 0
+            && n == _shown.numMoves() + 1) {
+            Board before = new Board(board);
+            before.undo();
+            if (before.equals(_shown)) {
+                return "move " + board.move(n - 1);
+            }
+        } else if (board.size() == _shown.size()
+                   && n == _shown.numMoves() - 1) {
+            Move last = _shown.move(n);
+            Board after = new Board(board);
+            if (after.isLegal(last)) {
+                after.makeMove(last);
+                if (after.equals(_shown)) {
+                    return "undo " + last;
+                }
+            }
+        }
+        return snapshot(board);
+    }
+
+    /** Return the position message for the board last broadcast,
+     *  computing it at most once per update. */
+    private synchronized String snapshot() {
+        if (_snapshot == null) {
+            _snapshot = snapshot(_shown);
+        }
+        return _snapshot;
+    }
+
+    /** Return a position message describing BOARD. */
+    static String snapshot(Board board) {
+        int size = board.size();
+        StringBuilder result = new StringBuilder("position ");
+        result.append(size).append(' ').append(board.turn()).append(' ')
+            .append(board.numMoves()).append(' ');
+        for (int i = 0; i < size * size; i += 1) {
+            result.append(board.get(board.sq(i)));
+        }
+        return result.toString();
+    }
+
+    /** Deliver my deltas to LISTENER, starting with the current
+     *  position, queueing at most CAPACITY of them.  Return the
+     *  subscription, which may be used to stop delivery. */
+    synchronized Subscription subscribe(Consumer<String> listener,
+                                        int capacity) {
+        Subscription sub = new Subscription(listener, capacity);
+        _subscribers.add(sub);
+        sub.offer(snapshot());
+        return sub;
+    }
+
+    /** Return the number of current subscribers. */
+    int subscribers() {
+        return _subscribers.size();
+    }
+
+    /** Accept spectators on PORT (0 for any free port) on the loopback
+     *  interface, sending each its deltas as lines of text, and return
+     *  the port. */
+    int listen(int port) throws IOException {
+        ServerSocket server =
+            new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        _server = server;
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    connect(server.accept());
+                }
+            } catch (IOException excp) {
+                /* Closed. */
+            }
+        }, "amazons-spectators");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    /** Subscribe the spectator connected on SOCKET. */
+    private void connect(Socket socket) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+            socket.getOutputStream(), StandardCharsets.UTF_8));
+        Subscription[] sub = new Subscription[1];
+        sub[0] = subscribe(delta -> {
+            try {
+                out.write(delta);
+                out.write('\n');
+                if (sub[0] == null || sub[0].pending() == 0) {
+                    out.flush();
+                }
+            } catch (IOException excp) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    /* Ignore. */
+                }
+                throw new UncheckedIOException(excp);
+            }
+        }, DEFAULT_CAPACITY);
+    }
+
+    /** Stop listening for spectators and drop all subscribers. */
+    void close() {
+        try {
+            if (_server != null) {
+                _server.close();
+            }
+        } catch (IOException excp) {
+            /* Ignore. */
+        }
+        for (Subscription sub : _subscribers) {
+            sub.close();
+        }
+        _pool.shutdown();
+    }
+
+    /** One subscriber's delivery state. */
+    final class Subscription {
+
+        /** A subscription delivering to LISTENER, queueing at most
+         *  CAPACITY deltas. */
+        Subscription(Consumer<String> listener, int capacity) {
+            _listener = listener;
+            _capacity = capacity;
+            _queue = new ArrayDeque<>(capacity);
+        }
+
+        /** Queue DELTA for delivery, replacing the queued deltas with
+         *  a position if the queue is full. */
+        synchronized void offer(String delta) {
+            if (_closed) {
+                return;
+            }
+            if (_queue.size() >= _capacity) {
+                _dropped += _queue.size() + 1;
+                _queue.clear();
+                _queue.add(snapshot());
+            } else {
+                _queue.add(delta);
+            }
+            if (!_scheduled) {
+                _scheduled = true;
+                _pool.execute(this::drain);
+            }
+        }
+
+        /** Deliver queued deltas until there are none. */
+        private void drain() {
+            while (true) {
+                String delta;
+                synchronized (this) {
+                    delta = _queue.poll();
+                    if (delta == null || _closed) {
+                        _scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    _listener.accept(delta);
+                } catch (RuntimeException excp) {
+                    close();
+                    return;
+                }
+                synchronized (this) {
+                    _delivered += 1;
+                }
+            }
+        }
+
+        /** Stop delivering to my listener. */
+        void close() {
+            synchronized (this) {
+                _closed = true;
+                _queue.clear();
+            }
+            _subscribers.remove(this);
+        }
+
+        /** Return the number of deltas delivered so far. */
+        synchronized long delivered() {
+            return _delivered;
+        }
+
+        /** Return the number of deltas dropped so far (each replaced,
+         *  with the deltas queued with it, by a position). */
+        synchronized long dropped() {
+            return _dropped;
+        }
+
+        /** Return the number of deltas waiting for delivery. */
+        synchronized int pending() {
+            return _queue.size();
+        }
+
+        /** Recipient of my deltas. */
+        private final Consumer<String> _listener;
+        /** Maximum number of queued deltas. */
+        private final int _capacity;
+        /** Queued deltas. */
+        private final ArrayDeque<String> _queue;
+        /** True iff a drain of my queue is scheduled or running. */
+        private boolean _scheduled;
+        /** True iff closed. */
+        private boolean _closed;
+        /** Numbers of deltas delivered and dropped. */
+        private long _delivered, _dropped;
+    }
+
+    /** Receives every update. */
+    private final View _view;
+    /** Delivers deltas. */
+    private final ExecutorService _pool;
+    /** Current subscribers. */
+    private final List<Subscription> _subscribers =
+        new CopyOnWriteArrayList<>();
+    /** The board as of the last delta (initially, the initial
+     *  position). */
+    private final Board _shown = new Board();
+    /** The position message for _shown, or null if not yet computed. */
+    private String _snapshot;
+    /** Socket on which spectators connect, or null. */
+    private volatile ServerSocket _server;
+}
@@ -0,0 +1,135 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+/** Tests of ViewBroadcaster and Spectator.
+ *  @author Mehak Sharma
+ */
+public class ViewBroadcasterTest {
+
+    /** Wait up to ten seconds for CONDITION, and return its value. */
+    private static boolean await(BooleanSupplier condition)
+        throws InterruptedException {
+        for (int i = 0; i < 1000 && !condition.getAsBoolean(); i += 1) {
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+
+    /** Tests the deltas sent for moves, undos, and new games. */
+    @Test
+    public void testDeltas() throws InterruptedException {
+        ViewBroadcaster broadcaster = new ViewBroadcaster(new NullView(), 2);
+        List<String> deltas = new ArrayList<>();
+        broadcaster.subscribe(d -> {
+            synchronized (deltas) {
+                deltas.add(d);
+            }
+        }, 100);
+        Spectator spectator = new Spectator();
+        broadcaster.subscribe(spectator, 100);
+        Board board = new Board();
+        broadcaster.update(board);
+        board.makeMove(Move.mv("d1-d7(g7)"));
+        broadcaster.update(board);
+        broadcaster.update(board);
+        board.makeMove(Move.mv("g10-g8(g9)"));
+        broadcaster.update(board);
+        board.undo();
+        broadcaster.update(board);
+        assertTrue(await(() -> spectator.matches(board)));
+        board.makeMove(Move.mv("a7-b6(c5)"));
+        broadcaster.update(board);
+        board.init();
+        broadcaster.update(board);
+        assertTrue(await(() -> spectator.matches(board)));
+        synchronized (deltas) {
+            assertEquals(6, deltas.size());
+            assertTrue(deltas.get(0).startsWith("position 10 W 0 ---W"));
+            assertEquals("move d1-d7(g7)", deltas.get(1));
+            assertEquals("move g10-g8(g9)", deltas.get(2));
+            assertEquals("undo g10-g8(g9)", deltas.get(3));
+            assertEquals("move a7-b6(c5)", deltas.get(4));
+            assertEquals(ViewBroadcaster.snapshot(board), deltas.get(5));
+        }
+        broadcaster.close();
+    }
+
+    /** Tests that a slow subscriber has its deltas coalesced without
+     *  delaying a fast one, and still ends at the current board. */
+    @Test
+    public void testSlowSubscriber() throws InterruptedException {
+        ViewBroadcaster broadcaster = new ViewBroadcaster(new NullView(), 2);
+        CountDownLatch release = new CountDownLatch(1);
+        Spectator slow = new Spectator(), fast = new Spectator();
+        ViewBroadcaster.Subscription slowSub = broadcaster.subscribe(d -> {
+            try {
+                release.await();
+            } catch (InterruptedException excp) {
+                return;
+            }
+            slow.accept(d);
+        }, 4);
+        ViewBroadcaster.Subscription fastSub =
+            broadcaster.subscribe(fast, 100);
+        Board board = AITest.randomPosition(0, 1);
+        for (int i = 0; i < 20; i += 1) {
+            board.makeMove(board.legalMoves().next());
+            broadcaster.update(board);
+        }
+        assertTrue(await(() -> fast.matches(board)));
+        assertEquals(21, fast.updates());
+        assertEquals(0, fastSub.dropped());
+        release.countDown();
+        assertTrue(await(() -> slow.matches(board)));
+        assertTrue(slowSub.dropped() > 0);
+        assertTrue(slow.updates() < 21);
+        broadcaster.close();
+    }
+
+    /** Tests spectators connected over TCP. */
+    @Test
+    public void testSocket() throws Exception {
+        ViewBroadcaster broadcaster = new ViewBroadcaster(new NullView(), 2);
+        int port = broadcaster.listen(0);
+        Board board = new Board();
+        board.makeMove(Move.mv("d1-d7(g7)"));
+        broadcaster.update(board);
+        Spectator spectator = new Spectator();
+        try (Socket socket =
+             new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Thread reader = new Thread(() -> {
+                try {
+                    BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream()));
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        spectator.accept(line);
+                    }
+                } catch (IOException excp) {
+                    /* Closed. */
+                }
+            });
+            reader.start();
+            assertTrue(await(() -> broadcaster.subscribers() == 1));
+            for (int i = 0; i < 10; i += 1) {
+                board.makeMove(board.legalMoves().next());
+                broadcaster.update(board);
+            }
+            assertTrue(await(() -> spectator.matches(board)));
+        }
+        broadcaster.close();
+    }
+}
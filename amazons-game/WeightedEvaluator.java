@@ -0,0 +1,194 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static amazons.Piece.*;
+import static amazons.TerritoryEvaluator.*;
+import static amazons.Utils.error;
+
+/** An Evaluator that values a position as a weighted sum of features,
+ *  each of which is a difference between White and Black:
+ *  <ul>
+ *  <li> mobility: the number of queen moves (ignoring spears);
+ *  <li> territory: the value given by BitboardEvaluator;
+ *  <li> liberties: the number of empty squares next to queens;
+ *  <li> regions: the number of squares in regions of empty squares
+ *       (connected by king moves) that only that side's queens border.
+ *  </ul>
+ *  The weights are normally fitted by Tuner and kept in a text file
+ *  with one line per feature, giving its name and weight.
+ *  @author Mehak Sharma
+ */
+class WeightedEvaluator implements Evaluator {
+
+    /** Names of the features, in order. */
+    static final String[] FEATURES = {
+        "mobility", "territory", "liberties", "regions",
+    };
+
+    /** Number of features. */
+    static final int NUM_FEATURES = FEATURES.length;
+
+    /** Multiplier converting weighted sums to values. */
+    static final int SCALE = 100;
+
+    /** An evaluator with weights WEIGHTS, one per feature. */
+    WeightedEvaluator(double[] weights) {
+        if (weights.length != NUM_FEATURES) {
+            throw error("need %d weights", NUM_FEATURES);
+        }
+        _weights = weights.clone();
+    }
+
+    @Override
+    public int evaluate(Board board) {
+        int[] features = new int[NUM_FEATURES];
+        features(board, features, 0);
+        double sum = 0;
+        for (int i = 0; i < NUM_FEATURES; i += 1) {
+            sum += _weights[i] * features[i];
+        }
+        return (int) Math.round(SCALE * sum);
+    }
+
+    /** Return my weights. */
+    double[] weights() {
+        return _weights.clone();
+    }
+
+    /** Store the features of BOARD in OUT[START .. START +
+     *  NUM_FEATURES - 1]. */
+    static void features(Board board, int[] out, int start) {
+        byte[] cells = cells(board);
+        int size = board.size();
+        out[start] = AI.mobility(board, WHITE) - AI.mobility(board, BLACK);
+        out[start + 1] = TERRITORY.evaluate(board);
+        out[start + 2] = liberties(cells, size);
+        out[start + 3] = regions(cells, size);
+    }
+
+    /** Return the number of empty squares next to white queens less the
+     *  number next to black queens on the SIZE x SIZE board CELLS. */
+    private static int liberties(byte[] cells, int size) {
+        int result = 0;
+        for (int i = 0; i < cells.length; i += 1) {
+            if (cells[i] == WHITE_CELL || cells[i] == BLACK_CELL) {
+                int sign = cells[i] == WHITE_CELL ? 1 : -1;
+                for (int dir = 0; dir < DCOL.length; dir += 1) {
+                    int col = i % size + DCOL[dir],
+                        row = i / size + DROW[dir];
+                    if (col >= 0 && col < size && row >= 0 && row < size
+                        && cells[row * size + col] == EMPTY_CELL) {
+                        result += sign;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of squares in regions of empty squares on the
+     *  SIZE x SIZE board CELLS bordered only by white queens, less the
+     *  number in regions bordered only by black queens. */
+    private static int regions(byte[] cells, int size) {
+        boolean[] seen = new boolean[cells.length];
+        int[] stack = new int[cells.length];
+        int result = 0;
+        for (int i = 0; i < cells.length; i += 1) {
+            if (cells[i] != EMPTY_CELL || seen[i]) {
+                continue;
+            }
+            int n = 0, area = 0;
+            boolean white = false, black = false;
+            stack[n++] = i;
+            seen[i] = true;
+            while (n > 0) {
+                int j = stack[--n];
+                area += 1;
+                for (int dir = 0; dir < DCOL.length; dir += 1) {
+                    int col = j % size + DCOL[dir],
+                        row = j / size + DROW[dir];
+                    if (col < 0 || col >= size || row < 0 || row >= size) {
+                        continue;
+                    }
+                    int k = row * size + col;
+                    if (cells[k] == EMPTY_CELL && !seen[k]) {
+                        seen[k] = true;
+                        stack[n++] = k;
+                    } else if (cells[k] == WHITE_CELL) {
+                        white = true;
+                    } else if (cells[k] == BLACK_CELL) {
+                        black = true;
+                    }
+                }
+            }
+            if (white && !black) {
+                result += area;
+            } else if (black && !white) {
+                result -= area;
+            }
+        }
+        return result;
+    }
+
+    /** Return the evaluator whose weights are in the file FILE. */
+    static WeightedEvaluator load(File file) throws IOException {
+        double[] weights = new double[NUM_FEATURES];
+        boolean[] found = new boolean[NUM_FEATURES];
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                int i = feature(fields[0]);
+                if (fields.length != 2 || i < 0) {
+                    throw error("bad weight line: %s", line);
+                }
+                try {
+                    weights[i] = Double.parseDouble(fields[1]);
+                } catch (NumberFormatException excp) {
+                    throw error("bad weight: %s", fields[1]);
+                }
+                found[i] = true;
+            }
+        }
+        for (int i = 0; i < NUM_FEATURES; i += 1) {
+            if (!found[i]) {
+                throw error("no weight for %s", FEATURES[i]);
+            }
+        }
+        return new WeightedEvaluator(weights);
+    }
+
+    /** Write my weights to the file FILE in the form read by load. */
+    void save(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            for (int i = 0; i < NUM_FEATURES; i += 1) {
+                out.printf("%s %s%n", FEATURES[i], _weights[i]);
+            }
+        }
+    }
+
+    /** Return the index of the feature named NAME, or -1. */
+    private static int feature(String name) {
+        for (int i = 0; i < NUM_FEATURES; i += 1) {
+            if (FEATURES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Computes the territory feature. */
+    private static final Evaluator TERRITORY = new BitboardEvaluator();
+
+    /** Weight of each feature. */
+    private final double[] _weights;
+}